@@ -0,0 +1,117 @@
+#!/bin/bash
+
+# Benchmark of historical data storage: regular collection vs MongoDB time-series collection.
+# Generates the same synthetic history into both layouts in a separate database and reports
+# storage/index size and range-query latency (the query shape of HistoricalDataService.getHistoricalData).
+#
+# Usage: ./scripts/benchmark-historical-data.sh
+# Environment: BENCH_DB (esg-dashboard-bench), COMPANIES (200), DAYS (365), POINTS_PER_DAY (4), QUERIES (500)
+
+BENCH_DB="${BENCH_DB:-esg-dashboard-bench}"
+COMPANIES="${COMPANIES:-200}"
+DAYS="${DAYS:-365}"
+POINTS_PER_DAY="${POINTS_PER_DAY:-4}"
+QUERIES="${QUERIES:-500}"
+
+echo "Benchmarking historical data storage in database ${BENCH_DB}..."
+
+if ! mongosh --quiet --eval "db.adminCommand('ping')" > /dev/null 2>&1; then
+    echo "MongoDB is not running. Please start MongoDB first."
+    exit 1
+fi
+
+mongosh --quiet "${BENCH_DB}" --eval "
+const companies = ${COMPANIES};
+const days = ${DAYS};
+const pointsPerDay = ${POINTS_PER_DAY};
+const queries = ${QUERIES};
+const dataTypes = ['ESG_RATING', 'CARBON_FOOTPRINT'];
+const start = new Date(Date.UTC(2025, 0, 1));
+const stepMs = 86400000 / pointsPerDay;
+
+db.historical_data.drop();
+db.historical_data_ts.drop();
+db.createCollection('historical_data_ts', {
+    timeseries: { timeField: 'recordDate', metaField: 'meta', granularity: 'hours' }
+});
+
+// Indexes as created by MongoIndexConfig and HistoricalDataTimeSeriesConfig
+db.historical_data.createIndex({ companyId: 1, dataType: 1, recordDate: -1 });
+db.historical_data.createIndex({ companyId: 1, recordDate: -1 });
+db.historical_data.createIndex({ recordDate: -1 });
+db.historical_data_ts.createIndex({ 'meta.companyId': 1, 'meta.dataType': 1, recordDate: -1 });
+
+print('Loading ' + (companies * dataTypes.length * days * pointsPerDay) + ' records into each collection...');
+for (let c = 0; c < companies; c++) {
+    const companyId = 'COMP' + String(c).padStart(5, '0');
+    for (const dataType of dataTypes) {
+        const regular = [];
+        const series = [];
+        for (let i = 0; i < days * pointsPerDay; i++) {
+            const recordDate = new Date(start.getTime() + i * stepMs);
+            const metrics = { overallScore: 50 + (i % 50), carbonFootprint: 100 - (i % 30), socialImpactScore: 60 + (i % 20) };
+            regular.push({ companyId: companyId, dataType: dataType, metrics: metrics, recordDate: recordDate,
+                createdAt: recordDate, quality: 'HIGH' });
+            series.push({ meta: { companyId: companyId, dataType: dataType }, metrics: metrics, recordDate: recordDate,
+                createdAt: recordDate, quality: 'HIGH' });
+        }
+        db.historical_data.insertMany(regular, { ordered: false });
+        db.historical_data_ts.insertMany(series, { ordered: false });
+    }
+}
+
+function storage(name) {
+    const stats = db.runCommand({ collStats: name });
+    // For a time-series collection collStats reports the underlying bucket collection
+    return { storageMB: (stats.storageSize / 1048576).toFixed(1), indexMB: (stats.totalIndexSize / 1048576).toFixed(1) };
+}
+
+function percentile(sorted, p) {
+    return sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+}
+
+function rangeLatency(collection, filterFor) {
+    const timings = [];
+    let docs = 0;
+    for (let q = 0; q < queries; q++) {
+        const companyId = 'COMP' + String(Math.floor(Math.random() * companies)).padStart(5, '0');
+        const dataType = dataTypes[q % dataTypes.length];
+        const from = new Date(start.getTime() + Math.floor(Math.random() * (days - 30)) * 86400000);
+        const to = new Date(from.getTime() + 30 * 86400000);
+        const began = Date.now();
+        docs += db[collection].find(filterFor(companyId, dataType, from, to)).limit(1000).toArray().length;
+        timings.push(Date.now() - began);
+    }
+    timings.sort(function(a, b) { return a - b; });
+    return { p50ms: percentile(timings, 0.5), p95ms: percentile(timings, 0.95), p99ms: percentile(timings, 0.99),
+        avgDocs: Math.round(docs / queries) };
+}
+
+const regularFilter = function(companyId, dataType, from, to) {
+    return { companyId: companyId, dataType: dataType, recordDate: { \$gte: from, \$lte: to } };
+};
+const seriesFilter = function(companyId, dataType, from, to) {
+    return { 'meta.companyId': companyId, 'meta.dataType': dataType, recordDate: { \$gte: from, \$lte: to } };
+};
+
+// Warm up the cache before measuring
+rangeLatency('historical_data', regularFilter);
+rangeLatency('historical_data_ts', seriesFilter);
+
+print('\nStorage:');
+print('  historical_data    ' + JSON.stringify(storage('historical_data')));
+print('  historical_data_ts ' + JSON.stringify(storage('historical_data_ts')));
+
+print('\n30-day range queries (' + queries + ' each):');
+print('  historical_data    ' + JSON.stringify(rangeLatency('historical_data', regularFilter)));
+print('  historical_data_ts ' + JSON.stringify(rangeLatency('historical_data_ts', seriesFilter)));
+
+const plan = db.historical_data_ts.find(seriesFilter('COMP00000', 'ESG_RATING', start, new Date(start.getTime() + 30 * 86400000)))
+    .explain('executionStats');
+print('\nTime-series plan: ' + JSON.stringify(plan.executionStats ? {
+    nReturned: plan.executionStats.nReturned,
+    totalDocsExamined: plan.executionStats.totalDocsExamined
+} : 'see explain output'));
+"
+
+echo "Benchmark completed. Drop ${BENCH_DB} when no longer needed."
@@ -12,6 +12,26 @@ fi
 echo "Executing initial schema migration..."
 mongosh esg-dashboard src/main/resources/db/migration/001_initial_schema.js
 
+echo "Executing portfolio holdings index migration..."
+mongosh esg-dashboard src/main/resources/db/migration/002_portfolio_holdings_index.js
+
+echo "Executing portfolio client index migration..."
+mongosh esg-dashboard src/main/resources/db/migration/003_portfolio_client_index.js
+
+echo "Executing portfolio version migration..."
+mongosh esg-dashboard src/main/resources/db/migration/004_portfolio_version.js
+
+echo "Executing client exposure migration..."
+mongosh esg-dashboard src/main/resources/db/migration/005_client_exposures.js
+
+echo "Executing portfolio name search migration..."
+mongosh esg-dashboard src/main/resources/db/migration/006_portfolio_name_search.js
+
+if [ "${HISTORICAL_DATA_TIME_SERIES:-false}" = "true" ]; then
+    echo "Executing historical data time-series migration..."
+    mongosh esg-dashboard src/main/resources/db/migration/007_historical_data_timeseries.js
+fi
+
 # Verify migration
 echo "Verifying migration..."
 mongosh esg-dashboard --eval "
@@ -0,0 +1,94 @@
+package com.esg.dashboard.benchmark;
+
+import com.esg.dashboard.cache.codec.CodecRedisSerializer;
+import com.esg.dashboard.cache.codec.CompanyBinaryCodec;
+import com.esg.dashboard.config.RedisConfig;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение текущего JSON-сериализатора Redis и бинарного кодека компаний:
+ * время кодирования/декодирования. Размер значений проверяется в CodecRedisSerializerTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompanyCodecBenchmark {
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    @Param({"0", "20"})
+    public int additionalMetrics;
+
+    private RedisSerializer<Object> serializer;
+    private Company company;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = new CodecRedisSerializer(RedisConfig.jsonSerializer())
+                .register(new CompanyBinaryCodec(), "binary".equals(codec));
+        company = realisticCompany(additionalMetrics);
+        encoded = serializer.serialize(company);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(company);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+
+    static Company realisticCompany(int metricsCount) {
+        ESGRating rating = ESGRating.builder()
+                .overallScore(81.37)
+                .environmentalScore(77.12)
+                .socialScore(84.5)
+                .governanceScore(82.49)
+                .carbonFootprint(65.3)
+                .socialImpactScore(86.0)
+                .ratingGrade("AA")
+                .calculationDate(LocalDateTime.of(2024, 6, 3, 14, 22, 7, 481_000_000))
+                .ranking(42)
+                .build();
+
+        Map<String, Object> metrics = null;
+        if (metricsCount > 0) {
+            metrics = new HashMap<>();
+            for (int i = 0; i < metricsCount; i++) {
+                metrics.put("metric_" + i, i % 2 == 0 ? (Object) (i * 1.5) : "value-" + i);
+            }
+        }
+
+        return Company.builder()
+                .id("665e1f2ab3c4d5e6f7a8b9c0")
+                .companyId("HEALTH001")
+                .name("BioHealth Innovations")
+                .sector("Healthcare")
+                .industry("Biotechnology")
+                .currentRating(rating)
+                .additionalMetrics(metrics)
+                .createdAt(LocalDateTime.of(2023, 1, 15, 9, 0))
+                .updatedAt(LocalDateTime.of(2024, 6, 3, 14, 22, 7))
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.esg.dashboard.benchmark;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.service.scoring.CompanyScoreTable;
+import com.esg.dashboard.service.scoring.PortfolioScorer;
+import com.esg.dashboard.util.ESGCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчет агрегатов портфеля целиком, как в PortfolioService#calculateAggregateScores:
+ * прежний объектный путь (distinct-поток, пересборка позиций, распаковка Double, Math.pow)
+ * против PortfolioScorer.score вместе с построением CompanyScoreTable.
+ * Оба варианта получают компании из готовой карты - загрузка из кэша в замер не входит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PortfolioScoringBenchmark {
+
+    @Param({"10", "1000", "50000"})
+    public int holdings;
+
+    private List<PortfolioItem> items;
+    private Map<String, Company> companies;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int universe = Math.max(10, holdings / 2);
+        companies = new HashMap<>();
+        for (int i = 0; i < universe; i++) {
+            String companyId = "COMP" + i;
+            companies.put(companyId, Company.builder()
+                    .companyId(companyId)
+                    .name("Company " + i)
+                    .currentRating(ESGRating.builder()
+                            .overallScore(40 + random.nextDouble() * 60)
+                            .carbonFootprint(random.nextDouble() * 500)
+                            .socialImpactScore(30 + random.nextDouble() * 70)
+                            .build())
+                    .build());
+        }
+
+        items = new ArrayList<>(holdings);
+        for (int i = 0; i < holdings; i++) {
+            items.add(PortfolioItem.builder()
+                    .companyId("COMP" + random.nextInt(universe))
+                    .investmentAmount(1_000 + random.nextDouble() * 1_000_000)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public void scorer(Blackhole blackhole) {
+        Portfolio portfolio = newPortfolio();
+        Map<String, Company> companiesMap = loadCompanies(PortfolioScorer.companyIds(portfolio));
+        blackhole.consume(PortfolioScorer.score(portfolio, CompanyScoreTable.of(companiesMap.values())));
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        Portfolio portfolio = newPortfolio();
+        double totalInvestment = 0.0;
+        for (PortfolioItem item : portfolio.getItems()) {
+            if (item.getInvestmentAmount() != null && item.getInvestmentAmount() > 0) {
+                totalInvestment += item.getInvestmentAmount();
+            }
+        }
+        List<String> companyIds = portfolio.getItems().stream()
+                .map(PortfolioItem::getCompanyId)
+                .filter(java.util.Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<String, Company> companiesMap = loadCompanies(companyIds);
+
+        List<PortfolioItem> enrichedItems = new ArrayList<>();
+        double esg = 0.0;
+        double carbon = 0.0;
+        double social = 0.0;
+        for (PortfolioItem item : portfolio.getItems()) {
+            Company company = companiesMap.get(item.getCompanyId());
+            if (company != null && item.getInvestmentAmount() != null && item.getInvestmentAmount() > 0) {
+                double weight = item.getInvestmentAmount() / totalInvestment;
+                enrichedItems.add(PortfolioItem.builder()
+                        .companyId(item.getCompanyId())
+                        .companyName(company.getName())
+                        .investmentAmount(item.getInvestmentAmount())
+                        .weight(weight)
+                        .currentRating(company.getCurrentRating())
+                        .build());
+                if (company.getCurrentRating() != null) {
+                    if (company.getCurrentRating().getOverallScore() != null) {
+                        esg += company.getCurrentRating().getOverallScore() * weight;
+                    }
+                    if (company.getCurrentRating().getCarbonFootprint() != null) {
+                        carbon += company.getCurrentRating().getCarbonFootprint() * weight;
+                    }
+                    if (company.getCurrentRating().getSocialImpactScore() != null) {
+                        social += company.getCurrentRating().getSocialImpactScore() * weight;
+                    }
+                }
+            }
+        }
+
+        portfolio.setItems(enrichedItems);
+        portfolio.setAggregateScores(PortfolioAggregate.builder()
+                .totalEsgScore(powRound(esg, 2))
+                .carbonFootprint(powRound(carbon, 2))
+                .socialImpactScore(powRound(social, 2))
+                .averageRating(ESGCalculator.calculateRatingGrade(esg))
+                .totalCompanies(enrichedItems.size())
+                .totalInvestment(powRound(totalInvestment, 2))
+                .build());
+        blackhole.consume(portfolio);
+    }
+
+    // Каждый вызов оценивает свой портфель: PortfolioScorer заменяет список позиций на месте
+    private Portfolio newPortfolio() {
+        return Portfolio.builder()
+                .portfolioId("PORT001")
+                .items(new ArrayList<>(items))
+                .build();
+    }
+
+    // Замена CompanyService#batchLoadCompanies: компании по уникальным ID позиций
+    private Map<String, Company> loadCompanies(List<String> companyIds) {
+        Map<String, Company> companiesMap = new HashMap<>();
+        for (String companyId : companyIds) {
+            companiesMap.put(companyId, companies.get(companyId));
+        }
+        return companiesMap;
+    }
+
+    private static double powRound(double value, int places) {
+        long factor = (long) Math.pow(10, places);
+        return (double) Math.round(value * factor) / factor;
+    }
+}
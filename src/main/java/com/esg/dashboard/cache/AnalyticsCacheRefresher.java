@@ -0,0 +1,94 @@
+package com.esg.dashboard.cache;
+
+import com.esg.dashboard.event.CompanyUpdatedEvent;
+import com.esg.dashboard.event.RatingUpdatedEvent;
+import com.esg.dashboard.service.AnalyticsService;
+import com.esg.dashboard.service.DashboardMetricsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пересчет кэшированной аналитики и метрик дашборда после изменений компаний.
+ * События только помечают кэш устаревшим; пересчет выполняется, когда поток обновлений
+ * затих на quiet-ms (но не реже max-delay-ms), поэтому пачка обновлений дает один пересчет.
+ * Кэш analytics лежит в Redis, так что пересчет на одном узле виден всем.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnalyticsCacheRefresher {
+
+    private static final long CLEAN = 0;
+
+    private final CacheManager cacheManager;
+    private final AnalyticsService analyticsService;
+    private final DashboardMetricsService dashboardMetricsService;
+
+    @Value("${app.cache.analytics-refresh.quiet-ms:2000}")
+    private long quietMs = 2000;
+
+    @Value("${app.cache.analytics-refresh.max-delay-ms:30000}")
+    private long maxDelayMs = 30000;
+
+    // Время первого и последнего необработанного изменения (0 - изменений нет)
+    private final AtomicLong firstChangeAt = new AtomicLong(CLEAN);
+    private final AtomicLong lastChangeAt = new AtomicLong(CLEAN);
+
+    @EventListener
+    public void onCompanyUpdated(CompanyUpdatedEvent event) {
+        markStale();
+    }
+
+    @EventListener
+    public void onRatingUpdated(RatingUpdatedEvent event) {
+        markStale();
+    }
+
+    void markStale() {
+        long now = System.currentTimeMillis();
+        lastChangeAt.set(now);
+        firstChangeAt.compareAndSet(CLEAN, now);
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.analytics-refresh.check-ms:500}")
+    public void refreshIfStale() {
+        long first = firstChangeAt.get();
+        if (first == CLEAN) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastChangeAt.get() < quietMs && now - first < maxDelayMs) {
+            return;
+        }
+        // Изменения, пришедшие во время пересчета, запустят следующий
+        if (!firstChangeAt.compareAndSet(first, CLEAN)) {
+            return;
+        }
+
+        try {
+            MDC.put("operation", "REFRESH_ANALYTICS_CACHE");
+            Cache cache = cacheManager.getCache(AnalyticsService.ANALYTICS_CACHE);
+            if (cache != null) {
+                cache.evict(AnalyticsService.SECTOR_ANALYTICS_KEY);
+                cache.evict(DashboardMetricsService.OVERALL_METRICS_KEY);
+            }
+            // Вызовы через прокси снова заполняют кэш
+            analyticsService.getSectorAnalytics();
+            dashboardMetricsService.getOverallMetrics();
+            log.info("Analytics cache recomputed after company updates");
+        } catch (Exception e) {
+            log.error("Error refreshing analytics cache: {}", e.getMessage(), e);
+        } finally {
+            MDC.clear();
+        }
+    }
+}
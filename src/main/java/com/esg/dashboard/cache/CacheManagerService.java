@@ -2,12 +2,25 @@ package com.esg.dashboard.cache;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -15,17 +28,27 @@ import java.util.concurrent.TimeUnit;
 public class CacheManagerService {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final CompanyNearCache companyNearCache;
+    private final CacheNamespaces cacheNamespaces;
 
-    private static final String COMPANY_CACHE_PREFIX = "company:";
-    private static final String PORTFOLIO_CACHE_PREFIX = "portfolio:";
     private static final String RANKING_KEY = "esg:ranking";
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    // Память оценивается по каждому N-му ключу
+    @Value("${app.cache.stats.memory-sample-rate:100}")
+    private int memorySampleRate = 100;
+
+    private volatile KeyspaceSnapshot keyspaceSnapshot =
+            new KeyspaceSnapshot(Map.of(), Map.of(), 0, null);
 
     public void evictCompanyCache(String companyId) {
         try {
             org.slf4j.MDC.put("companyId", companyId);
             org.slf4j.MDC.put("operation", "EVICT_COMPANY_CACHE");
-            String cacheKey = COMPANY_CACHE_PREFIX + companyId;
+            String cacheKey = cacheNamespaces.key(CacheNamespaces.COMPANY, companyId);
             redisTemplate.delete(cacheKey);
+            companyNearCache.invalidate(companyId);
+            companyNearCache.publishInvalidation(companyId);
             log.debug("Company cache evicted: {}", companyId);
         } catch (Exception e) {
             log.warn("Failed to evict company cache {}: {}", companyId, e.getMessage());
@@ -38,7 +61,7 @@ public class CacheManagerService {
         try {
             org.slf4j.MDC.put("portfolioId", portfolioId);
             org.slf4j.MDC.put("operation", "EVICT_PORTFOLIO_CACHE");
-            String cacheKey = PORTFOLIO_CACHE_PREFIX + portfolioId;
+            String cacheKey = cacheNamespaces.key(CacheNamespaces.PORTFOLIO, portfolioId);
             redisTemplate.delete(cacheKey);
             log.debug("Portfolio cache evicted: {}", portfolioId);
         } catch (Exception e) {
@@ -48,17 +71,15 @@ public class CacheManagerService {
         }
     }
 
+    /**
+     * Очищает все пространства имен кэша (компании, портфели, аналитика).
+     * Рейтинг esg:ranking, счетчики rate limit и прочие служебные ключи не затрагиваются.
+     */
     public void clearAllCache() {
         try {
             org.slf4j.MDC.put("operation", "CLEAR_ALL_CACHE");
-            log.info("Clearing all cache");
-            Set<String> keys = redisTemplate.keys("*");
-            if (keys != null && !keys.isEmpty()) {
-                redisTemplate.delete(keys);
-                log.info("All cache cleared. Total keys deleted: {}", keys.size());
-            } else {
-                log.debug("Cache is empty, nothing to clear");
-            }
+            log.info("Clearing all cache namespaces");
+            CacheNamespaces.ALL.forEach(this::clearNamespace);
         } catch (Exception e) {
             log.error("Error clearing cache: {}", e.getMessage(), e);
         } finally {
@@ -66,6 +87,21 @@ public class CacheManagerService {
         }
     }
 
+    /**
+     * Очистка одного пространства имен за O(1): новое поколение вместо удаления ключей.
+     * Старые ключи удалит Redis по TTL.
+     */
+    public long clearNamespace(String namespace) {
+        CacheNamespaces.requireKnown(namespace);
+        long generation = cacheNamespaces.bump(namespace);
+        if (CacheNamespaces.COMPANY.equals(namespace)) {
+            companyNearCache.invalidateAll();
+            companyNearCache.publishInvalidateAll();
+        }
+        log.info("Cache namespace {} cleared, generation {}", namespace, generation);
+        return generation;
+    }
+
     public void refreshCompanyRanking() {
         try {
             org.slf4j.MDC.put("operation", "REFRESH_RANKING");
@@ -80,16 +116,24 @@ public class CacheManagerService {
         }
     }
 
-    @Scheduled(fixedRate = 3600000) // Каждый час
+    /**
+     * Фоновый проход SCAN по keyspace: считает ключи и оценивает память по префиксам.
+     * Результат сохраняется снимком, который отдаёт getCacheStats без обращения к keyspace.
+     * Счетчики по префиксам не ведутся на каждой записи: снимок может отставать на интервал прохода,
+     * поэтому его возраст возвращается вместе со статистикой (snapshotAgeSeconds).
+     */
+    @Scheduled(fixedDelayString = "${app.cache.stats.sweep-interval-ms:3600000}")
     public void cleanupExpiredCache() {
         try {
             org.slf4j.MDC.put("operation", "CLEANUP_EXPIRED_CACHE");
-            // Redis автоматически обрабатывает TTL, но мы можем логировать статистику
-            Set<String> allKeys = redisTemplate.keys("*");
-            long dbSize = allKeys != null ? allKeys.size() : 0;
-            log.info("Current Redis cache size: {} keys", dbSize);
+            long started = System.currentTimeMillis();
+            KeyspaceAccumulator accumulator = new KeyspaceAccumulator(memorySampleRate);
+            scan("*", batch -> accumulator.sampleMemory(batch, this::memoryUsage));
+            keyspaceSnapshot = accumulator.toSnapshot();
+            log.info("Keyspace sweep finished: {} keys in {} ms",
+                    accumulator.totalKeys, System.currentTimeMillis() - started);
         } catch (Exception e) {
-            log.warn("Error checking cache size: {}", e.getMessage());
+            log.warn("Error sweeping cache keyspace: {}", e.getMessage());
         } finally {
             org.slf4j.MDC.clear();
         }
@@ -99,22 +143,25 @@ public class CacheManagerService {
         try {
             org.slf4j.MDC.put("operation", "GET_CACHE_STATS");
             log.debug("Getting cache statistics");
-            Set<String> allKeys = redisTemplate.keys("*");
-            Set<String> companyKeysSet = redisTemplate.keys(COMPANY_CACHE_PREFIX + "*");
-            Set<String> portfolioKeysSet = redisTemplate.keys(PORTFOLIO_CACHE_PREFIX + "*");
-            
-            Long totalKeys = allKeys != null ? (long) allKeys.size() : 0L;
-            Long companyKeys = companyKeysSet != null ? (long) companyKeysSet.size() : 0L;
-            Long portfolioKeys = portfolioKeysSet != null ? (long) portfolioKeysSet.size() : 0L;
+            // DBSIZE и ZCARD - O(1), остальное берется из последнего снимка
+            Long totalKeys = redisTemplate.execute((RedisCallback<Long>) connection -> connection.serverCommands().dbSize());
+            Long rankedCompanies = redisTemplate.opsForZSet().zCard(RANKING_KEY);
+            KeyspaceSnapshot snapshot = keyspaceSnapshot;
 
             CacheStats stats = CacheStats.builder()
-                    .totalKeys(totalKeys)
-                    .companyKeys(companyKeys)
-                    .portfolioKeys(portfolioKeys)
-                    .rankingKeys(0L) // Можно вычислить отдельно при необходимости
+                    .totalKeys(totalKeys != null ? totalKeys : 0L)
+                    .companyKeys(snapshot.keysByPrefix().getOrDefault(CacheNamespaces.COMPANY, 0L))
+                    .portfolioKeys(snapshot.keysByPrefix().getOrDefault(CacheNamespaces.PORTFOLIO, 0L))
+                    .rankingKeys(snapshot.rankingKeys())
+                    .rankedCompanies(rankedCompanies != null ? rankedCompanies : 0L)
+                    .keysByPrefix(snapshot.keysByPrefix())
+                    .memoryBytesByPrefix(snapshot.memoryBytesByPrefix())
+                    .sampledAt(snapshot.sampledAt())
+                    .snapshotAgeSeconds(snapshot.sampledAt() != null
+                            ? Duration.between(snapshot.sampledAt(), LocalDateTime.now()).getSeconds() : null)
                     .build();
-            
-            log.debug("Cache statistics retrieved: total keys {}", totalKeys);
+
+            log.debug("Cache statistics retrieved: total keys {}", stats.getTotalKeys());
             return stats;
         } catch (Exception e) {
             log.warn("Error getting cache statistics: {}", e.getMessage());
@@ -123,9 +170,115 @@ public class CacheManagerService {
                     .companyKeys(0L)
                     .portfolioKeys(0L)
                     .rankingKeys(0L)
+                    .rankedCompanies(0L)
+                    .keysByPrefix(Map.of())
+                    .memoryBytesByPrefix(Map.of())
                     .build();
         } finally {
             org.slf4j.MDC.clear();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Обходит ключи по шаблону курсором SCAN и отдает их пачками. Возвращает число обработанных ключей.
+     */
+    private long scan(String pattern, Consumer<List<String>> batchConsumer) {
+        long processed = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_BATCH_SIZE).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            List<String> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= SCAN_BATCH_SIZE) {
+                    batchConsumer.accept(batch);
+                    processed += batch.size();
+                    batch = new ArrayList<>(SCAN_BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+                processed += batch.size();
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * MEMORY USAGE для пачки ключей одним пайплайном
+     */
+    private List<Object> memoryUsage(List<String> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8),
+                        key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    static String prefixOf(String key) {
+        int separator = key.indexOf(':');
+        return separator > 0 ? key.substring(0, separator) : key;
+    }
+
+    private record KeyspaceSnapshot(Map<String, Long> keysByPrefix, Map<String, Long> memoryBytesByPrefix,
+                                    long rankingKeys, LocalDateTime sampledAt) {
+    }
+
+    /**
+     * Накопитель одного прохода: точные счетчики по префиксам и выборочная оценка памяти.
+     * Первый ключ каждого префикса всегда попадает в выборку, чтобы крупные одиночные ключи
+     * (например, esg:ranking) не терялись.
+     */
+    private static final class KeyspaceAccumulator {
+        private final int sampleRate;
+        private final Map<String, Long> counts = new TreeMap<>();
+        private final Map<String, Long> sampledBytes = new HashMap<>();
+        private final Map<String, Long> sampledKeys = new HashMap<>();
+        private long rankingKeys;
+        private long totalKeys;
+
+        KeyspaceAccumulator(int sampleRate) {
+            this.sampleRate = Math.max(1, sampleRate);
+        }
+
+        void sampleMemory(List<String> batch, Function<List<String>, List<Object>> memoryUsage) {
+            List<String> sample = new ArrayList<>();
+            for (String key : batch) {
+                String prefix = prefixOf(key);
+                boolean firstOfPrefix = !counts.containsKey(prefix);
+                counts.merge(prefix, 1L, Long::sum);
+                if (key.startsWith(RANKING_KEY)) {
+                    rankingKeys++;
+                }
+                if (firstOfPrefix || totalKeys % sampleRate == 0) {
+                    sample.add(key);
+                }
+                totalKeys++;
+            }
+
+            List<Object> usage = memoryUsage.apply(sample);
+            for (int i = 0; i < sample.size() && i < usage.size(); i++) {
+                if (usage.get(i) instanceof Number bytes) {
+                    String prefix = prefixOf(sample.get(i));
+                    sampledBytes.merge(prefix, bytes.longValue(), Long::sum);
+                    sampledKeys.merge(prefix, 1L, Long::sum);
+                }
+            }
+        }
+
+        KeyspaceSnapshot toSnapshot() {
+            Map<String, Long> memory = new TreeMap<>();
+            counts.forEach((prefix, count) -> {
+                long keys = sampledKeys.getOrDefault(prefix, 0L);
+                if (keys > 0) {
+                    memory.put(prefix, sampledBytes.get(prefix) * count / keys);
+                }
+            });
+            return new KeyspaceSnapshot(Map.copyOf(counts), Map.copyOf(memory), rankingKeys, LocalDateTime.now());
+        }
+    }
+}
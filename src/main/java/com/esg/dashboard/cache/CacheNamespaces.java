@@ -0,0 +1,112 @@
+package com.esg.dashboard.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поколения пространств имен кэша. Ключи строятся как {namespace}:v{gen}:{id},
+ * поэтому очистка пространства - один HINCRBY: старые ключи перестают читаться
+ * и удаляются Redis по TTL. Текущие поколения держатся локально и обновляются через pub/sub.
+ */
+@Slf4j
+@Component
+public class CacheNamespaces implements MessageListener {
+
+    public static final String COMPANY = "company";
+    public static final String PORTFOLIO = "portfolio";
+    public static final String ANALYTICS = "analytics";
+    public static final List<String> ALL = List.of(COMPANY, PORTFOLIO, ANALYTICS);
+
+    static final String GENERATIONS_KEY = "esg:cache:generations";
+    static final String GENERATION_CHANNEL = "esg:cache:generation";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisContainer;
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    public CacheNamespaces(RedisTemplate<String, Object> redisTemplate,
+                           RedisMessageListenerContainer redisContainer) {
+        this.redisTemplate = redisTemplate;
+        this.redisContainer = redisContainer;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisContainer.addMessageListener(this, new ChannelTopic(GENERATION_CHANNEL));
+        refresh();
+    }
+
+    public static void requireKnown(String namespace) {
+        if (!ALL.contains(namespace)) {
+            throw new IllegalArgumentException("Unknown cache namespace: " + namespace);
+        }
+    }
+
+    public long generation(String namespace) {
+        return generations.getOrDefault(namespace, 0L);
+    }
+
+    public String prefix(String namespace) {
+        return namespace + ":v" + generation(namespace) + ":";
+    }
+
+    public String key(String namespace, String id) {
+        return prefix(namespace) + id;
+    }
+
+    /**
+     * Переводит пространство имен на новое поколение и оповещает остальные узлы
+     */
+    public long bump(String namespace) {
+        requireKnown(namespace);
+        Long next = redisTemplate.opsForHash().increment(GENERATIONS_KEY, namespace, 1);
+        generations.put(namespace, next);
+        try {
+            redisTemplate.convertAndSend(GENERATION_CHANNEL, namespace);
+        } catch (Exception e) {
+            log.warn("Failed to publish cache generation change for {}: {}", namespace, e.getMessage());
+        }
+        log.info("Cache namespace {} moved to generation {}", namespace, next);
+        return next;
+    }
+
+    /**
+     * Перечитывает поколения из Redis. Периодический вызов страхует от потерянных сообщений pub/sub.
+     */
+    @Scheduled(fixedDelayString = "${app.cache.generations.refresh-ms:30000}")
+    public void refresh() {
+        try {
+            Map<Object, Object> stored = redisTemplate.opsForHash().entries(GENERATIONS_KEY);
+            stored.forEach((namespace, generation) -> {
+                if (generation instanceof Number number) {
+                    generations.put(String.valueOf(namespace), number.longValue());
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to load cache generations: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            MDC.put("operation", "CACHE_GENERATION_CHANGE");
+            refresh();
+            log.debug("Cache generations reloaded: {}", generations);
+        } finally {
+            MDC.clear();
+        }
+    }
+}
@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+import java.util.Map;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -14,5 +17,12 @@ public class CacheStats {
     private Long companyKeys;
     private Long portfolioKeys;
     private Long rankingKeys;
+    private Long rankedCompanies;
+    private Map<String, Long> keysByPrefix;
+    private Map<String, Long> memoryBytesByPrefix;
+    // Время последнего прохода SCAN, по которому посчитаны счетчики префиксов
+    private LocalDateTime sampledAt;
+    // Возраст этого снимка в секундах на момент запроса (null, если прохода еще не было)
+    private Long snapshotAgeSeconds;
 }
 
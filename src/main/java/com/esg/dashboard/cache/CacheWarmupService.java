@@ -0,0 +1,179 @@
+package com.esg.dashboard.cache;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.repository.CompanyRepository;
+import com.esg.dashboard.service.CompanyCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Прогрев esg:ranking и горячих ключей company:{id} после деплоя или сброса Redis.
+ * Компании читаются курсором от лучших к худшим и пишутся в Redis пайплайном пачками:
+ * в рейтинг попадают все компании с баллом, в company:{id} - первые hot-limit.
+ * Пока первый прогрев не завершен, узел не готов принимать трафик (см. CacheWarmupHealthIndicator).
+ */
+@Slf4j
+@Service
+public class CacheWarmupService {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED, DISABLED }
+
+    private final CompanyRepository companyRepository;
+    private final CompanyCacheService companyCacheService;
+    private final Executor taskExecutor;
+
+    @Value("${app.cache.warmup.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.cache.warmup.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.cache.warmup.hot-limit:1000}")
+    private long hotLimit = 1000;
+
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.PENDING);
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong cached = new AtomicLong();
+    private volatile long total;
+    private volatile boolean initialWarmupDone;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String lastError;
+
+    public CacheWarmupService(CompanyRepository companyRepository,
+                              CompanyCacheService companyCacheService,
+                              @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.companyRepository = companyRepository;
+        this.companyCacheService = companyCacheService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            status.set(Status.DISABLED);
+            initialWarmupDone = true;
+            log.info("Cache warm-up disabled");
+            return;
+        }
+        start();
+    }
+
+    /**
+     * Запускает прогрев в фоне. Возвращает false, если прогрев уже идет.
+     */
+    public boolean start() {
+        Status current = status.get();
+        if (current == Status.RUNNING || !status.compareAndSet(current, Status.RUNNING)) {
+            return false;
+        }
+        taskExecutor.execute(this::warmUp);
+        return true;
+    }
+
+    /**
+     * Первый прогрев после старта завершен (успешно или нет) - узел можно пускать в балансировку.
+     * Если прогрев не удался, чтения просто уходят в MongoDB, как и без него.
+     */
+    public boolean isInitialWarmupDone() {
+        return initialWarmupDone;
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        long done = processed.get();
+        progress.put("status", status.get().name());
+        progress.put("processed", done);
+        progress.put("total", total);
+        progress.put("cachedCompanies", cached.get());
+        if (total > 0) {
+            progress.put("percent", Math.min(100.0, Math.round(done * 1000.0 / total) / 10.0));
+        }
+        if (startedAt != null) {
+            progress.put("startedAt", startedAt.toString());
+            LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+            progress.put("elapsedMs", Duration.between(startedAt, end).toMillis());
+        }
+        if (finishedAt != null) {
+            progress.put("finishedAt", finishedAt.toString());
+        }
+        if (lastError != null) {
+            progress.put("error", lastError);
+        }
+        return progress;
+    }
+
+    private void warmUp() {
+        try {
+            MDC.put("operation", "CACHE_WARMUP");
+            processed.set(0);
+            cached.set(0);
+            lastError = null;
+            finishedAt = null;
+            startedAt = LocalDateTime.now();
+            total = companyRepository.count();
+            log.info("Starting cache warm-up for up to {} companies", total);
+
+            try (Stream<Company> companies = companyRepository.streamRankedCompanies()) {
+                List<Company> batch = new ArrayList<>(batchSize);
+                Iterator<Company> iterator = companies.iterator();
+                while (iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    if (batch.size() >= batchSize) {
+                        flush(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                flush(batch);
+            }
+
+            status.set(Status.COMPLETED);
+            log.info("Cache warm-up completed: {} companies ranked, {} cached in {} ms",
+                    processed.get(), cached.get(), Duration.between(startedAt, LocalDateTime.now()).toMillis());
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            status.set(Status.FAILED);
+            log.error("Cache warm-up failed after {} companies: {}", processed.get(), e.getMessage(), e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            initialWarmupDone = true;
+            MDC.clear();
+        }
+    }
+
+    private void flush(List<Company> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Граница горячих компаний может прийтись на середину пачки
+        int hotInBatch = (int) Math.max(0, Math.min(batch.size(), hotLimit - processed.get()));
+        if (hotInBatch > 0) {
+            companyCacheService.warmCompanies(batch.subList(0, hotInBatch), true);
+            cached.addAndGet(hotInBatch);
+        }
+        if (hotInBatch < batch.size()) {
+            companyCacheService.warmCompanies(batch.subList(hotInBatch, batch.size()), false);
+        }
+
+        long done = processed.addAndGet(batch.size());
+        log.debug("Cache warm-up progress: {}/{}", done, total);
+    }
+}
@@ -0,0 +1,212 @@
+package com.esg.dashboard.cache;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.repository.CompanyRepository;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Фильтр Блума по всем известным узлу companyId: ID не из фильтра отсекаются без обращения к Redis и БД.
+ * Новые компании добавляются сразу на узле, который их сохранил, и по тому же каналу pub/sub,
+ * что и инвалидация L1. Доставка pub/sub не гарантирована, поэтому каждая запись новой компании
+ * также увеличивает общее поколение {@link #GENERATION_KEY}; узел сверяет его не чаще раза
+ * в check-interval-ms и перестраивает фильтр, если поколение изменилось. Внешние загрузчики (ETL,
+ * скрипты миграций) после записи компаний тоже увеличивают этот ключ.
+ * Пока фильтр не построен или поколение давно не удавалось сверить, фильтр пропускает все ID.
+ */
+@Slf4j
+@Component
+public class CompanyIdFilter implements MessageListener {
+
+    public static final String GENERATION_KEY = "esg:cache:company-ids:generation";
+    // Сколько пропущенных сверок поколения фильтр еще считается актуальным
+    private static final int STALE_AFTER_CHECKS = 3;
+
+    private final CompanyRepository companyRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisContainer;
+    private final Counter rejections;
+    private final long minExpectedInsertions;
+    private final double falsePositiveRate;
+    private final long checkIntervalMs;
+
+    private volatile BloomFilter<String> filter;
+    // Поколение, по которому построен фильтр, и время последней успешной сверки с Redis
+    private volatile long builtGeneration = -1;
+    private volatile long verifiedAt;
+    // Фильтр, который сейчас перестраивается: новые ID пишутся и в него
+    private volatile BloomFilter<String> building;
+
+    public CompanyIdFilter(CompanyRepository companyRepository,
+                           RedisTemplate<String, Object> redisTemplate,
+                           RedisMessageListenerContainer redisContainer,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.cache.company-filter.expected-insertions:100000}") long minExpectedInsertions,
+                           @Value("${app.cache.company-filter.fpp:0.01}") double falsePositiveRate,
+                           @Value("${app.cache.company-filter.check-interval-ms:5000}") long checkIntervalMs) {
+        this.companyRepository = companyRepository;
+        this.redisTemplate = redisTemplate;
+        this.redisContainer = redisContainer;
+        this.rejections = meterRegistry.counter("esg.cache.filter.rejections", "cache", "company-ids");
+        this.minExpectedInsertions = minExpectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisContainer.addMessageListener(this, new ChannelTopic(CompanyNearCache.INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * false - компании с таким ID нет; true - компания возможно есть (или фильтру сейчас нельзя доверять)
+     */
+    public boolean mightContain(String companyId) {
+        BloomFilter<String> current = filter;
+        if (current == null || !isFresh() || current.mightContain(companyId)) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    public void put(String companyId) {
+        if (companyId == null) {
+            return;
+        }
+        BloomFilter<String> current = filter;
+        if (current != null) {
+            current.put(companyId);
+        }
+        BloomFilter<String> next = building;
+        if (next != null) {
+            next.put(companyId);
+        }
+    }
+
+    /**
+     * Добавляет ID только что сохраненной компании и сообщает остальным узлам, что фильтры устарели
+     */
+    public void announce(String companyId) {
+        put(companyId);
+        try {
+            redisTemplate.opsForValue().increment(GENERATION_KEY);
+        } catch (Exception e) {
+            log.warn("Failed to bump company ID filter generation for {}: {}", companyId, e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    private boolean isFresh() {
+        return System.currentTimeMillis() - verifiedAt <= checkIntervalMs * STALE_AFTER_CHECKS;
+    }
+
+    /**
+     * Сверка поколения: одно чтение из Redis за интервал, перестройка - только если поколение изменилось
+     */
+    @Scheduled(fixedDelayString = "${app.cache.company-filter.check-interval-ms:5000}")
+    public void checkGeneration() {
+        if (filter == null) {
+            return;
+        }
+        try {
+            long generation = currentGeneration();
+            if (generation == builtGeneration) {
+                verifiedAt = System.currentTimeMillis();
+                return;
+            }
+            log.debug("Company ID filter generation changed {} -> {}, rebuilding", builtGeneration, generation);
+        } catch (Exception e) {
+            log.warn("Failed to check company ID filter generation: {}", e.getMessage());
+            return;
+        }
+        rebuild();
+    }
+
+    private long currentGeneration() {
+        Object stored = redisTemplate.opsForValue().get(GENERATION_KEY);
+        if (stored instanceof Number number) {
+            return number.longValue();
+        }
+        return stored != null ? Long.parseLong(stored.toString()) : 0L;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Периодическая перестройка: фильтр нельзя расширить, а удаленные компании из него не уходят
+     */
+    @Scheduled(initialDelayString = "${app.cache.company-filter.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${app.cache.company-filter.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        try {
+            MDC.put("operation", "REBUILD_COMPANY_FILTER");
+            // Поколение читается до обхода: компания, записанная во время обхода, снова изменит его
+            long generation = currentGeneration();
+            long expected = Math.max(minExpectedInsertions, companyRepository.count() * 2);
+            BloomFilter<String> next = BloomFilter.create(
+                    Funnels.stringFunnel(StandardCharsets.UTF_8), expected, falsePositiveRate);
+            building = next;
+
+            long loaded = 0;
+            try (Stream<Company> companies = companyRepository.streamAllCompanyIds()) {
+                for (Company company : (Iterable<Company>) companies::iterator) {
+                    if (company.getCompanyId() != null) {
+                        next.put(company.getCompanyId());
+                        loaded++;
+                    }
+                }
+            }
+
+            filter = next;
+            builtGeneration = generation;
+            verifiedAt = System.currentTimeMillis();
+            log.info("Company ID filter rebuilt with {} IDs (capacity {}, generation {})", loaded, expected, generation);
+        } catch (Exception e) {
+            log.error("Failed to rebuild company ID filter: {}", e.getMessage(), e);
+        } finally {
+            building = null;
+            MDC.clear();
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (payload instanceof String body) {
+                String companyId = body.substring(body.indexOf(':') + 1);
+                // "*" - сброс всего L1, к составу компаний отношения не имеет
+                if (!companyId.isEmpty() && !"*".equals(companyId)) {
+                    put(companyId);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to process company ID filter update: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.esg.dashboard.cache;
+
+import com.esg.dashboard.model.Company;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Локальный (L1) кэш компаний в памяти процесса перед Redis (L2).
+ * Ограничен по размеру и TTL; при изменении компании на любом узле
+ * запись инвалидируется на всех узлах через Redis pub/sub.
+ */
+@Slf4j
+@Component
+public class CompanyNearCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "esg:cache:company:invalidate";
+    public static final String CACHE_NAME = "company-l1";
+    private static final String INVALIDATE_ALL = "*";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisContainer;
+    private final Cache<String, Company> cache;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public CompanyNearCache(RedisTemplate<String, Object> redisTemplate,
+                            RedisMessageListenerContainer redisContainer,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.cache.near.max-size:1000}") long maxSize,
+                            @Value("${app.cache.near.ttl-seconds:60}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.redisContainer = redisContainer;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("esg.cache.hit.rate", cache, c -> c.stats().hitRate())
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        log.info("Company near cache configured with maxSize: {}, ttl: {}s", maxSize, ttlSeconds);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        log.debug("Company near cache subscribed to channel: {}", INVALIDATION_CHANNEL);
+    }
+
+    public Company get(String companyId) {
+        return cache.getIfPresent(companyId);
+    }
+
+    public void put(Company company) {
+        cache.put(company.getCompanyId(), company);
+    }
+
+    public void invalidate(String companyId) {
+        cache.invalidate(companyId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Оповещает остальные узлы о том, что их L1-запись для компании устарела
+     */
+    public void publishInvalidation(String companyId) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + ":" + companyId);
+        } catch (Exception e) {
+            log.warn("Failed to publish near cache invalidation for {}: {}", companyId, e.getMessage());
+        }
+    }
+
+    public void publishInvalidateAll() {
+        publishInvalidation(INVALIDATE_ALL);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            MDC.put("operation", "NEAR_CACHE_INVALIDATION");
+            Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (!(payload instanceof String body)) {
+                log.warn("Unexpected near cache invalidation payload: {}", payload);
+                return;
+            }
+
+            int separator = body.indexOf(':');
+            if (separator < 0) {
+                return;
+            }
+            String origin = body.substring(0, separator);
+            String companyId = body.substring(separator + 1);
+
+            // Собственные сообщения пропускаем: локальный кэш уже актуален
+            if (nodeId.equals(origin)) {
+                return;
+            }
+
+            if (INVALIDATE_ALL.equals(companyId)) {
+                cache.invalidateAll();
+                log.debug("Near cache fully invalidated by node {}", origin);
+            } else {
+                cache.invalidate(companyId);
+                log.debug("Near cache entry {} invalidated by node {}", companyId, origin);
+            }
+        } catch (Exception e) {
+            log.error("Error processing near cache invalidation: {}", e.getMessage(), e);
+        } finally {
+            MDC.clear();
+        }
+    }
+}
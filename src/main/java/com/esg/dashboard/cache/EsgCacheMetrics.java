@@ -0,0 +1,43 @@
+package com.esg.dashboard.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики локальных кэшей под именами esg_cache_*, которые использует дашборд Grafana:
+ * esg_cache_gets_total{result}, esg_cache_evictions_total, esg_cache_size,
+ * esg_cache_hit_rate и esg_cache_load_seconds.
+ */
+public final class EsgCacheMetrics {
+
+    private EsgCacheMetrics() {
+    }
+
+    public static void monitor(MeterRegistry registry, Cache<?, ?> cache, String cacheName) {
+        FunctionCounter.builder("esg.cache.gets", cache, c -> c.stats().hitCount())
+                .tag("cache", cacheName).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("esg.cache.gets", cache, c -> c.stats().missCount())
+                .tag("cache", cacheName).tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("esg.cache.evictions", cache, c -> c.stats().evictionCount())
+                .tag("cache", cacheName)
+                .register(registry);
+        Gauge.builder("esg.cache.size", cache, Cache::estimatedSize)
+                .tag("cache", cacheName)
+                .register(registry);
+        Gauge.builder("esg.cache.hit.rate", cache, c -> c.stats().hitRate())
+                .tag("cache", cacheName)
+                .register(registry);
+        FunctionTimer.builder("esg.cache.load", cache,
+                        c -> c.stats().loadCount(),
+                        c -> c.stats().totalLoadTime(), TimeUnit.NANOSECONDS)
+                .tag("cache", cacheName)
+                .register(registry);
+    }
+}
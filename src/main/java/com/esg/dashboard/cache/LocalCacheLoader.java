@@ -0,0 +1,12 @@
+package com.esg.dashboard.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+/**
+ * Загрузчик для локального кэша с refreshAfterWrite: по ключу заново вычисляет значение,
+ * пока читатели продолжают получать прежнее. Бин регистрируется для кэша cacheName().
+ */
+public interface LocalCacheLoader extends CacheLoader<Object, Object> {
+
+    String cacheName();
+}
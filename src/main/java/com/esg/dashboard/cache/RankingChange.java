@@ -0,0 +1,20 @@
+package com.esg.dashboard.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Позиция компании в рейтинге до и после обновления (1-based, null если компании не было в рейтинге)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RankingChange {
+    private Integer previousRank;
+    private Integer newRank;
+
+    public boolean isChanged() {
+        return previousRank != null && newRank != null && !previousRank.equals(newRank);
+    }
+}
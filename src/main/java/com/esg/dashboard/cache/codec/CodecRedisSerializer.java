@@ -0,0 +1,93 @@
+package com.esg.dashboard.cache.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Сериализатор значений Redis с подключаемыми кодеками.
+ * Типы с включенным кодеком пишутся в формате [MAGIC, id кодека, версия схемы, данные],
+ * остальные - через резервный сериализатор (JSON). При чтении формат определяется по первому байту,
+ * поэтому старые JSON-значения продолжают читаться после включения бинарного кодека.
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xEC;
+    private static final int HEADER_LENGTH = 3;
+
+    private final RedisSerializer<Object> fallback;
+    private final Map<Class<?>, RedisValueCodec<?>> encoders = new HashMap<>();
+    private final Map<Byte, RedisValueCodec<?>> decoders = new HashMap<>();
+
+    public CodecRedisSerializer(RedisSerializer<Object> fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Регистрирует кодек. Декодирование доступно всегда, кодирование - только если {@code encode} = true.
+     */
+    public CodecRedisSerializer register(RedisValueCodec<?> codec, boolean encode) {
+        decoders.put(codec.id(), codec);
+        if (encode) {
+            encoders.put(codec.type(), codec);
+        }
+        return this;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return fallback.serialize(null);
+        }
+        RedisValueCodec<?> codec = encoders.get(value.getClass());
+        if (codec == null) {
+            return fallback.serialize(value);
+        }
+        return encode(codec, value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Truncated codec header");
+        }
+
+        RedisValueCodec<?> codec = decoders.get(bytes[1]);
+        if (codec == null) {
+            throw new SerializationException("Unknown codec id: " + bytes[1]);
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH))) {
+            return codec.decode(in, bytes[2]);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot decode " + codec.type().getSimpleName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> byte[] encode(RedisValueCodec<T> codec, Object value) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeByte(MAGIC);
+            out.writeByte(codec.id());
+            out.writeByte(codec.schemaVersion());
+            codec.encode((T) value, out);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot encode " + codec.type().getSimpleName(), e);
+        }
+        return buffer.toByteArray();
+    }
+}
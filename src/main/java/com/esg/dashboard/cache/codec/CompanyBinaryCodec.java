@@ -0,0 +1,196 @@
+package com.esg.dashboard.cache.codec;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/**
+ * Компактный бинарный формат для {@link Company}.
+ * Каждая структура начинается с битовой маски заполненных полей, дальше идут только заполненные поля:
+ * строки - varint длина + UTF-8, числа - IEEE 754, даты - секунды и наносекунды UTC.
+ * Произвольные additionalMetrics хранятся вложенным JSON.
+ */
+public class CompanyBinaryCodec implements RedisValueCodec<Company> {
+
+    public static final byte ID = 1;
+    private static final byte SCHEMA_V1 = 1;
+
+    private static final TypeReference<Map<String, Object>> METRICS_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper metricsMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte schemaVersion() {
+        return SCHEMA_V1;
+    }
+
+    @Override
+    public Class<Company> type() {
+        return Company.class;
+    }
+
+    @Override
+    public void encode(Company company, DataOutputStream out) throws IOException {
+        int mask = bit(0, company.getId()) | bit(1, company.getCompanyId()) | bit(2, company.getName())
+                | bit(3, company.getSector()) | bit(4, company.getIndustry()) | bit(5, company.getCurrentRating())
+                | bit(6, company.getAdditionalMetrics()) | bit(7, company.getCreatedAt()) | bit(8, company.getUpdatedAt());
+        writeVarInt(out, mask);
+
+        writeString(out, company.getId());
+        writeString(out, company.getCompanyId());
+        writeString(out, company.getName());
+        writeString(out, company.getSector());
+        writeString(out, company.getIndustry());
+        if (company.getCurrentRating() != null) {
+            encodeRating(company.getCurrentRating(), out);
+        }
+        if (company.getAdditionalMetrics() != null) {
+            byte[] json = metricsMapper.writeValueAsBytes(company.getAdditionalMetrics());
+            writeVarInt(out, json.length);
+            out.write(json);
+        }
+        writeDateTime(out, company.getCreatedAt());
+        writeDateTime(out, company.getUpdatedAt());
+    }
+
+    @Override
+    public Company decode(DataInputStream in, byte schemaVersion) throws IOException {
+        if (schemaVersion != SCHEMA_V1) {
+            throw new IOException("Unsupported company schema version: " + schemaVersion);
+        }
+
+        int mask = readVarInt(in);
+        Company company = new Company();
+        company.setId(has(mask, 0) ? readString(in) : null);
+        company.setCompanyId(has(mask, 1) ? readString(in) : null);
+        company.setName(has(mask, 2) ? readString(in) : null);
+        company.setSector(has(mask, 3) ? readString(in) : null);
+        company.setIndustry(has(mask, 4) ? readString(in) : null);
+        company.setCurrentRating(has(mask, 5) ? decodeRating(in) : null);
+        if (has(mask, 6)) {
+            byte[] json = new byte[readVarInt(in)];
+            in.readFully(json);
+            company.setAdditionalMetrics(metricsMapper.readValue(json, METRICS_TYPE));
+        }
+        company.setCreatedAt(has(mask, 7) ? readDateTime(in) : null);
+        company.setUpdatedAt(has(mask, 8) ? readDateTime(in) : null);
+        return company;
+    }
+
+    private void encodeRating(ESGRating rating, DataOutput out) throws IOException {
+        int mask = bit(0, rating.getOverallScore()) | bit(1, rating.getEnvironmentalScore())
+                | bit(2, rating.getSocialScore()) | bit(3, rating.getGovernanceScore())
+                | bit(4, rating.getCarbonFootprint()) | bit(5, rating.getSocialImpactScore())
+                | bit(6, rating.getRatingGrade()) | bit(7, rating.getCalculationDate()) | bit(8, rating.getRanking());
+        writeVarInt(out, mask);
+
+        writeDouble(out, rating.getOverallScore());
+        writeDouble(out, rating.getEnvironmentalScore());
+        writeDouble(out, rating.getSocialScore());
+        writeDouble(out, rating.getGovernanceScore());
+        writeDouble(out, rating.getCarbonFootprint());
+        writeDouble(out, rating.getSocialImpactScore());
+        writeString(out, rating.getRatingGrade());
+        writeDateTime(out, rating.getCalculationDate());
+        if (rating.getRanking() != null) {
+            writeVarInt(out, rating.getRanking());
+        }
+    }
+
+    private ESGRating decodeRating(DataInput in) throws IOException {
+        int mask = readVarInt(in);
+        ESGRating rating = new ESGRating();
+        rating.setOverallScore(has(mask, 0) ? in.readDouble() : null);
+        rating.setEnvironmentalScore(has(mask, 1) ? in.readDouble() : null);
+        rating.setSocialScore(has(mask, 2) ? in.readDouble() : null);
+        rating.setGovernanceScore(has(mask, 3) ? in.readDouble() : null);
+        rating.setCarbonFootprint(has(mask, 4) ? in.readDouble() : null);
+        rating.setSocialImpactScore(has(mask, 5) ? in.readDouble() : null);
+        rating.setRatingGrade(has(mask, 6) ? readString(in) : null);
+        rating.setCalculationDate(has(mask, 7) ? readDateTime(in) : null);
+        rating.setRanking(has(mask, 8) ? readVarInt(in) : null);
+        return rating;
+    }
+
+    private static int bit(int index, Object value) {
+        return value != null ? 1 << index : 0;
+    }
+
+    private static boolean has(int mask, int index) {
+        return (mask & (1 << index)) != 0;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDouble(DataOutput out, Double value) throws IOException {
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        writeVarInt(out, value.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        long epochSecond = in.readLong();
+        int nano = readVarInt(in);
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new IOException("Malformed varint");
+            }
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
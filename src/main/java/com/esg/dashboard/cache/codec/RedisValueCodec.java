@@ -0,0 +1,23 @@
+package com.esg.dashboard.cache.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Кодек значения, хранимого в Redis, для конкретного типа сущности.
+ * Идентификатор кодека и версия схемы записываются в заголовок значения,
+ * что позволяет менять формат без сброса кэша.
+ */
+public interface RedisValueCodec<T> {
+
+    byte id();
+
+    byte schemaVersion();
+
+    Class<T> type();
+
+    void encode(T value, DataOutputStream out) throws IOException;
+
+    T decode(DataInputStream in, byte schemaVersion) throws IOException;
+}
@@ -1,18 +1,32 @@
 package com.esg.dashboard.config;
 
+import com.esg.dashboard.cache.CacheNamespaces;
+import com.esg.dashboard.cache.EsgCacheMetrics;
+import com.esg.dashboard.cache.LocalCacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.CacheKeyPrefix;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Configuration
@@ -20,15 +34,20 @@ import java.util.Map;
 public class CacheConfig {
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    @Primary
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     CacheNamespaces cacheNamespaces) {
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30))
+                .entryTtl(jitteredTtl(Duration.ofMinutes(30)))
                 .disableCachingNullValues();
 
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
-        cacheConfigurations.put("companies", defaultConfig.entryTtl(Duration.ofHours(1)));
-        cacheConfigurations.put("portfolios", defaultConfig.entryTtl(Duration.ofHours(2)));
-        cacheConfigurations.put("analytics", defaultConfig.entryTtl(Duration.ofMinutes(10)));
+        cacheConfigurations.put("companies", defaultConfig.entryTtl(jitteredTtl(Duration.ofHours(1)))
+                .computePrefixWith(versionedPrefix(cacheNamespaces, CacheNamespaces.COMPANY)));
+        cacheConfigurations.put("portfolios", defaultConfig.entryTtl(jitteredTtl(Duration.ofHours(2)))
+                .computePrefixWith(versionedPrefix(cacheNamespaces, CacheNamespaces.PORTFOLIO)));
+        cacheConfigurations.put("analytics", defaultConfig.entryTtl(jitteredTtl(Duration.ofMinutes(10)))
+                .computePrefixWith(versionedPrefix(cacheNamespaces, CacheNamespaces.ANALYTICS)));
 
         RedisCacheManager cacheManager = RedisCacheManager.builder(redisConnectionFactory)
                 .cacheDefaults(defaultConfig)
@@ -39,14 +58,66 @@ public class CacheConfig {
         return cacheManager;
     }
 
+    /**
+     * Локальные кэши на Caffeine: ограничены по размеру, с истечением и статистикой.
+     * Параметры каждого кэша задаются спецификацией Caffeine (maximumSize, expireAfterWrite,
+     * expireAfterAccess, refreshAfterWrite); refreshAfterWrite работает только при наличии
+     * {@link LocalCacheLoader} для этого кэша.
+     */
     @Bean
-    public CacheManager localCacheManager() {
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(
-                "sector-metrics",
-                "dashboard-stats",
-                "top-performers"
-        );
+    public CacheManager localCacheManager(
+            MeterRegistry meterRegistry,
+            ObjectProvider<LocalCacheLoader> cacheLoaders,
+            @Value("${app.cache.local.sector-metrics:maximumSize=500,expireAfterWrite=10m}") String sectorMetricsSpec,
+            @Value("${app.cache.local.dashboard-stats:maximumSize=100,expireAfterWrite=1m}") String dashboardStatsSpec,
+            @Value("${app.cache.local.top-performers:maximumSize=200,expireAfterWrite=5m}") String topPerformersSpec) {
+        Map<String, LocalCacheLoader> loaders = cacheLoaders.orderedStream()
+                .collect(Collectors.toMap(LocalCacheLoader::cacheName, Function.identity()));
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Только перечисленные кэши: опечатка в имени не должна создавать неограниченный кэш
+        cacheManager.setCacheNames(List.of());
+        registerLocalCache(cacheManager, meterRegistry, "sector-metrics", sectorMetricsSpec, loaders);
+        registerLocalCache(cacheManager, meterRegistry, "dashboard-stats", dashboardStatsSpec, loaders);
+        registerLocalCache(cacheManager, meterRegistry, "top-performers", topPerformersSpec, loaders);
+
         log.info("Local cache manager configured for frequently accessed data");
         return cacheManager;
     }
-}
\ No newline at end of file
+
+    private static void registerLocalCache(CaffeineCacheManager cacheManager, MeterRegistry meterRegistry,
+                                           String cacheName, String spec, Map<String, LocalCacheLoader> loaders) {
+        Caffeine<Object, Object> builder = Caffeine.from(spec).recordStats();
+        LocalCacheLoader loader = loaders.get(cacheName);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache;
+        if (loader != null) {
+            cache = builder.build(loader);
+        } else {
+            if (spec.contains("refreshAfterWrite")) {
+                throw new IllegalStateException("refreshAfterWrite for cache '" + cacheName
+                        + "' requires a LocalCacheLoader bean");
+            }
+            cache = builder.build();
+        }
+
+        cacheManager.registerCustomCache(cacheName, cache);
+        EsgCacheMetrics.monitor(meterRegistry, cache, cacheName);
+        log.debug("Local cache {} configured with spec: {}", cacheName, spec);
+    }
+
+    /**
+     * Префикс вида {namespace}:v{gen}:{cacheName}:: - вычисляется на каждый ключ,
+     * поэтому смена поколения сразу уводит кэш на новые ключи
+     */
+    static CacheKeyPrefix versionedPrefix(CacheNamespaces cacheNamespaces, String namespace) {
+        return cacheName -> cacheNamespaces.prefix(namespace) + cacheName + "::";
+    }
+
+    /**
+     * TTL с разбросом до +10%, чтобы записи, заполненные одновременно, не истекали разом
+     */
+    static RedisCacheWriter.TtlFunction jitteredTtl(Duration baseTtl) {
+        long jitterMillis = baseTtl.toMillis() / 10;
+        return (key, value) -> baseTtl.plusMillis(ThreadLocalRandom.current().nextLong(jitterMillis + 1));
+    }
+}
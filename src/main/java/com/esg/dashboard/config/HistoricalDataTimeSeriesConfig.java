@@ -0,0 +1,60 @@
+package com.esg.dashboard.config;
+
+import com.esg.dashboard.model.HistoricalDataPoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Создает time-series коллекцию истории, если включен режим app.historical-data.time-series.enabled.
+ * Если коллекцию не удалось создать как time-series (или под этим именем уже есть обычная коллекция),
+ * приложение не стартует: иначе MongoDB создала бы обычную коллекцию без индекса при первой вставке.
+ * Перенос существующих записей - миграция 007_historical_data_timeseries.js.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.historical-data.time-series.enabled", havingValue = "true")
+public class HistoricalDataTimeSeriesConfig {
+
+    private final MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void createTimeSeriesCollection() {
+        if (!mongoTemplate.collectionExists(HistoricalDataPoint.class)) {
+            try {
+                // Параметры time-series (timeField, metaField, granularity) берутся из @TimeSeries
+                mongoTemplate.createCollection(HistoricalDataPoint.class);
+                log.info("Time-series collection {} created", HistoricalDataPoint.COLLECTION);
+            } catch (DataAccessException e) {
+                // Коллекцию мог одновременно создать другой узел - ее тип проверяется ниже
+                log.warn("Could not create time-series collection {}: {}", HistoricalDataPoint.COLLECTION, e.getMessage());
+            }
+        }
+
+        Document collection = mongoTemplate.getDb().listCollections()
+                .filter(new Document("name", HistoricalDataPoint.COLLECTION))
+                .first();
+        if (collection == null || !"timeseries".equals(collection.getString("type"))) {
+            throw new IllegalStateException("Historical data time-series mode is enabled, but collection "
+                    + HistoricalDataPoint.COLLECTION + (collection == null
+                    ? " could not be created" : " exists and is not a time-series collection")
+                    + "; fix the collection or set app.historical-data.time-series.enabled=false");
+        }
+
+        // Выборки истории всегда по компании (и типу) с диапазоном дат
+        mongoTemplate.indexOps(HistoricalDataPoint.class).ensureIndex(new Index()
+                .on("meta.companyId", Sort.Direction.ASC)
+                .on("meta.dataType", Sort.Direction.ASC)
+                .on("recordDate", Sort.Direction.DESC));
+        log.info("Historical data is stored in time-series collection {}", HistoricalDataPoint.COLLECTION);
+    }
+}
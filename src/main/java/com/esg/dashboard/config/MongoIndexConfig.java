@@ -41,9 +41,16 @@ public class MongoIndexConfig {
             IndexOperations portfolioIndexOps = mongoTemplate.indexOps(Portfolio.class);
             portfolioIndexOps.ensureIndex(new Index().on("portfolioId", org.springframework.data.domain.Sort.Direction.ASC).unique());
             portfolioIndexOps.ensureIndex(new Index().on("clientId", org.springframework.data.domain.Sort.Direction.ASC));
+            // Поиск портфелей клиента по имени: префикс по нормализованному имени, подстрока по триграммам
             portfolioIndexOps.ensureIndex(new Index().on("clientId", org.springframework.data.domain.Sort.Direction.ASC)
-                    .on("portfolioName", org.springframework.data.domain.Sort.Direction.ASC));
+                    .on("portfolioNameNormalized", org.springframework.data.domain.Sort.Direction.ASC));
+            portfolioIndexOps.ensureIndex(new Index().on("clientId", org.springframework.data.domain.Sort.Direction.ASC)
+                    .on("portfolioNameGrams", org.springframework.data.domain.Sort.Direction.ASC));
+            portfolioIndexOps.ensureIndex(new Index().on("clientId", org.springframework.data.domain.Sort.Direction.ASC)
+                    .on("portfolioId", org.springframework.data.domain.Sort.Direction.ASC));
             portfolioIndexOps.ensureIndex(new Index().on("updatedAt", org.springframework.data.domain.Sort.Direction.DESC));
+            // Обратный индекс companyId -> портфели для переоценки при смене рейтинга
+            portfolioIndexOps.ensureIndex(new Index().on("items.companyId", org.springframework.data.domain.Sort.Direction.ASC));
             log.debug("Portfolio indexes created");
 
             // Индексы для HistoricalData
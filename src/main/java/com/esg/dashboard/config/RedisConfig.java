@@ -1,6 +1,10 @@
 package com.esg.dashboard.config;
 
+import com.esg.dashboard.cache.codec.CodecRedisSerializer;
+import com.esg.dashboard.cache.codec.CompanyBinaryCodec;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -9,25 +13,44 @@ import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Slf4j
 @Configuration
 public class RedisConfig {
 
+    @Value("${app.cache.codec.company:json}")
+    private String companyCodec;
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(valueSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setHashValueSerializer(jsonSerializer());
 
-        log.info("Redis template configured successfully");
+        log.info("Redis template configured successfully (company codec: {})", companyCodec);
         return template;
     }
 
+    /**
+     * Сериализатор значений: JSON по умолчанию, бинарный кодек - для сущностей, где он включен.
+     * Бинарные значения читаются всегда, чтобы можно было безопасно переключать формат.
+     */
+    private RedisSerializer<Object> valueSerializer() {
+        return new CodecRedisSerializer(jsonSerializer())
+                .register(new CompanyBinaryCodec(), "binary".equalsIgnoreCase(companyCodec));
+    }
+
+    public static GenericJackson2JsonRedisSerializer jsonSerializer() {
+        // JavaTimeModule нужен для LocalDateTime в Company и ESGRating
+        return new GenericJackson2JsonRedisSerializer()
+                .configure(mapper -> mapper.registerModule(new JavaTimeModule()));
+    }
+
     @Bean
     public ZSetOperations<String, Object> zSetOperations(RedisTemplate<String, Object> redisTemplate) {
         return redisTemplate.opsForZSet();
@@ -1,8 +1,20 @@
 package com.esg.dashboard.controller;
 
 import com.esg.dashboard.dto.ApiResponse;
+import com.esg.dashboard.dto.ClientExposureDto;
+import com.esg.dashboard.dto.PortfolioAggregateHistoryDto;
+import com.esg.dashboard.dto.PortfolioBulkCreateResult;
+import com.esg.dashboard.dto.PortfolioHoldingRequest;
+import com.esg.dashboard.dto.PortfolioHoldingResult;
+import com.esg.dashboard.dto.PortfolioSimulationRequest;
+import com.esg.dashboard.dto.PortfolioSimulationResult;
 import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.service.ClientExposureService;
+import com.esg.dashboard.service.PortfolioBulkRevaluationService;
+import com.esg.dashboard.service.PortfolioHistoryService;
+import com.esg.dashboard.service.PortfolioHoldingService;
 import com.esg.dashboard.service.PortfolioService;
+import com.esg.dashboard.service.PortfolioSimulationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -11,11 +23,14 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -25,6 +40,11 @@ import java.util.List;
 public class PortfolioController {
 
     private final PortfolioService portfolioService;
+    private final PortfolioBulkRevaluationService bulkRevaluationService;
+    private final PortfolioSimulationService simulationService;
+    private final PortfolioHoldingService holdingService;
+    private final ClientExposureService clientExposureService;
+    private final PortfolioHistoryService historyService;
 
     @PostMapping
     @Operation(
@@ -55,6 +75,30 @@ public class PortfolioController {
         }
     }
 
+    @PostMapping("/bulk")
+    @Operation(
+            summary = "Пакетное создание портфелей",
+            description = "Создает пакет портфелей одной вставкой: компании всего пакета загружаются один раз. Возвращает результат по каждому портфелю."
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Пакет обработан, см. результат по элементам"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Пустой или слишком большой пакет")
+    })
+    public ResponseEntity<ApiResponse<PortfolioBulkCreateResult>> createPortfolios(
+            @Parameter(description = "Портфели для создания", required = true)
+            @RequestBody List<Portfolio> portfolios) {
+        try {
+            MDC.put("operation", "BULK_CREATE_PORTFOLIOS");
+            log.info("Bulk creating {} portfolios", portfolios.size());
+
+            PortfolioBulkCreateResult result = portfolioService.createPortfolios(portfolios);
+            log.info("Bulk create: {} created, {} failed", result.getCreated(), result.getFailed());
+            return ResponseEntity.ok(ApiResponse.success(result));
+        } finally {
+            MDC.clear();
+        }
+    }
+
     @GetMapping("/{portfolioId}")
     @Operation(
             summary = "Получение портфеля по ID",
@@ -87,6 +131,36 @@ public class PortfolioController {
         }
     }
 
+    @GetMapping("/{portfolioId}/history")
+    @Operation(
+            summary = "История агрегатов портфеля",
+            description = "Возвращает дневные снимки ESG агрегатов портфеля за период (по умолчанию - последние 12 месяцев)"
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "История успешно получена"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Некорректный период"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Портфель не найден")
+    })
+    public ResponseEntity<ApiResponse<PortfolioAggregateHistoryDto>> getPortfolioHistory(
+            @Parameter(description = "Идентификатор портфеля", required = true)
+            @PathVariable String portfolioId,
+            @Parameter(description = "Начало периода (включительно)", example = "2025-10-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Конец периода (включительно)", example = "2026-09-30")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("operation", "GET_PORTFOLIO_HISTORY");
+            LocalDate end = to != null ? to : LocalDate.now();
+            LocalDate start = from != null ? from : end.minusMonths(12).plusDays(1);
+            log.info("Fetching history of portfolio {} from {} to {}", portfolioId, start, end);
+
+            return ResponseEntity.ok(ApiResponse.success(historyService.getHistory(portfolioId, start, end)));
+        } finally {
+            MDC.clear();
+        }
+    }
+
     @GetMapping("/client/{clientId}")
     @Operation(
             summary = "Получение портфелей клиента",
@@ -121,6 +195,47 @@ public class PortfolioController {
         }
     }
 
+    @GetMapping("/client/{clientId}/search")
+    @Operation(
+            summary = "Поиск портфелей клиента по имени",
+            description = "Ищет портфели клиента по части имени без учета регистра. Запрос короче трех символов ищется по началу имени."
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Найденные портфели"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Пустой или слишком длинный запрос")
+    })
+    public ResponseEntity<ApiResponse<org.springframework.data.domain.Page<Portfolio>>> searchClientPortfolios(
+            @Parameter(description = "Идентификатор клиента", required = true)
+            @PathVariable String clientId,
+            @Parameter(description = "Часть имени портфеля", required = true, example = "green")
+            @RequestParam String name,
+            @Parameter(description = "Номер страницы (начиная с 0)", example = "0")
+            @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Размер страницы", example = "20")
+            @RequestParam(defaultValue = "20")
+            @jakarta.validation.constraints.Min(1)
+            @jakarta.validation.constraints.Max(100)
+            int size) {
+        log.info("Searching portfolios of client {} by name: {}", clientId, name);
+        org.springframework.data.domain.Pageable pageable = org.springframework.data.domain.PageRequest.of(page, size);
+        return ResponseEntity.ok(ApiResponse.success(portfolioService.searchByName(clientId, name, pageable)));
+    }
+
+    @GetMapping("/client/{clientId}/exposure")
+    @Operation(
+            summary = "Суммарная ESG экспозиция клиента",
+            description = "Возвращает ESG показатели и вложения по компаниям, объединенные по всем портфелям клиента. Значения поддерживаются при каждой записи портфеля и читаются одним документом."
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Экспозиция клиента успешно получена")
+    })
+    public ResponseEntity<ApiResponse<ClientExposureDto>> getClientExposure(
+            @Parameter(description = "Идентификатор клиента", required = true)
+            @PathVariable String clientId) {
+        log.info("Fetching exposure for client: {}", clientId);
+        return ResponseEntity.ok(ApiResponse.success(clientExposureService.getExposure(clientId)));
+    }
+
     @PutMapping("/{portfolioId}")
     @Operation(
             summary = "Обновление портфеля",
@@ -181,4 +296,159 @@ public class PortfolioController {
             MDC.clear();
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/{portfolioId}/items")
+    @Operation(
+            summary = "Добавление позиции",
+            description = "Добавляет одну позицию в портфель без перезаписи остальных и пересчитывает агрегаты по ней"
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Позиция добавлена"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Некорректные данные или позиция уже есть"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Портфель или компания не найдены"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "409", description = "Портфель изменен параллельно")
+    })
+    public ResponseEntity<ApiResponse<PortfolioHoldingResult>> addHolding(
+            @Parameter(description = "Идентификатор портфеля", required = true)
+            @PathVariable String portfolioId,
+            @Parameter(description = "Новая позиция", required = true)
+            @Valid @RequestBody PortfolioHoldingRequest request) {
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("operation", "ADD_HOLDING");
+            log.info("Adding holding {} to portfolio: {}", request.getCompanyId(), portfolioId);
+
+            return ResponseEntity.ok(ApiResponse.success(holdingService.addHolding(portfolioId,
+                    request.getCompanyId(), request.getInvestmentAmount(), request.getExpectedVersion())));
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    @PatchMapping("/{portfolioId}/items/{companyId}")
+    @Operation(
+            summary = "Изменение суммы позиции",
+            description = "Меняет сумму инвестиций по одной позиции позиционным обновлением и пересчитывает агрегаты по ней"
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Позиция изменена"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Портфель не найден"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "409", description = "Портфель изменен параллельно")
+    })
+    public ResponseEntity<ApiResponse<PortfolioHoldingResult>> adjustHolding(
+            @Parameter(description = "Идентификатор портфеля", required = true)
+            @PathVariable String portfolioId,
+            @Parameter(description = "Идентификатор компании", required = true)
+            @PathVariable String companyId,
+            @Parameter(description = "Новая сумма позиции", required = true)
+            @Valid @RequestBody PortfolioHoldingRequest request) {
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("companyId", companyId);
+            MDC.put("operation", "ADJUST_HOLDING");
+            log.info("Adjusting holding {} in portfolio: {}", companyId, portfolioId);
+
+            return ResponseEntity.ok(ApiResponse.success(holdingService.adjustHolding(portfolioId,
+                    companyId, request.getInvestmentAmount(), request.getExpectedVersion())));
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    @DeleteMapping("/{portfolioId}/items/{companyId}")
+    @Operation(
+            summary = "Удаление позиции",
+            description = "Удаляет одну позицию из портфеля и пересчитывает агрегаты по ней"
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Позиция удалена"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Портфель не найден"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "409", description = "Портфель изменен параллельно")
+    })
+    public ResponseEntity<ApiResponse<PortfolioHoldingResult>> removeHolding(
+            @Parameter(description = "Идентификатор портфеля", required = true)
+            @PathVariable String portfolioId,
+            @Parameter(description = "Идентификатор компании", required = true)
+            @PathVariable String companyId,
+            @Parameter(description = "Ожидаемая версия портфеля")
+            @RequestParam(required = false) Long expectedVersion) {
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("companyId", companyId);
+            MDC.put("operation", "REMOVE_HOLDING");
+            log.info("Removing holding {} from portfolio: {}", companyId, portfolioId);
+
+            return ResponseEntity.ok(ApiResponse.success(holdingService.removeHolding(portfolioId, companyId, expectedVersion)));
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    @PostMapping("/{portfolioId}/simulations")
+    @Operation(
+            summary = "Симуляция ребалансировки",
+            description = "Считает агрегированные ESG показатели для сценариев \"что если\" (замена компании, ограничение доли сектора) без изменения портфеля"
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Сценарии рассчитаны"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Некорректные сценарии"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Портфель не найден")
+    })
+    public ResponseEntity<ApiResponse<PortfolioSimulationResult>> simulatePortfolio(
+            @Parameter(description = "Идентификатор портфеля", required = true)
+            @PathVariable String portfolioId,
+            @Parameter(description = "Сценарии ребалансировки", required = true)
+            @Valid @RequestBody PortfolioSimulationRequest request) {
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("operation", "SIMULATE_PORTFOLIO");
+            log.info("Simulating {} scenarios for portfolio: {}", request.getScenarios().size(), portfolioId);
+
+            return simulationService.simulate(portfolioId, request)
+                    .map(result -> ResponseEntity.ok(ApiResponse.success(result)))
+                    .orElseGet(() -> {
+                        log.warn("Portfolio not found for simulation: {}", portfolioId);
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                .body(ApiResponse.error("Portfolio not found"));
+                    });
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    @PostMapping("/revaluation")
+    @Operation(
+            summary = "Массовая переоценка портфелей",
+            description = "Запускает в фоне пересчет агрегатов всех портфелей по текущим рейтингам компаний. С resume=true продолжает прерванный прогон с последнего обработанного portfolioId."
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "202", description = "Переоценка запущена"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "409", description = "Переоценка уже выполняется")
+    })
+    public ResponseEntity<ApiResponse<Map<String, Object>>> startRevaluation(
+            @Parameter(description = "Продолжить с сохраненной контрольной точки", example = "false")
+            @RequestParam(defaultValue = "false") boolean resume) {
+        try {
+            MDC.put("operation", "START_BULK_REVALUATION");
+            if (!bulkRevaluationService.start(resume)) {
+                log.info("Bulk portfolio revaluation already running");
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(ApiResponse.error("Bulk revaluation is already running"));
+            }
+            log.info("Bulk portfolio revaluation started (resume={})", resume);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(bulkRevaluationService.getProgress()));
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    @GetMapping("/revaluation")
+    @Operation(
+            summary = "Прогресс массовой переоценки",
+            description = "Возвращает статус, число обработанных портфелей, скорость и оценку оставшегося времени"
+    )
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getRevaluationProgress() {
+        return ResponseEntity.ok(ApiResponse.success(bulkRevaluationService.getProgress()));
+    }
+}
@@ -1,6 +1,7 @@
 package com.esg.dashboard.controller;
 
 import com.esg.dashboard.cache.CacheManagerService;
+import com.esg.dashboard.cache.CacheWarmupService;
 import com.esg.dashboard.dto.ApiResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,9 +10,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Slf4j
@@ -22,11 +25,12 @@ import java.util.Map;
 public class SystemController {
 
     private final CacheManagerService cacheManagerService;
+    private final CacheWarmupService cacheWarmupService;
 
     @PostMapping("/cache/clear")
     @Operation(
             summary = "Очистка всего кэша",
-            description = "Очищает весь кэш Redis. Используйте с осторожностью в production."
+            description = "Очищает кэш компаний, портфелей и аналитики сменой поколения ключей. Рейтинг и счетчики rate limit не затрагиваются."
     )
     @ApiResponses({
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Кэш успешно очищен")
@@ -44,6 +48,55 @@ public class SystemController {
         }
     }
 
+    @PostMapping("/cache/{namespace}/clear")
+    @Operation(
+            summary = "Очистка пространства имен кэша",
+            description = "Очищает одно пространство имен кэша: company, portfolio или analytics"
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Пространство имен очищено"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Неизвестное пространство имен")
+    })
+    public ResponseEntity<ApiResponse<Map<String, Object>>> clearCacheNamespace(
+            @Parameter(description = "Пространство имен кэша", required = true)
+            @PathVariable String namespace) {
+        try {
+            MDC.put("operation", "CLEAR_CACHE_NAMESPACE");
+            MDC.put("namespace", namespace);
+            log.info("Clearing cache namespace: {}", namespace);
+
+            long generation = cacheManagerService.clearNamespace(namespace);
+            return ResponseEntity.ok(ApiResponse.success(Map.of("namespace", namespace, "generation", generation)));
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    @PostMapping("/cache/warmup")
+    @Operation(
+            summary = "Прогрев кэша",
+            description = "Запускает в фоне прогрев рейтинга и кэша компаний. Прогресс - в /actuator/health (cacheWarmup)."
+    )
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "202", description = "Прогрев запущен"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "409", description = "Прогрев уже выполняется")
+    })
+    public ResponseEntity<ApiResponse<Map<String, Object>>> warmUpCache() {
+        try {
+            MDC.put("operation", "WARMUP_CACHE");
+            if (!cacheWarmupService.start()) {
+                log.info("Cache warm-up already running");
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(ApiResponse.error("Cache warm-up is already running"));
+            }
+            log.info("Cache warm-up started on demand");
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(cacheWarmupService.getProgress()));
+        } finally {
+            MDC.clear();
+        }
+    }
+
     @PostMapping("/cache/companies/{companyId}/evict")
     @Operation(
             summary = "Удаление компании из кэша",
@@ -71,7 +124,8 @@ public class SystemController {
     @GetMapping("/cache/stats")
     @Operation(
             summary = "Статистика кэша",
-            description = "Возвращает статистику использования кэша Redis"
+            description = "Возвращает статистику использования кэша Redis. Счетчики по префиксам берутся "
+                    + "из последнего фонового прохода SCAN, его возраст - в snapshotAgeSeconds"
     )
     @ApiResponses({
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Статистика успешно получена")
@@ -82,11 +136,16 @@ public class SystemController {
             log.debug("Getting cache statistics");
 
             var stats = cacheManagerService.getCacheStats();
-            Map<String, Object> statsMap = Map.of(
-                    "totalKeys", stats.getTotalKeys() != null ? stats.getTotalKeys() : 0,
-                    "companyKeys", stats.getCompanyKeys() != null ? stats.getCompanyKeys() : 0,
-                    "portfolioKeys", stats.getPortfolioKeys() != null ? stats.getPortfolioKeys() : 0
-            );
+            Map<String, Object> statsMap = new LinkedHashMap<>();
+            statsMap.put("totalKeys", stats.getTotalKeys() != null ? stats.getTotalKeys() : 0);
+            statsMap.put("companyKeys", stats.getCompanyKeys() != null ? stats.getCompanyKeys() : 0);
+            statsMap.put("portfolioKeys", stats.getPortfolioKeys() != null ? stats.getPortfolioKeys() : 0);
+            statsMap.put("rankingKeys", stats.getRankingKeys() != null ? stats.getRankingKeys() : 0);
+            statsMap.put("rankedCompanies", stats.getRankedCompanies() != null ? stats.getRankedCompanies() : 0);
+            statsMap.put("keysByPrefix", stats.getKeysByPrefix());
+            statsMap.put("memoryBytesByPrefix", stats.getMemoryBytesByPrefix());
+            statsMap.put("sampledAt", stats.getSampledAt() != null ? stats.getSampledAt().toString() : null);
+            statsMap.put("snapshotAgeSeconds", stats.getSnapshotAgeSeconds());
 
             log.debug("Cache statistics retrieved: total keys {}", statsMap.get("totalKeys"));
             return ResponseEntity.ok(ApiResponse.success(statsMap));
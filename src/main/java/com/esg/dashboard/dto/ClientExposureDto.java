@@ -0,0 +1,43 @@
+package com.esg.dashboard.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientExposureDto {
+    private String clientId;
+    private long portfolioCount;
+    private long totalHoldings;
+    private double totalInvestment;
+
+    // Средние по клиенту, взвешенные суммой инвестиций портфелей
+    private double esgScore;
+    private double carbonFootprint;
+    private double socialImpactScore;
+    private String rating;
+
+    // По убыванию суммы инвестиций
+    private List<CompanyExposure> companies;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CompanyExposure {
+        private String companyId;
+        private double investmentAmount;
+        private double weight;
+    }
+}
@@ -0,0 +1,30 @@
+package com.esg.dashboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Ряд дневных агрегатов портфеля в колоночном виде: i-е значение каждого массива относится к dates[i].
+ * Дни без снимка в ряд не попадают.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioAggregateHistoryDto {
+    private String portfolioId;
+    private LocalDate from;
+    private LocalDate to;
+
+    private List<LocalDate> dates;
+    private double[] esgScore;
+    private double[] carbonFootprint;
+    private double[] socialImpactScore;
+    private double[] totalInvestment;
+    private int[] holdings;
+}
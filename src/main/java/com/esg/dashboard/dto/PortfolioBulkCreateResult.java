@@ -0,0 +1,35 @@
+package com.esg.dashboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Отчет пакетного создания портфелей: итог по пакету и результат по каждому элементу в порядке запроса
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioBulkCreateResult {
+    private int requested;
+    private int created;
+    private int failed;
+    private List<ItemResult> items;
+
+    public enum Status { CREATED, INVALID, DUPLICATE, FAILED }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private String portfolioId;
+        private Status status;
+        private String error;
+    }
+}
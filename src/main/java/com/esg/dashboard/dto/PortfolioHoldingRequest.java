@@ -0,0 +1,27 @@
+package com.esg.dashboard.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Добавление или изменение одной позиции портфеля. companyId обязателен только при добавлении.
+ * expectedVersion - версия портфеля, которую видел клиент; при расхождении запрос отклоняется.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioHoldingRequest {
+
+    private String companyId;
+
+    @NotNull(message = "Investment amount is required")
+    @Positive(message = "Investment amount must be positive")
+    private Double investmentAmount;
+
+    private Long expectedVersion;
+}
@@ -0,0 +1,22 @@
+package com.esg.dashboard.dto;
+
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат изменения позиции: новые агрегаты и версия портфеля без передачи всех позиций
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioHoldingResult {
+    private String portfolioId;
+    private Long version;
+    private PortfolioItem holding; // null после удаления позиции
+    private PortfolioAggregate aggregateScores;
+}
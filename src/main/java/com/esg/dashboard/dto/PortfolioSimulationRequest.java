@@ -0,0 +1,63 @@
+package com.esg.dashboard.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Набор сценариев "что если" для портфеля. Каждый сценарий - последовательность корректировок,
+ * применяемых к исходным позициям; сценарии независимы друг от друга.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioSimulationRequest {
+
+    @NotEmpty(message = "At least one scenario is required")
+    @Valid
+    private List<Scenario> scenarios;
+
+    public enum AdjustmentType {
+        SWAP,       // заменить fromCompanyId на toCompanyId с той же суммой
+        SECTOR_CAP  // ограничить долю сектора maxWeight, излишек распределить по остальным позициям
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Scenario {
+        private String name;
+
+        @NotEmpty(message = "Scenario must contain adjustments")
+        @Valid
+        private List<Adjustment> adjustments;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Adjustment {
+        @NotNull(message = "Adjustment type is required")
+        private AdjustmentType type;
+
+        private String fromCompanyId;
+        private String toCompanyId;
+
+        private String sector;
+
+        @DecimalMin(value = "0.0", message = "Max weight must be between 0 and 1")
+        @DecimalMax(value = "1.0", message = "Max weight must be between 0 and 1")
+        private Double maxWeight;
+    }
+}
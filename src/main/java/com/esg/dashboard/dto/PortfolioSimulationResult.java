@@ -0,0 +1,36 @@
+package com.esg.dashboard.dto;
+
+import com.esg.dashboard.model.PortfolioAggregate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат симуляции: агрегаты исходного портфеля и каждого сценария с отклонениями от исходных
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioSimulationResult {
+    private String portfolioId;
+    private PortfolioAggregate baseline;
+    private List<ScenarioResult> scenarios;
+    private long elapsedMicros;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ScenarioResult {
+        private String name;
+        private PortfolioAggregate aggregate;
+        private Double esgScoreDelta;
+        private Double carbonFootprintDelta;
+        private Double socialImpactDelta;
+        private String error; // сценарий не применим (например, неизвестная компания)
+    }
+}
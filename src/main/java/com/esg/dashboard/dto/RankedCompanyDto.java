@@ -0,0 +1,20 @@
+package com.esg.dashboard.dto;
+
+import com.esg.dashboard.model.Company;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Компания вместе с её позицией и баллом в рейтинге esg:ranking
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RankedCompanyDto {
+    private Long rank; // 1-based позиция в рейтинге
+    private Double score;
+    private Company company;
+}
@@ -41,5 +41,16 @@ public class EventPublisher {
             MDC.clear();
         }
     }
-}
 
+    public void publishRankingChanged(Company company, Integer previousRank, Integer newRank) {
+        try {
+            MDC.put("companyId", company.getCompanyId());
+            MDC.put("operation", "PUBLISH_RANKING_CHANGED");
+            log.debug("Publishing ranking change event for company: {} ({} -> {})",
+                    company.getCompanyId(), previousRank, newRank);
+            eventPublisher.publishEvent(new RankingChangedEvent(this, company, previousRank, newRank));
+        } finally {
+            MDC.clear();
+        }
+    }
+}
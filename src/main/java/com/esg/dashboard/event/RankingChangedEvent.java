@@ -0,0 +1,19 @@
+package com.esg.dashboard.event;
+
+import com.esg.dashboard.model.Company;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class RankingChangedEvent extends ApplicationEvent {
+    private final Company company;
+    private final Integer previousRank;
+    private final Integer newRank;
+
+    public RankingChangedEvent(Object source, Company company, Integer previousRank, Integer newRank) {
+        super(source);
+        this.company = company;
+        this.previousRank = previousRank;
+        this.newRank = newRank;
+    }
+}
@@ -0,0 +1,24 @@
+package com.esg.dashboard.health;
+
+import com.esg.dashboard.cache.CacheWarmupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Прогресс прогрева кэша. Входит в группу readiness: пока первый прогрев
+ * после старта не завершен, узел не принимает трафик.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheWarmupHealthIndicator implements HealthIndicator {
+
+    private final CacheWarmupService cacheWarmupService;
+
+    @Override
+    public Health health() {
+        Health.Builder status = cacheWarmupService.isInitialWarmupDone() ? Health.up() : Health.outOfService();
+        return status.withDetails(cacheWarmupService.getProgress()).build();
+    }
+}
@@ -1,7 +1,11 @@
 package com.esg.dashboard.listener;
 
 import com.esg.dashboard.event.CompanyUpdatedEvent;
+import com.esg.dashboard.event.RankingChangedEvent;
 import com.esg.dashboard.event.RatingUpdatedEvent;
+import com.esg.dashboard.model.ESGUpdateEvent;
+import com.esg.dashboard.service.EventService;
+import com.esg.dashboard.service.NotificationService;
 import com.esg.dashboard.service.RealTimeUpdateService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +24,8 @@ import org.springframework.stereotype.Component;
 public class CompanyEventListener {
 
     private final RealTimeUpdateService realTimeUpdateService;
+    private final NotificationService notificationService;
+    private final EventService eventService;
 
     @Async
     @EventListener
@@ -54,5 +60,31 @@ public class CompanyEventListener {
             MDC.clear();
         }
     }
-}
 
+    @Async
+    @EventListener
+    public void handleRankingChanged(RankingChangedEvent event) {
+        try {
+            MDC.put("companyId", event.getCompany().getCompanyId());
+            MDC.put("operation", "HANDLE_RANKING_CHANGED");
+            log.info("Handling ranking change event for company: {} ({} -> {})",
+                    event.getCompany().getCompanyId(), event.getPreviousRank(), event.getNewRank());
+
+            eventService.saveEvent(ESGUpdateEvent.builder()
+                    .companyId(event.getCompany().getCompanyId())
+                    .companyName(event.getCompany().getName())
+                    .newRating(event.getCompany().getCurrentRating())
+                    .previousRank(event.getPreviousRank())
+                    .newRank(event.getNewRank())
+                    .eventType(ESGUpdateEvent.EventType.RANKING_CHANGE)
+                    .triggeredBy("system")
+                    .build());
+
+            notificationService.sendRankingChangeNotification(event.getCompany().getCompanyId(),
+                    event.getCompany().getName(), event.getPreviousRank(), event.getNewRank());
+            log.debug("Ranking change successfully published");
+        } finally {
+            MDC.clear();
+        }
+    }
+}
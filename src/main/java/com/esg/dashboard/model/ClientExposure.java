@@ -0,0 +1,55 @@
+package com.esg.dashboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Суммарная экспозиция клиента по всем его портфелям. Хранятся аддитивные суммы,
+ * поэтому каждая запись портфеля применяется к документу одним обновлением.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "client_exposures")
+public class ClientExposure {
+    @Id
+    private String clientId;
+
+    private Long portfolioCount;
+    private Long totalHoldings;
+    private Double totalInvestment;
+
+    // Суммы "балл портфеля * сумма портфеля": средневзвешенный балл клиента = сумма / totalInvestment
+    private Double esgScoreSum;
+    private Double carbonFootprintSum;
+    private Double socialImpactScoreSum;
+
+    // Суммы инвестиций клиента в компании по всем портфелям. Массив, а не Map: ID компании
+    // не может быть именем поля (точка или $ в ID ломают путь обновления)
+    private List<CompanyInvestment> companyInvestments;
+
+    private LocalDateTime updatedAt;
+
+    // Увеличивается каждой дельтой и инвалидацией: построение сохраняет результат, только если версия не менялась
+    private Long version;
+    // Значения не действительны (документ строится или инвалидирован) - чтение перестраивает документ
+    private Boolean pending;
+    // Когда закончилось последнее построение по портфелям
+    private LocalDateTime builtAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CompanyInvestment {
+        private String companyId;
+        private Double amount;
+    }
+}
@@ -17,6 +17,8 @@ public class ESGUpdateEvent {
     private String companyName;
     private ESGRating previousRating;
     private ESGRating newRating;
+    private Integer previousRank;
+    private Integer newRank;
     private EventType eventType;
     private LocalDateTime timestamp;
     private String triggeredBy;
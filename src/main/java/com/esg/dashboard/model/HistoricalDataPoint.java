@@ -0,0 +1,69 @@
+package com.esg.dashboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Запись истории в time-series коллекции MongoDB. Точки с одинаковыми meta (компания + тип данных)
+ * MongoDB хранит сжатыми пачками по времени, поэтому выборка диапазона читает пачки, а не документ на точку.
+ * Наружу отдается как HistoricalData - формат API от режима хранения не зависит.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = HistoricalDataPoint.COLLECTION)
+@TimeSeries(timeField = "recordDate", metaField = "meta", granularity = Granularity.HOURS)
+public class HistoricalDataPoint {
+
+    public static final String COLLECTION = "historical_data_ts";
+
+    @Id
+    private String id;
+
+    private Meta meta;
+
+    private Map<String, Object> metrics;
+    private LocalDateTime recordDate;
+    private LocalDateTime createdAt;
+    private HistoricalData.DataQuality quality;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Meta {
+        private String companyId;
+        private String dataType;
+    }
+
+    public static HistoricalDataPoint from(HistoricalData data) {
+        return HistoricalDataPoint.builder()
+                .meta(new Meta(data.getCompanyId(), data.getDataType()))
+                .metrics(data.getMetrics())
+                .recordDate(data.getRecordDate())
+                .createdAt(data.getCreatedAt())
+                .quality(data.getQuality())
+                .build();
+    }
+
+    public HistoricalData toHistoricalData() {
+        return HistoricalData.builder()
+                .id(id)
+                .companyId(meta != null ? meta.getCompanyId() : null)
+                .dataType(meta != null ? meta.getDataType() : null)
+                .metrics(metrics)
+                .recordDate(recordDate)
+                .createdAt(createdAt)
+                .quality(quality != null ? quality : HistoricalData.DataQuality.HIGH)
+                .build();
+    }
+}
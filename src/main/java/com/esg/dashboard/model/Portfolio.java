@@ -1,10 +1,12 @@
 package com.esg.dashboard.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -21,6 +23,10 @@ public class Portfolio {
 
     private String portfolioId;
     private String portfolioName;
+    // Нормализованное имя и его триграммы для поиска по индексу (SearchTextUtils), пересчитываются при записи имени
+    private String portfolioNameNormalized;
+    @JsonIgnore
+    private List<String> portfolioNameGrams;
     private String clientId;
     private String clientName;
 
@@ -29,4 +35,8 @@ public class Portfolio {
 
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    // Оптимистическая блокировка: увеличивается при каждой записи портфеля
+    @Version
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.esg.dashboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Дневные снимки агрегатов портфеля за один месяц. Вместо документа на каждый день значения
+ * лежат в массивах по дням месяца (индекс = день - 1), поэтому год истории - 12 документов.
+ * NaN (и -1 в holdings) означает, что снимка за этот день нет.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "portfolio_aggregate_history")
+public class PortfolioAggregateHistory {
+
+    public static final int DAYS = 31;
+    public static final int NO_SNAPSHOT = -1;
+
+    @Id
+    private String id; // {portfolioId}:{yyyy-MM}
+
+    private String portfolioId;
+    private String month; // yyyy-MM
+
+    private double[] esgScore;
+    private double[] carbonFootprint;
+    private double[] socialImpactScore;
+    private double[] totalInvestment;
+    private int[] holdings;
+
+    private LocalDateTime updatedAt;
+
+    public static String bucketId(String portfolioId, YearMonth month) {
+        return portfolioId + ":" + month;
+    }
+}
@@ -3,12 +3,15 @@ package com.esg.dashboard.repository;
 import com.esg.dashboard.model.Company;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CompanyRepository extends MongoRepository<Company, String> {
@@ -32,4 +35,22 @@ public interface CompanyRepository extends MongoRepository<Company, String> {
     Page<Company> findTopRankedCompanies(Pageable pageable);
 
     List<Company> findByCompanyIdIn(List<String> companyIds);
-}
\ No newline at end of file
+
+    // Курсор только по companyId - для построения фильтра известных компаний
+    @Query(value = "{}", fields = "{ 'companyId': 1 }")
+    Stream<Company> streamAllCompanyIds();
+
+    // Курсор по компаниям с рейтингом от лучших к худшим - для прогрева esg:ranking
+    @Meta(cursorBatchSize = 500)
+    @Query(value = "{ 'currentRating.overallScore': { $exists: true } }", sort = "{ 'currentRating.overallScore': -1 }")
+    Stream<Company> streamRankedCompanies();
+
+    // Курсор по полям, нужным для оценки портфелей - таблица баллов для переоценки и симуляций
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{}", fields = "{ 'companyId': 1, 'name': 1, 'sector': 1, 'currentRating': 1 }")
+    Stream<Company> streamCompanyScores();
+
+    // Те же поля для компаний, измененных после момента времени - догоняющий проход массовой переоценки
+    @Query(value = "{ 'updatedAt': { $gt: ?0 } }", fields = "{ 'companyId': 1, 'name': 1, 'sector': 1, 'currentRating': 1 }")
+    Stream<Company> streamCompanyScoresUpdatedAfter(LocalDateTime since);
+}
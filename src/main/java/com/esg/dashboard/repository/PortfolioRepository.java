@@ -7,6 +7,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,14 +17,22 @@ public interface PortfolioRepository extends MongoRepository<Portfolio, String>
     Optional<Portfolio> findByPortfolioId(String portfolioId);
 
     List<Portfolio> findByClientId(String clientId);
+
+    List<Portfolio> findByPortfolioIdIn(Collection<String> portfolioIds);
+
+    // Только portfolioId клиента по индексу clientId+portfolioId - для кэшируемого списка клиента
+    @Query(value = "{ 'clientId': ?0 }", fields = "{ '_id': 0, 'portfolioId': 1 }", sort = "{ 'portfolioId': 1 }")
+    List<Portfolio> findPortfolioIdsByClientId(String clientId);
     
     Page<Portfolio> findByClientId(String clientId, Pageable pageable);
 
-    @Query("{ 'clientId': ?0, 'portfolioName': { $regex: ?1, $options: 'i' } }")
-    List<Portfolio> findByClientIdAndPortfolioNameLike(String clientId, String portfolioName);
-    
-    @Query("{ 'clientId': ?0, 'portfolioName': { $regex: ?1, $options: 'i' } }")
-    Page<Portfolio> findByClientIdAndPortfolioNameLike(String clientId, String portfolioName, Pageable pageable);
+    // Поиск по префиксу: якорный regex без опций по нормализованному имени - диапазон индекса clientId+portfolioNameNormalized
+    @Query("{ 'clientId': ?0, 'portfolioNameNormalized': { $regex: ?1 } }")
+    Page<Portfolio> findByClientIdAndNamePrefix(String clientId, String prefixPattern, Pageable pageable);
+
+    // Поиск по подстроке: триграммы отбирают кандидатов по индексу clientId+portfolioNameGrams, regex проверяет только их
+    @Query("{ 'clientId': ?0, 'portfolioNameGrams': { $all: ?1 }, 'portfolioNameNormalized': { $regex: ?2 } }")
+    Page<Portfolio> findByClientIdAndNameGrams(String clientId, List<String> grams, String pattern, Pageable pageable);
 
     boolean existsByPortfolioId(String portfolioId);
 }
\ No newline at end of file
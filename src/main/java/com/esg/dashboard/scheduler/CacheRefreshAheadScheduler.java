@@ -0,0 +1,76 @@
+package com.esg.dashboard.scheduler;
+
+import com.esg.dashboard.repository.CompanyRepository;
+import com.esg.dashboard.service.CompanyCacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Упреждающее обновление горячих записей кэша компаний.
+ * Компании, которые часто читались за последний интервал и чей TTL в Redis подходит к концу,
+ * перезагружаются из базы до истечения, поэтому читатели не упираются в промах.
+ * Запись заменяется, только если ее не обновили, пока шло чтение из базы (см. CompanyCacheService#refreshCompanies).
+ * Редко читаемые и уже истекшие записи заполняет обычное чтение через кэш.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheRefreshAheadScheduler {
+
+    private final CompanyCacheService companyCacheService;
+    private final CompanyRepository companyRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.cache.refresh-ahead.hot-threshold:30}")
+    private long hotThreshold = 30;
+
+    @Value("${app.cache.refresh-ahead.window-ms:600000}")
+    private long refreshWindowMs = 600000;
+
+    @Scheduled(fixedRateString = "${app.cache.refresh-ahead.interval-ms:60000}")
+    public void refreshHotCompanies() {
+        try {
+            MDC.put("operation", "REFRESH_AHEAD_COMPANIES");
+
+            Map<String, Long> readCounts = companyCacheService.drainReadCounts();
+            List<String> hotIds = readCounts.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= hotThreshold)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            if (hotIds.isEmpty()) {
+                return;
+            }
+
+            Map<String, Long> ttls = companyCacheService.getRemainingTtls(hotIds);
+            List<String> expiring = hotIds.stream()
+                    .filter(id -> isExpiring(ttls.get(id)))
+                    .toList();
+            if (expiring.isEmpty()) {
+                log.debug("{} hot companies, none close to expiry", hotIds.size());
+                return;
+            }
+
+            int refreshed = companyCacheService.refreshCompanies(expiring, companyRepository::findByCompanyIdIn);
+            meterRegistry.counter("esg.cache.refresh_ahead", "cache", "company").increment(refreshed);
+
+            log.info("Refreshed {} of {} hot companies ahead of expiry", refreshed, hotIds.size());
+        } catch (Exception e) {
+            log.error("Error refreshing hot company cache entries: {}", e.getMessage(), e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private boolean isExpiring(Long ttlMs) {
+        // Отсутствующий ключ (-2) не обновляется: его заполнит читатель под арендой загрузки
+        return ttlMs != null && ttlMs >= 0 && ttlMs < refreshWindowMs;
+    }
+}
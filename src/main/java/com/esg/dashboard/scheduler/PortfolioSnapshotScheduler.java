@@ -0,0 +1,38 @@
+package com.esg.dashboard.scheduler;
+
+import com.esg.dashboard.service.PortfolioHistoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Ежедневный снимок агрегатов всех портфелей для истории (PortfolioHistoryService).
+ * Снимок за день перезаписывается, поэтому повторный запуск на другом узле безопасен.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PortfolioSnapshotScheduler {
+
+    private final PortfolioHistoryService portfolioHistoryService;
+
+    @Scheduled(cron = "${app.portfolio.history.snapshot-cron:0 50 23 * * *}")
+    public void captureDailySnapshots() {
+        try {
+            MDC.put("operation", "CAPTURE_PORTFOLIO_SNAPSHOTS");
+            LocalDate today = LocalDate.now();
+            log.info("Starting daily portfolio aggregate snapshot for {}", today);
+
+            long captured = portfolioHistoryService.captureSnapshots(today);
+            log.info("Daily portfolio aggregate snapshot completed: {} portfolios", captured);
+        } catch (Exception e) {
+            log.error("Error capturing portfolio aggregate snapshots: {}", e.getMessage(), e);
+        } finally {
+            MDC.clear();
+        }
+    }
+}
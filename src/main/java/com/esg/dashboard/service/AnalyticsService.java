@@ -3,6 +3,7 @@ package com.esg.dashboard.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
@@ -20,6 +21,11 @@ public class AnalyticsService {
 
     private final MongoTemplate mongoTemplate;
 
+    public static final String ANALYTICS_CACHE = "analytics";
+    public static final String SECTOR_ANALYTICS_KEY = "sectors";
+
+    // Ответ-заглушку при ошибке не кэшируем
+    @Cacheable(cacheNames = ANALYTICS_CACHE, key = "'" + SECTOR_ANALYTICS_KEY + "'", unless = "#result.containsKey('error')")
     public Map<String, Object> getSectorAnalytics() {
         try {
             MDC.put("operation", "GET_SECTOR_ANALYTICS");
@@ -0,0 +1,473 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.ClientExposureDto;
+import com.esg.dashboard.model.ClientExposure;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.service.scoring.PortfolioScoringKernel;
+import com.esg.dashboard.util.ESGCalculator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Экспозиция клиента по всем портфелям, которая поддерживается инкрементально.
+ * Каждая запись портфеля превращается в дельту (вклад после записи минус вклад до неё) и
+ * применяется к документу клиента одним обновлением. Поэтому чтение - один документ по _id
+ * независимо от числа портфелей. Дельта к отсутствующему документу не применяется (upsert
+ * создал бы документ из одной дельты): документ строится по портфелям клиента при первом чтении,
+ * а также после инвалидации.
+ *
+ * Построение не атомарно относительно записей портфелей, поэтому у документа есть version и pending.
+ * Построение сохраняет результат, только если за время чтения портфелей версия не изменилась, иначе
+ * повторяется, и запоминает в builtAt момент окончания чтения. Дельта создается до записи портфеля и
+ * меняет суммы, только если документ построен и его чтение закончилось раньше, чем началась запись, -
+ * тогда построение эту запись точно не видело. Иначе (запись шла параллельно с чтением) дельта помечает
+ * документ pending. Сравниваются часы разных узлов, поэтому они должны быть синхронизированы.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClientExposureService {
+
+    private final MongoTemplate mongoTemplate;
+
+    static final int MAX_REBUILD_ATTEMPTS = 3;
+
+    @Value("${app.portfolio.client-exposure.rebuild-batch-size:1000}")
+    private int rebuildBatchSize = 1000;
+
+    public ClientExposureDto getExposure(String clientId) {
+        Assert.hasText(clientId, "Client ID cannot be empty");
+
+        try {
+            MDC.put("clientId", clientId);
+            MDC.put("operation", "GET_CLIENT_EXPOSURE");
+
+            ClientExposure exposure = mongoTemplate.findById(clientId, ClientExposure.class);
+            if (exposure == null || Boolean.TRUE.equals(exposure.getPending())) {
+                exposure = rebuild(clientId);
+            }
+            return toDto(exposure);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    public void apply(Delta delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(delta.clientId)),
+                    delta.toUpdate(LocalDateTime.now()), ClientExposure.class);
+        } catch (Exception e) {
+            log.warn("Failed to apply exposure change for client {}: {}", delta.clientId, e.getMessage());
+            invalidate(List.of(delta.clientId));
+        }
+    }
+
+    /**
+     * Применяет дельты одной неупорядоченной bulk-записью, объединяя дельты одного клиента
+     */
+    public void applyAll(Collection<Delta> deltas) {
+        Map<String, Delta> byClient = new LinkedHashMap<>();
+        for (Delta delta : deltas) {
+            if (delta != null && !delta.isEmpty()) {
+                byClient.merge(delta.clientId, delta, Delta::merge);
+            }
+        }
+        if (byClient.isEmpty()) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClientExposure.class);
+            byClient.values().forEach(delta ->
+                    bulk.updateOne(Query.query(Criteria.where("_id").is(delta.clientId)), delta.toUpdate(now)));
+            bulk.execute();
+        } catch (Exception e) {
+            log.warn("Failed to apply exposure changes for {} clients: {}", byClient.size(), e.getMessage());
+            invalidate(byClient.keySet());
+        }
+    }
+
+    /**
+     * Помечает документы экспозиции pending - они будут построены заново при следующем чтении.
+     * Используется, когда точную дельту посчитать нельзя. Увеличение версии отменяет сохранение
+     * построений, которые идут в этот момент.
+     */
+    public void invalidate(Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(clientIds)),
+                    new Update().set("pending", true).inc("version", 1L), ClientExposure.class);
+            log.debug("Invalidated exposure of {} clients", clientIds.size());
+        } catch (Exception e) {
+            log.error("Failed to invalidate exposure of clients {}: {}", clientIds, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Строит экспозицию клиента по его портфелям. Читаются только агрегаты и суммы позиций.
+     * Результат сохраняется при неизменной версии документа; если за время чтения пришла дельта
+     * или инвалидация, построение повторяется. После MAX_REBUILD_ATTEMPTS попыток результат
+     * возвращается без сохранения, документ остается pending.
+     */
+    ClientExposure rebuild(String clientId) {
+        Query query = Query.query(Criteria.where("clientId").is(clientId));
+        query.fields()
+                .include("clientId")
+                .include("aggregateScores")
+                .include("items.companyId")
+                .include("items.investmentAmount");
+        query.cursorBatchSize(rebuildBatchSize);
+
+        ClientExposure exposure = null;
+        for (int attempt = 1; attempt <= MAX_REBUILD_ATTEMPTS; attempt++) {
+            ClientExposure current = pendingDocument(clientId);
+            if (!Boolean.TRUE.equals(current.getPending())) {
+                // Документ успели построить параллельно
+                return current;
+            }
+
+            Delta delta = Delta.of(clientId);
+            try (Stream<Portfolio> portfolios = mongoTemplate.stream(query, Portfolio.class)) {
+                portfolios.forEach(delta::plus);
+            }
+            // Момент окончания чтения: записи, начатые позже, построение не видело, и их дельты применяются
+            LocalDateTime now = LocalDateTime.now();
+            exposure = delta.toExposure(now);
+            exposure.setVersion((current.getVersion() != null ? current.getVersion() : 0L) + 1);
+            exposure.setPending(false);
+            exposure.setBuiltAt(now);
+
+            Query unchanged = Query.query(Criteria.where("_id").is(clientId).and("version").is(current.getVersion()));
+            if (mongoTemplate.findAndReplace(unchanged, exposure) != null) {
+                log.info("Rebuilt exposure of client {} from {} portfolios", clientId, exposure.getPortfolioCount());
+                return exposure;
+            }
+            log.debug("Exposure of client {} changed during rebuild attempt {}", clientId, attempt);
+        }
+        log.warn("Exposure of client {} kept changing during {} rebuild attempts, returning unsaved result",
+                clientId, MAX_REBUILD_ATTEMPTS);
+        return exposure;
+    }
+
+    /**
+     * Текущий документ клиента; если его нет - вставляет пустой pending документ, чтобы дельты,
+     * пришедшие во время построения, увеличивали его версию
+     */
+    private ClientExposure pendingDocument(String clientId) {
+        ClientExposure current = mongoTemplate.findById(clientId, ClientExposure.class);
+        if (current != null) {
+            return current;
+        }
+        ClientExposure placeholder = ClientExposure.builder()
+                .clientId(clientId)
+                .version(0L)
+                .pending(true)
+                .updatedAt(LocalDateTime.now())
+                .build();
+        try {
+            mongoTemplate.insert(placeholder);
+            return placeholder;
+        } catch (DuplicateKeyException e) {
+            // Построение одновременно начал другой запрос
+            current = mongoTemplate.findById(clientId, ClientExposure.class);
+            return current != null ? current : placeholder;
+        }
+    }
+
+    static ClientExposureDto toDto(ClientExposure exposure) {
+        double totalInvestment = value(exposure.getTotalInvestment());
+        double esgScore = average(exposure.getEsgScoreSum(), totalInvestment);
+
+        List<ClientExposureDto.CompanyExposure> companies = new ArrayList<>();
+        if (exposure.getCompanyInvestments() != null) {
+            for (ClientExposure.CompanyInvestment investment : exposure.getCompanyInvestments()) {
+                double amount = value(investment.getAmount());
+                if (amount > Delta.EPSILON) {
+                    companies.add(ClientExposureDto.CompanyExposure.builder()
+                            .companyId(investment.getCompanyId())
+                            .investmentAmount(PortfolioScoringKernel.round2(amount))
+                            .weight(totalInvestment > 0 ? Math.round(amount / totalInvestment * 10000.0) / 10000.0 : 0.0)
+                            .build());
+                }
+            }
+            companies.sort(Comparator.comparingDouble(ClientExposureDto.CompanyExposure::getInvestmentAmount).reversed());
+        }
+
+        return ClientExposureDto.builder()
+                .clientId(exposure.getClientId())
+                .portfolioCount(exposure.getPortfolioCount() != null ? exposure.getPortfolioCount() : 0L)
+                .totalHoldings(exposure.getTotalHoldings() != null ? exposure.getTotalHoldings() : 0L)
+                .totalInvestment(PortfolioScoringKernel.round2(totalInvestment))
+                .esgScore(PortfolioScoringKernel.round2(esgScore))
+                .carbonFootprint(PortfolioScoringKernel.round2(average(exposure.getCarbonFootprintSum(), totalInvestment)))
+                .socialImpactScore(PortfolioScoringKernel.round2(average(exposure.getSocialImpactScoreSum(), totalInvestment)))
+                .rating(ESGCalculator.calculateRatingGrade(esgScore))
+                .companies(companies)
+                .updatedAt(exposure.getUpdatedAt())
+                .build();
+    }
+
+    private static double average(Double sum, double totalInvestment) {
+        return totalInvestment > Delta.EPSILON ? value(sum) / totalInvestment : 0.0;
+    }
+
+    private static double value(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    /**
+     * Изменение вклада портфелей одного клиента. Значения считываются в момент вызова,
+     * поэтому вклад "до" можно снять с портфеля до того, как он будет изменен на месте.
+     */
+    public static final class Delta {
+
+        static final double EPSILON = 1e-9;
+        // Временное поле конвейера: можно ли применить дельту к суммам документа
+        private static final String APPLICABLE = "_deltaApplicable";
+
+        private final String clientId;
+        // Создается до записи портфеля; слияние дельт берет самое раннее время
+        private LocalDateTime startedAt = LocalDateTime.now();
+        private long portfolios;
+        private long holdings;
+        private double investment;
+        private double esgScoreSum;
+        private double carbonFootprintSum;
+        private double socialImpactScoreSum;
+        private final Map<String, Double> companyInvestments = new HashMap<>();
+
+        private Delta(String clientId) {
+            this.clientId = clientId;
+        }
+
+        /**
+         * Дельта портфелей без клиента пустая и не применяется.
+         * Создается до записи портфеля: время создания отделяет ее от построений, прочитавших портфели раньше.
+         */
+        public static Delta of(String clientId) {
+            return new Delta(clientId);
+        }
+
+        /** Добавляет портфель целиком: создание или состояние после записи */
+        public Delta plus(Portfolio portfolio) {
+            return portfolio(portfolio, 1);
+        }
+
+        /** Снимает портфель целиком: удаление или состояние до записи */
+        public Delta minus(Portfolio portfolio) {
+            return portfolio(portfolio, -1);
+        }
+
+        /** Добавляет агрегаты портфеля без изменения числа портфелей и позиций по компаниям */
+        public Delta plus(PortfolioAggregate aggregate) {
+            return aggregate(aggregate, 1);
+        }
+
+        public Delta minus(PortfolioAggregate aggregate) {
+            return aggregate(aggregate, -1);
+        }
+
+        /** Изменение суммы инвестиций клиента в компанию */
+        public Delta company(String companyId, double amountChange) {
+            if (companyId != null && amountChange != 0.0) {
+                companyInvestments.merge(companyId, amountChange, Double::sum);
+            }
+            return this;
+        }
+
+        /** Изменение взвешенных сумм баллов, когда сумма инвестиций портфеля не меняется */
+        public Delta scores(double esgScoreSum, double carbonFootprintSum, double socialImpactScoreSum) {
+            this.esgScoreSum += esgScoreSum;
+            this.carbonFootprintSum += carbonFootprintSum;
+            this.socialImpactScoreSum += socialImpactScoreSum;
+            return this;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        boolean isEmpty() {
+            if (clientId == null) {
+                return true;
+            }
+            return portfolios == 0 && holdings == 0
+                    && Math.abs(investment) < EPSILON
+                    && Math.abs(esgScoreSum) < EPSILON
+                    && Math.abs(carbonFootprintSum) < EPSILON
+                    && Math.abs(socialImpactScoreSum) < EPSILON
+                    && companyInvestments.values().stream().allMatch(amount -> Math.abs(amount) < EPSILON);
+        }
+
+        Delta merge(Delta other) {
+            if (other.startedAt.isBefore(startedAt)) {
+                startedAt = other.startedAt;
+            }
+            portfolios += other.portfolios;
+            holdings += other.holdings;
+            investment += other.investment;
+            scores(other.esgScoreSum, other.carbonFootprintSum, other.socialImpactScoreSum);
+            other.companyInvestments.forEach(this::company);
+            return this;
+        }
+
+        /**
+         * Обновление-конвейер: суммы увеличиваются через $add, суммы по компаниям меняются
+         * в элементах массива {companyId, amount}, новые компании добавляются, обнулившиеся удаляются.
+         * ID компаний передаются как $literal, поэтому точка или $ в ID не влияют на обновление.
+         * Суммы меняются, только если построение документа закончило читать портфели до создания дельты;
+         * иначе построение могло уже учесть запись, и документ помечается pending. Версия растет всегда.
+         */
+        AggregationUpdate toUpdate(LocalDateTime now) {
+            // builtAt отсутствует у документов, построенных миграцией до появления поля: null меньше любой даты
+            Document applicable = new Document("$and", List.of(
+                    new Document("$ne", List.of("$pending", true)),
+                    new Document("$lt", List.of(new Document("$ifNull", Arrays.asList("$builtAt", null)),
+                            toDate(startedAt)))));
+
+            Document set = new Document()
+                    .append("portfolioCount", guarded("portfolioCount", add("$portfolioCount", portfolios)))
+                    .append("totalHoldings", guarded("totalHoldings", add("$totalHoldings", holdings)))
+                    .append("totalInvestment", guarded("totalInvestment", add("$totalInvestment", investment)))
+                    .append("esgScoreSum", guarded("esgScoreSum", add("$esgScoreSum", esgScoreSum)))
+                    .append("carbonFootprintSum", guarded("carbonFootprintSum", add("$carbonFootprintSum", carbonFootprintSum)))
+                    .append("socialImpactScoreSum", guarded("socialImpactScoreSum", add("$socialImpactScoreSum", socialImpactScoreSum)))
+                    .append("pending", new Document("$not", List.of("$" + APPLICABLE)))
+                    .append("version", add("$version", 1L))
+                    .append("updatedAt", toDate(now));
+            Document companies = companiesUpdate();
+            if (companies != null) {
+                set.append("companyInvestments", guarded("companyInvestments", companies));
+            }
+
+            AggregationOperation check = context -> new Document("$set", new Document(APPLICABLE, applicable));
+            AggregationOperation values = context -> new Document("$set", set);
+            AggregationOperation cleanup = context -> new Document("$unset", APPLICABLE);
+            return AggregationUpdate.from(List.of(check, values, cleanup));
+        }
+
+        private static Document guarded(String field, Document change) {
+            return new Document("$cond", List.of("$" + APPLICABLE, change, "$" + field));
+        }
+
+        private static Date toDate(LocalDateTime dateTime) {
+            return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+        }
+
+        private Document companiesUpdate() {
+            List<Document> branches = new ArrayList<>();
+            List<Document> added = new ArrayList<>();
+            companyInvestments.forEach((companyId, amount) -> {
+                if (Math.abs(amount) >= EPSILON) {
+                    Document id = new Document("$literal", companyId);
+                    branches.add(new Document("case", new Document("$eq", List.of("$$c.companyId", id)))
+                            .append("then", amount));
+                    added.add(new Document("companyId", id).append("amount", amount));
+                }
+            });
+            if (branches.isEmpty()) {
+                return null;
+            }
+
+            Document current = new Document("$ifNull", List.of("$companyInvestments", List.of()));
+            Document changed = new Document("$map", new Document("input", current)
+                    .append("as", "c")
+                    .append("in", new Document("companyId", "$$c.companyId")
+                            .append("amount", new Document("$add", List.of(
+                                    new Document("$ifNull", List.of("$$c.amount", 0.0)),
+                                    new Document("$switch", new Document("branches", branches).append("default", 0.0)))))));
+            Document missing = new Document("$filter", new Document("input", added)
+                    .append("as", "n")
+                    .append("cond", new Document("$not", List.of(new Document("$in", List.of("$$n.companyId",
+                            new Document("$ifNull", List.of("$companyInvestments.companyId", List.of()))))))));
+            // Компании, проданные во всех портфелях клиента, удаляются из массива
+            return new Document("$filter", new Document("input",
+                    new Document("$concatArrays", List.of(changed, missing)))
+                    .append("as", "c")
+                    .append("cond", new Document("$gt", List.of(new Document("$abs", "$$c.amount"), EPSILON))));
+        }
+
+        private static Document add(String field, Object change) {
+            return new Document("$add", List.of(new Document("$ifNull", List.of(field, 0)), change));
+        }
+
+        ClientExposure toExposure(LocalDateTime now) {
+            return ClientExposure.builder()
+                    .clientId(clientId)
+                    .portfolioCount(portfolios)
+                    .totalHoldings(holdings)
+                    .totalInvestment(investment)
+                    .esgScoreSum(esgScoreSum)
+                    .carbonFootprintSum(carbonFootprintSum)
+                    .socialImpactScoreSum(socialImpactScoreSum)
+                    .companyInvestments(companyInvestments.entrySet().stream()
+                            .filter(entry -> Math.abs(entry.getValue()) >= EPSILON)
+                            .map(entry -> new ClientExposure.CompanyInvestment(entry.getKey(), entry.getValue()))
+                            .toList())
+                    .updatedAt(now)
+                    .build();
+        }
+
+        private Delta portfolio(Portfolio portfolio, int sign) {
+            if (portfolio == null) {
+                return this;
+            }
+            portfolios += sign;
+            aggregate(portfolio.getAggregateScores(), sign);
+            if (portfolio.getItems() != null) {
+                for (PortfolioItem item : portfolio.getItems()) {
+                    if (item.getInvestmentAmount() != null && item.getInvestmentAmount() > 0) {
+                        company(item.getCompanyId(), sign * item.getInvestmentAmount());
+                    }
+                }
+            }
+            return this;
+        }
+
+        private Delta aggregate(PortfolioAggregate aggregate, int sign) {
+            if (aggregate == null) {
+                return this;
+            }
+            double amount = value(aggregate.getTotalInvestment());
+            holdings += (long) sign * (aggregate.getTotalCompanies() != null ? aggregate.getTotalCompanies() : 0);
+            investment += sign * amount;
+            esgScoreSum += sign * value(aggregate.getTotalEsgScore()) * amount;
+            carbonFootprintSum += sign * value(aggregate.getCarbonFootprint()) * amount;
+            socialImpactScoreSum += sign * value(aggregate.getSocialImpactScore()) * amount;
+            return this;
+        }
+    }
+}
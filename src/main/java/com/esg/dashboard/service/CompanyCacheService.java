@@ -1,34 +1,119 @@
 package com.esg.dashboard.service;
 
+import com.esg.dashboard.cache.CacheNamespaces;
+import com.esg.dashboard.cache.CompanyIdFilter;
+import com.esg.dashboard.cache.CompanyNearCache;
+import com.esg.dashboard.cache.RankingChange;
 import com.esg.dashboard.model.Company;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 /**
- * Сервис для управления кэшированием компаний в Redis
+ * Сервис для управления кэшированием компаний.
+ * Двухуровневый кэш: локальный L1 ({@link CompanyNearCache}) перед Redis (L2).
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class CompanyCacheService {
 
+    private static final String LOAD_LEASE_PREFIX = "lock:company:";
+    private static final String MISSING_PREFIX = "missing:company:";
+    private static final long LEASE_POLL_INTERVAL_MS = 25;
+    public static final String ESG_RANKING_KEY = "esg:ranking";
+    private static final String L2_CACHE_NAME = "company-l2";
+    private static final long CACHE_TTL_HOURS = 24;
+    private static final long CACHE_TTL_SECONDS = TimeUnit.HOURS.toSeconds(CACHE_TTL_HOURS);
+    // Разброс TTL, чтобы записи, заполненные одновременно, не истекали одновременно
+    private static final long CACHE_TTL_JITTER_SECONDS = CACHE_TTL_SECONDS / 10;
+
     private final RedisTemplate<String, Object> redisTemplate;
+    private final CompanyNearCache nearCache;
+    private final CompanyIdFilter companyIdFilter;
+    private final CacheNamespaces cacheNamespaces;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter l2Evictions;
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> updateRankingScript = rankingScript();
+    private final RedisScript<Long> releaseLeaseScript = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+    private final RedisScript<Long> refreshCompaniesScript = RedisScript.of(
+            new ClassPathResource("redis/refresh_companies.lua"), Long.class);
 
-    private static final String COMPANY_CACHE_PREFIX = "company:";
-    private static final String COMPANY_RANKING_KEY = "company:ranking";
-    private static final long CACHE_TTL_HOURS = 24;
+    @Value("${app.cache.lease.ttl-ms:5000}")
+    private long leaseTtlMs = 5000;
+
+    @Value("${app.cache.lease.wait-ms:250}")
+    private long leaseWaitMs = 250;
+
+    @Value("${app.cache.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds = 60;
+
+    @Value("${app.cache.refresh-ahead.max-tracked-keys:10000}")
+    private int maxTrackedKeys = 10000;
+
+    // Счетчики чтений для определения горячих ключей (см. CacheRefreshAheadScheduler)
+    private final ConcurrentMap<String, LongAdder> readCounts = new ConcurrentHashMap<>();
+
+    public CompanyCacheService(RedisTemplate<String, Object> redisTemplate,
+                               CompanyNearCache nearCache,
+                               CompanyIdFilter companyIdFilter,
+                               CacheNamespaces cacheNamespaces,
+                               MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.companyIdFilter = companyIdFilter;
+        this.cacheNamespaces = cacheNamespaces;
+        this.l2Hits = meterRegistry.counter("cache.gets", "cache", L2_CACHE_NAME, "result", "hit");
+        this.l2Misses = meterRegistry.counter("cache.gets", "cache", L2_CACHE_NAME, "result", "miss");
+        this.l2Evictions = meterRegistry.counter("cache.evictions", "cache", L2_CACHE_NAME);
+        Gauge.builder("esg.cache.hit.rate", this, CompanyCacheService::l2HitRate)
+                .tag("cache", L2_CACHE_NAME)
+                .register(meterRegistry);
+    }
 
     public void cacheCompany(Company company) {
         try {
             MDC.put("companyId", company.getCompanyId());
             MDC.put("operation", "CACHE_COMPANY");
-            String cacheKey = COMPANY_CACHE_PREFIX + company.getCompanyId();
-            redisTemplate.opsForValue().set(cacheKey, company, CACHE_TTL_HOURS, TimeUnit.HOURS);
+            String cacheKey = companyKey(company.getCompanyId());
+            redisTemplate.opsForValue().set(cacheKey, company, cacheTtlSeconds(), TimeUnit.SECONDS);
+            nearCache.put(company);
+            companyIdFilter.put(company.getCompanyId());
+            nearCache.publishInvalidation(company.getCompanyId());
             log.debug("Company cached: {}", company.getCompanyId());
         } catch (Exception e) {
             log.error("Failed to cache company {}: {}", company.getCompanyId(), e.getMessage(), e);
@@ -41,10 +126,22 @@ public class CompanyCacheService {
         try {
             MDC.put("companyId", companyId);
             MDC.put("operation", "GET_CACHED_COMPANY");
-            String cacheKey = COMPANY_CACHE_PREFIX + companyId;
+
+            recordRead(companyId);
+            Company local = nearCache.get(companyId);
+            if (local != null) {
+                log.debug("Company found in near cache: {}", companyId);
+                return local;
+            }
+
+            String cacheKey = companyKey(companyId);
             Company company = (Company) redisTemplate.opsForValue().get(cacheKey);
             if (company != null) {
+                l2Hits.increment();
+                nearCache.put(company);
                 log.debug("Company found in cache: {}", companyId);
+            } else {
+                l2Misses.increment();
             }
             return company;
         } catch (Exception e) {
@@ -55,12 +152,214 @@ public class CompanyCacheService {
         }
     }
 
+    /**
+     * Пакетное чтение компаний: сначала L1, затем один MGET в Redis для остальных.
+     * Возвращает только найденные компании.
+     */
+    public Map<String, Company> getCachedCompanies(Collection<String> companyIds) {
+        Map<String, Company> result = new HashMap<>();
+        if (companyIds == null || companyIds.isEmpty()) {
+            return result;
+        }
+
+        try {
+            MDC.put("operation", "GET_CACHED_COMPANIES");
+            List<String> remoteIds = new ArrayList<>();
+            for (String companyId : companyIds) {
+                recordRead(companyId);
+                Company local = nearCache.get(companyId);
+                if (local != null) {
+                    result.put(companyId, local);
+                } else {
+                    remoteIds.add(companyId);
+                }
+            }
+
+            if (remoteIds.isEmpty()) {
+                return result;
+            }
+
+            List<String> cacheKeys = remoteIds.stream()
+                    .map(this::companyKey)
+                    .toList();
+            List<Object> values = redisTemplate.opsForValue().multiGet(cacheKeys);
+            if (values == null) {
+                l2Misses.increment(remoteIds.size());
+                return result;
+            }
+
+            int hits = 0;
+            for (int i = 0; i < remoteIds.size() && i < values.size(); i++) {
+                if (values.get(i) instanceof Company company) {
+                    result.put(remoteIds.get(i), company);
+                    nearCache.put(company);
+                    hits++;
+                }
+            }
+            l2Hits.increment(hits);
+            l2Misses.increment(remoteIds.size() - hits);
+            log.debug("Multi-get resolved {} of {} companies from cache", result.size(), companyIds.size());
+            return result;
+        } catch (Exception e) {
+            log.error("Failed to multi-get cached companies: {}", e.getMessage(), e);
+            return result;
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Пакетная запись компаний в Redis одним пайплайном с TTL.
+     * Используется для заполнения кэша из БД, поэтому инвалидация на других узлах не рассылается.
+     */
+    public void cacheCompanies(Collection<Company> companies) {
+        if (companies == null || companies.isEmpty()) {
+            return;
+        }
+
+        try {
+            MDC.put("operation", "CACHE_COMPANIES");
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Company company : companies) {
+                        ops.opsForValue().set(companyKey(company.getCompanyId()), company,
+                                cacheTtlSeconds(), TimeUnit.SECONDS);
+                    }
+                    return null;
+                }
+            });
+            for (Company company : companies) {
+                nearCache.put(company);
+                companyIdFilter.put(company.getCompanyId());
+            }
+            log.debug("Pipelined cache write for {} companies", companies.size());
+        } catch (Exception e) {
+            log.error("Failed to cache {} companies: {}", companies.size(), e.getMessage(), e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Упреждающее обновление: запоминает текущие значения company:{id}, загружает компании
+     * через loader и одним скриптом заменяет только те записи, которые за это время не изменились.
+     * Обновление компании, записанное между чтением из БД и заменой, не перезатирается старым снимком;
+     * отсутствующие ключи не создаются. L1 не заполняется: запись на других узлах не рассылается.
+     * Возвращает число замененных записей.
+     */
+    public int refreshCompanies(List<String> companyIds, Function<List<String>, List<Company>> loader) {
+        if (companyIds == null || companyIds.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            MDC.put("operation", "REFRESH_COMPANIES");
+            Map<String, String> cacheKeys = new HashMap<>();
+            companyIds.forEach(companyId -> cacheKeys.put(companyId, companyKey(companyId)));
+            // Снимок значений читается до БД: всё, что запишут после, отличается от него
+            Map<String, byte[]> snapshot = rawValues(companyIds, cacheKeys);
+            if (snapshot.isEmpty()) {
+                return 0;
+            }
+
+            @SuppressWarnings("unchecked")
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            List<String> keys = new ArrayList<>();
+            List<Object> args = new ArrayList<>();
+            for (Company company : loader.apply(List.copyOf(snapshot.keySet()))) {
+                byte[] expected = snapshot.get(company.getCompanyId());
+                if (expected == null) {
+                    continue;
+                }
+                keys.add(cacheKeys.get(company.getCompanyId()));
+                args.add(expected);
+                args.add(valueSerializer.serialize(company));
+                args.add(StringRedisSerializer.UTF_8.serialize(String.valueOf(cacheTtlSeconds())));
+            }
+            if (keys.isEmpty()) {
+                return 0;
+            }
+
+            Long refreshed = redisTemplate.execute(refreshCompaniesScript, RedisSerializer.byteArray(),
+                    new GenericToStringSerializer<>(Long.class), keys, args.toArray());
+            int count = refreshed != null ? refreshed.intValue() : 0;
+            log.debug("Refreshed {} of {} cached companies", count, keys.size());
+            return count;
+        } catch (Exception e) {
+            log.error("Failed to refresh {} cached companies: {}", companyIds.size(), e.getMessage(), e);
+            return 0;
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private Map<String, byte[]> rawValues(List<String> companyIds, Map<String, String> cacheKeys) {
+        byte[][] rawKeys = companyIds.stream()
+                .map(companyId -> StringRedisSerializer.UTF_8.serialize(cacheKeys.get(companyId)))
+                .toArray(byte[][]::new);
+        List<byte[]> values = redisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+        Map<String, byte[]> result = new HashMap<>();
+        for (int i = 0; values != null && i < companyIds.size() && i < values.size(); i++) {
+            if (values.get(i) != null) {
+                result.put(companyIds.get(i), values.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Прогрев: одним пайплайном добавляет пачку компаний в esg:ranking (один ZADD NX)
+     * и, если cacheValues, записывает их в company:{id} (SET NX). L1 не заполняется.
+     * Прогрев идет под рабочей нагрузкой и читает компании курсором, который может отставать
+     * на минуты, поэтому только заполняет отсутствующее и не перезаписывает значения,
+     * уже записанные обновлениями компаний.
+     */
+    public void warmCompanies(List<Company> companies, boolean cacheValues) {
+        if (companies == null || companies.isEmpty()) {
+            return;
+        }
+
+        Set<ZSetOperations.TypedTuple<Object>> members = new HashSet<>();
+        for (Company company : companies) {
+            if (company.getCurrentRating() != null && company.getCurrentRating().getOverallScore() != null) {
+                members.add(new DefaultTypedTuple<>(company.getCompanyId(),
+                        company.getCurrentRating().getOverallScore()));
+            }
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                if (!members.isEmpty()) {
+                    ops.opsForZSet().addIfAbsent(ESG_RANKING_KEY, members);
+                }
+                if (cacheValues) {
+                    for (Company company : companies) {
+                        ops.opsForValue().setIfAbsent(companyKey(company.getCompanyId()), company,
+                                cacheTtlSeconds(), TimeUnit.SECONDS);
+                    }
+                }
+                return null;
+            }
+        });
+        companies.forEach(company -> companyIdFilter.put(company.getCompanyId()));
+    }
+
     public void evictCompanyCache(String companyId) {
         try {
             MDC.put("companyId", companyId);
             MDC.put("operation", "EVICT_COMPANY_CACHE");
-            String cacheKey = COMPANY_CACHE_PREFIX + companyId;
+            String cacheKey = companyKey(companyId);
+            nearCache.invalidate(companyId);
             redisTemplate.delete(cacheKey);
+            l2Evictions.increment();
+            nearCache.publishInvalidation(companyId);
             log.debug("Company cache evicted: {}", companyId);
         } catch (Exception e) {
             log.error("Failed to evict company cache {}: {}", companyId, e.getMessage(), e);
@@ -69,16 +368,214 @@ public class CompanyCacheService {
         }
     }
 
-    public void updateCompanyRanking(String companyId, Double score) {
+    /**
+     * true, если ID нет в фильтре известных компаний узла - проверка без обращения к Redis и БД.
+     * Компании с других узлов и из внешних загрузок фильтр узнает по поколению (см. {@link CompanyIdFilter}).
+     */
+    public boolean isRejectedByFilter(String companyId) {
+        return !companyIdFilter.mightContain(companyId);
+    }
+
+    /**
+     * Добавляет ID новой компании в фильтр узла и сдвигает поколение фильтров остальных узлов
+     */
+    public void announceCompanyId(String companyId) {
+        companyIdFilter.announce(companyId);
+    }
+
+    /**
+     * Негативный кэш: ID, которого не оказалось в БД (в том числе ложные срабатывания фильтра)
+     */
+    public boolean isCachedAsMissing(String companyId) {
         try {
-            MDC.put("companyId", companyId);
+            return Boolean.TRUE.equals(redisTemplate.hasKey(MISSING_PREFIX + companyId));
+        } catch (Exception e) {
+            log.warn("Failed to check negative cache for {}: {}", companyId, e.getMessage());
+            return false;
+        }
+    }
+
+    public void cacheMissing(String companyId) {
+        try {
+            redisTemplate.opsForValue().set(MISSING_PREFIX + companyId, Boolean.TRUE,
+                    negativeTtlSeconds, TimeUnit.SECONDS);
+            log.debug("Company cached as missing: {}", companyId);
+        } catch (Exception e) {
+            log.warn("Failed to cache missing company {}: {}", companyId, e.getMessage());
+        }
+    }
+
+    public void clearMissing(String companyId) {
+        try {
+            redisTemplate.delete(MISSING_PREFIX + companyId);
+        } catch (Exception e) {
+            log.warn("Failed to clear negative cache for {}: {}", companyId, e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает накопленные с прошлого вызова счетчики чтений и обнуляет их
+     */
+    public Map<String, Long> drainReadCounts() {
+        Map<String, Long> snapshot = new HashMap<>();
+        for (String companyId : new ArrayList<>(readCounts.keySet())) {
+            LongAdder counter = readCounts.remove(companyId);
+            if (counter != null) {
+                snapshot.put(companyId, counter.sum());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Оставшееся время жизни ключей company:{id} в миллисекундах, одним пайплайном PTTL.
+     * -2 - ключа нет, -1 - ключ без TTL.
+     */
+    public Map<String, Long> getRemainingTtls(List<String> companyIds) {
+        Map<String, Long> result = new HashMap<>();
+        if (companyIds == null || companyIds.isEmpty()) {
+            return result;
+        }
+
+        try {
+            List<Object> ttls = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (String companyId : companyIds) {
+                        ops.getExpire(companyKey(companyId), TimeUnit.MILLISECONDS);
+                    }
+                    return null;
+                }
+            });
+            for (int i = 0; i < companyIds.size() && i < ttls.size(); i++) {
+                if (ttls.get(i) instanceof Number ttl) {
+                    result.put(companyIds.get(i), ttl.longValue());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read cache TTLs: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    private void recordRead(String companyId) {
+        LongAdder counter = readCounts.get(companyId);
+        if (counter == null) {
+            if (readCounts.size() >= maxTrackedKeys) {
+                return;
+            }
+            counter = readCounts.computeIfAbsent(companyId, id -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    // company:v{gen}:{id} - смена поколения делает все старые записи недостижимыми
+    private String companyKey(String companyId) {
+        return cacheNamespaces.key(CacheNamespaces.COMPANY, companyId);
+    }
+
+    private double l2HitRate() {
+        double lookups = l2Hits.count() + l2Misses.count();
+        return lookups == 0 ? 0.0 : l2Hits.count() / lookups;
+    }
+
+    private static long cacheTtlSeconds() {
+        return CACHE_TTL_SECONDS + ThreadLocalRandom.current().nextLong(CACHE_TTL_JITTER_SECONDS + 1);
+    }
+
+    /**
+     * Пытается захватить межузловую аренду на загрузку компании из БД (SET NX PX).
+     * При недоступности Redis возвращает true, чтобы загрузка не блокировалась.
+     */
+    public boolean tryAcquireLoadLease(String companyId, String token) {
+        try {
+            Boolean acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(LOAD_LEASE_PREFIX + companyId, token, Duration.ofMillis(leaseTtlMs));
+            return !Boolean.FALSE.equals(acquired);
+        } catch (Exception e) {
+            log.warn("Failed to acquire load lease for company {}: {}", companyId, e.getMessage());
+            return true;
+        }
+    }
+
+    public void releaseLoadLease(String companyId, String token) {
+        try {
+            // Удаляем аренду, только если она всё ещё наша
+            redisTemplate.execute(releaseLeaseScript, List.of(LOAD_LEASE_PREFIX + companyId), token);
+        } catch (Exception e) {
+            log.warn("Failed to release load lease for company {}: {}", companyId, e.getMessage());
+        }
+    }
+
+    /**
+     * Ожидает, пока другой узел, владеющий арендой, заполнит кэш.
+     * Возвращает null, если за отведенное время компания в кэше не появилась.
+     */
+    public Company awaitCachedCompany(String companyId) {
+        long deadline = System.currentTimeMillis() + leaseWaitMs;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LEASE_POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Company company = getCachedCompany(companyId);
+            if (company != null) {
+                return company;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Одним серверным скриптом обновляет балл в esg:ranking и кэшированную компанию,
+     * возвращая позицию компании до и после обновления.
+     * Возвращает null, если обновить рейтинг не удалось.
+     */
+    public RankingChange cacheCompanyWithRanking(Company company) {
+        try {
+            MDC.put("companyId", company.getCompanyId());
             MDC.put("operation", "UPDATE_COMPANY_RANKING");
-            redisTemplate.opsForZSet().add(COMPANY_RANKING_KEY, companyId, score);
-            log.debug("Company ranking updated: {} with score {}", companyId, score);
+            Double score = company.getCurrentRating().getOverallScore();
+            String cacheKey = companyKey(company.getCompanyId());
+            int ttlSeconds = (int) cacheTtlSeconds();
+
+            List<?> ranks = redisTemplate.execute(updateRankingScript,
+                    List.of(ESG_RANKING_KEY, cacheKey),
+                    company.getCompanyId(), score, company, ttlSeconds);
+
+            nearCache.put(company);
+            companyIdFilter.put(company.getCompanyId());
+            nearCache.publishInvalidation(company.getCompanyId());
+
+            RankingChange change = new RankingChange(toRank(ranks, 0), toRank(ranks, 1));
+            log.debug("Company ranking updated: {} with score {} ({} -> {})",
+                    company.getCompanyId(), score, change.getPreviousRank(), change.getNewRank());
+            return change;
         } catch (Exception e) {
-            log.error("Failed to update company ranking {}: {}", companyId, e.getMessage(), e);
+            log.error("Failed to update company ranking {}: {}", company.getCompanyId(), e.getMessage(), e);
+            return null;
         } finally {
             MDC.clear();
         }
     }
-}
\ No newline at end of file
+
+    private static Integer toRank(List<?> ranks, int index) {
+        if (ranks == null || ranks.size() <= index || !(ranks.get(index) instanceof Number rank)) {
+            return null;
+        }
+        // ZREVRANK 0-based, -1 означает отсутствие в рейтинге
+        return rank.longValue() < 0 ? null : (int) rank.longValue() + 1;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static RedisScript<List> rankingScript() {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("redis/update_ranking.lua"));
+        script.setResultType(List.class);
+        return script;
+    }
+}
@@ -1,5 +1,8 @@
 package com.esg.dashboard.service;
 
+import com.esg.dashboard.cache.RankingChange;
+import com.esg.dashboard.cache.SingleFlight;
+import com.esg.dashboard.dto.RankedCompanyDto;
 import com.esg.dashboard.event.EventPublisher;
 import com.esg.dashboard.model.Company;
 import com.esg.dashboard.model.ESGRating;
@@ -14,9 +17,13 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 
 @Slf4j
 @Service
@@ -31,6 +38,9 @@ public class CompanyService {
 
     private static final String ESG_RANKING_KEY = "esg:ranking";
 
+    // Одновременные промахи кэша по одной компании обслуживаются одним запросом к БД
+    private final SingleFlight<Optional<Company>> companyLoads = new SingleFlight<>();
+
     @Transactional
     public Company saveOrUpdateCompany(Company company) {
         Assert.notNull(company, "Company cannot be null");
@@ -44,9 +54,11 @@ public class CompanyService {
             company.setUpdatedAt(LocalDateTime.now());
             Company savedCompany = companyRepository.save(company);
 
-            // Обновляем кэш через специализированный сервис
-            companyCacheService.cacheCompany(savedCompany);
-            updateRanking(savedCompany);
+            // Обновляем кэш и рейтинг через специализированный сервис
+            updateCacheAndRanking(savedCompany);
+            if (isNew) {
+                companyCacheService.announceCompanyId(savedCompany.getCompanyId());
+            }
 
             // Публикуем событие для других компонентов
             String action = isNew ? "CREATE" : "UPDATE";
@@ -67,6 +79,12 @@ public class CompanyService {
             MDC.put("operation", "FIND_BY_ID");
             log.debug("Looking up company by ID: {}", companyId);
 
+            // ID, которых нет в фильтре, отсекаем без обращения к Redis и БД
+            if (companyCacheService.isRejectedByFilter(companyId)) {
+                log.debug("Company ID rejected by membership filter");
+                return Optional.empty();
+            }
+
             // Сначала проверяем кэш через специализированный сервис
             Company cachedCompany = companyCacheService.getCachedCompany(companyId);
             if (cachedCompany != null) {
@@ -74,17 +92,52 @@ public class CompanyService {
                 return Optional.of(cachedCompany);
             }
 
-            // Если не найдено в кэше, обращаемся к базе данных
-            Optional<Company> company = companyRepository.findByCompanyId(companyId);
-            company.ifPresent(companyCacheService::cacheCompany);
+            // Если не найдено в кэше, обращаемся к базе данных (один загрузчик на ключ)
+            return companyLoads.execute(companyId, () -> loadCompany(companyId));
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private Optional<Company> loadCompany(String companyId) {
+        if (companyCacheService.isCachedAsMissing(companyId)) {
+            log.debug("Company {} found in negative cache", companyId);
+            return Optional.empty();
+        }
+
+        String leaseToken = UUID.randomUUID().toString();
+        boolean leaseHolder = companyCacheService.tryAcquireLoadLease(companyId, leaseToken);
+        try {
+            if (!leaseHolder) {
+                // Компанию уже загружает другой узел - ждём, пока он заполнит кэш
+                Company loadedElsewhere = companyCacheService.awaitCachedCompany(companyId);
+                if (loadedElsewhere != null) {
+                    log.debug("Company {} loaded by another node", companyId);
+                    return Optional.of(loadedElsewhere);
+                }
+            }
 
+            Optional<Company> company = companyRepository.findByCompanyId(companyId);
+            if (company.isPresent()) {
+                companyCacheService.cacheCompany(company.get());
+            } else {
+                companyCacheService.cacheMissing(companyId);
+            }
             return company;
         } finally {
-            MDC.clear();
+            if (leaseHolder) {
+                companyCacheService.releaseLoadLease(companyId, leaseToken);
+            }
         }
     }
 
     public List<Company> getTopRankedCompanies(int limit) {
+        return getTopRankedCompaniesWithScores(limit).stream()
+                .map(RankedCompanyDto::getCompany)
+                .toList();
+    }
+
+    public List<RankedCompanyDto> getTopRankedCompaniesWithScores(int limit) {
         Assert.isTrue(limit > 0, "Limit must be positive");
         Assert.isTrue(limit <= 1000, "Limit cannot exceed 1000");
 
@@ -92,30 +145,98 @@ public class CompanyService {
         MDC.put("limit", String.valueOf(limit));
         log.info("Fetching top {} ranked companies", limit);
 
-        // Сначала пробуем получить из Redis Sorted Set
-        Set<Object> topCompanyIds = zSetOperations.reverseRange(ESG_RANKING_KEY, 0, limit - 1);
-        if (topCompanyIds != null && !topCompanyIds.isEmpty()) {
-            log.debug("Found {} companies in ranking cache", topCompanyIds.size());
-            return topCompanyIds.stream()
-                    .map(id -> findByCompanyId((String) id))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .toList();
+        // Сначала пробуем получить из Redis Sorted Set вместе с баллами (ZREVRANGE ... WITHSCORES)
+        Set<ZSetOperations.TypedTuple<Object>> ranked =
+                zSetOperations.reverseRangeWithScores(ESG_RANKING_KEY, 0, limit - 1);
+        if (ranked != null && !ranked.isEmpty()) {
+            log.debug("Found {} companies in ranking cache", ranked.size());
+            return hydrateRanking(ranked, 0);
         }
 
         // Если не найдено в кэше, обращаемся к базе данных
         log.debug("Ranking not found in cache, querying database");
-        return companyRepository.findTopRankedCompanies(limit);
+        List<Company> companies = companyRepository.findTopRankedCompanies(limit);
+        List<RankedCompanyDto> result = new ArrayList<>(companies.size());
+        long rank = 0;
+        for (Company company : companies) {
+            result.add(RankedCompanyDto.builder()
+                    .rank(++rank)
+                    .score(company.getCurrentRating() != null ? company.getCurrentRating().getOverallScore() : null)
+                    .company(company)
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * Загружает компании для фрагмента рейтинга одним пакетным запросом, сохраняя порядок.
+     * Идентификаторы, для которых компания уже не существует, пропускаются, но позиции остальных не сдвигаются.
+     */
+    private List<RankedCompanyDto> hydrateRanking(Collection<ZSetOperations.TypedTuple<Object>> ranked, long offset) {
+        List<String> companyIds = ranked.stream()
+                .map(entry -> String.valueOf(entry.getValue()))
+                .toList();
+        Map<String, Company> companies = batchLoadCompanies(companyIds);
+
+        List<RankedCompanyDto> result = new ArrayList<>(companyIds.size());
+        long rank = offset;
+        for (ZSetOperations.TypedTuple<Object> entry : ranked) {
+            rank++;
+            Company company = companies.get(String.valueOf(entry.getValue()));
+            if (company == null) {
+                log.warn("Ranked company {} not found, skipping", entry.getValue());
+                continue;
+            }
+            result.add(RankedCompanyDto.builder()
+                    .rank(rank)
+                    .score(entry.getScore())
+                    .company(company)
+                    .build());
+        }
+        return result;
     }
 
     public org.springframework.data.domain.Page<Company> getTopRankedCompanies(org.springframework.data.domain.Pageable pageable) {
+        return getTopRankedPage(pageable).map(RankedCompanyDto::getCompany);
+    }
+
+    /**
+     * Страница рейтинга из Redis Sorted Set: ZREVRANGE по смещению и ZCARD для общего количества.
+     * К Mongo обращаемся только если рейтинг в Redis ещё не прогрет.
+     */
+    public org.springframework.data.domain.Page<RankedCompanyDto> getTopRankedPage(org.springframework.data.domain.Pageable pageable) {
         MDC.put("operation", "GET_TOP_RANKED_PAGED");
         MDC.put("page", String.valueOf(pageable.getPageNumber()));
         MDC.put("size", String.valueOf(pageable.getPageSize()));
         log.info("Fetching top ranked companies - page: {}, size: {}", pageable.getPageNumber(), pageable.getPageSize());
 
-        // Используем пагинацию из репозитория
-        return companyRepository.findTopRankedCompanies(pageable);
+        Long total = zSetOperations.zCard(ESG_RANKING_KEY);
+        if (total != null && total > 0) {
+            long start = pageable.getOffset();
+            if (start >= total) {
+                return new org.springframework.data.domain.PageImpl<>(List.of(), pageable, total);
+            }
+            long end = start + pageable.getPageSize() - 1;
+            Set<ZSetOperations.TypedTuple<Object>> ranked = zSetOperations.reverseRangeWithScores(ESG_RANKING_KEY, start, end);
+            if (ranked != null && !ranked.isEmpty()) {
+                log.debug("Serving ranking page {} from Redis ({} total)", pageable.getPageNumber(), total);
+                return new org.springframework.data.domain.PageImpl<>(hydrateRanking(ranked, start), pageable, total);
+            }
+        }
+
+        // Рейтинг в Redis пуст - используем пагинацию из репозитория
+        log.debug("Ranking not found in cache, querying database");
+        org.springframework.data.domain.Page<Company> companies = companyRepository.findTopRankedCompanies(pageable);
+        List<RankedCompanyDto> content = new ArrayList<>(companies.getNumberOfElements());
+        long rank = pageable.getOffset();
+        for (Company company : companies.getContent()) {
+            content.add(RankedCompanyDto.builder()
+                    .rank(++rank)
+                    .score(company.getCurrentRating() != null ? company.getCurrentRating().getOverallScore() : null)
+                    .company(company)
+                    .build());
+        }
+        return new org.springframework.data.domain.PageImpl<>(content, pageable, companies.getTotalElements());
     }
 
     public List<Company> getCompaniesBySector(String sector) {
@@ -158,27 +279,21 @@ public class CompanyService {
         MDC.put("count", String.valueOf(companyIds.size()));
         log.debug("Batch loading {} companies", companyIds.size());
 
-        // Сначала пытаемся получить из кэша
-        java.util.Map<String, Company> result = new java.util.HashMap<>();
-        java.util.List<String> missingFromCache = new java.util.ArrayList<>();
+        // Одним MGET получаем всё, что есть в кэше
+        List<String> distinctIds = companyIds.stream().distinct().toList();
+        java.util.Map<String, Company> result = companyCacheService.getCachedCompanies(distinctIds);
+        java.util.List<String> missingFromCache = distinctIds.stream()
+                .filter(id -> !result.containsKey(id))
+                .toList();
 
-        for (String companyId : companyIds) {
-            Company cached = companyCacheService.getCachedCompany(companyId);
-            if (cached != null) {
-                result.put(companyId, cached);
-            } else {
-                missingFromCache.add(companyId);
-            }
-        }
-
-        // Загружаем отсутствующие компании из базы данных
+        // Загружаем отсутствующие компании из базы данных и записываем их в кэш одним пайплайном
         if (!missingFromCache.isEmpty()) {
             log.debug("Loading {} companies from database", missingFromCache.size());
             List<Company> companiesFromDb = companyRepository.findByCompanyIdIn(missingFromCache);
             for (Company company : companiesFromDb) {
                 result.put(company.getCompanyId(), company);
-                companyCacheService.cacheCompany(company);
             }
+            companyCacheService.cacheCompanies(companiesFromDb);
         }
 
         log.debug("Batch loaded {} companies", result.size());
@@ -206,9 +321,8 @@ public class CompanyService {
 
             Company updatedCompany = companyRepository.save(company);
 
-            // Update cache and ranking using dedicated services
-            companyCacheService.cacheCompany(updatedCompany);
-            updateRanking(updatedCompany);
+            // Update cache and ranking in a single round trip
+            updateCacheAndRanking(updatedCompany);
 
             // Publish event for other components
             eventPublisher.publishRatingUpdated(companyId, previousRating, newRating);
@@ -219,20 +333,25 @@ public class CompanyService {
         }
     }
 
-    private void updateRanking(Company company) {
-        try {
-            if (company.getCurrentRating() == null || company.getCurrentRating().getOverallScore() == null) {
-                log.warn("Cannot update ranking for company {}: rating or score is null", company.getCompanyId());
-                return;
-            }
-            Double score = company.getCurrentRating().getOverallScore();
-            zSetOperations.add(ESG_RANKING_KEY, company.getCompanyId(), score);
-            // Также обновляем через сервис кэша для консистентности
-            companyCacheService.updateCompanyRanking(company.getCompanyId(), score);
-            log.debug("Updated ranking for company: {} with score: {}", company.getCompanyId(), score);
-        } catch (Exception e) {
-            log.error("Failed to update ranking for company {}: {}", company.getCompanyId(), e.getMessage(), e);
-            // Don't throw exception to avoid breaking the main flow, but log it properly
+    private void updateCacheAndRanking(Company company) {
+        // Компания могла быть закэширована как отсутствующая до создания
+        companyCacheService.clearMissing(company.getCompanyId());
+
+        if (company.getCurrentRating() == null || company.getCurrentRating().getOverallScore() == null) {
+            log.warn("Cannot update ranking for company {}: rating or score is null", company.getCompanyId());
+            companyCacheService.cacheCompany(company);
+            return;
+        }
+
+        RankingChange change = companyCacheService.cacheCompanyWithRanking(company);
+        if (change == null) {
+            // Скрипт не выполнился - не ломаем основной поток, но кэш всё равно обновляем
+            companyCacheService.cacheCompany(company);
+            return;
+        }
+
+        if (change.isChanged()) {
+            eventPublisher.publishRankingChanged(company, change.getPreviousRank(), change.getNewRank());
         }
     }
-}
\ No newline at end of file
+}
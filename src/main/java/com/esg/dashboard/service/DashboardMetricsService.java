@@ -2,6 +2,7 @@ package com.esg.dashboard.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
@@ -22,6 +23,11 @@ public class DashboardMetricsService {
     private final MongoTemplate mongoTemplate;
     private final CompanyService companyService;
 
+    public static final String OVERALL_METRICS_KEY = "overall";
+
+    // Метрики по умолчанию (ошибка или пустая база) не кэшируем
+    @Cacheable(cacheNames = AnalyticsService.ANALYTICS_CACHE, key = "'" + OVERALL_METRICS_KEY + "'",
+            unless = "#result['totalCompanies'] == 0")
     public Map<String, Object> getOverallMetrics() {
         try {
             org.slf4j.MDC.put("operation", "GET_OVERALL_METRICS");
@@ -1,21 +1,30 @@
 package com.esg.dashboard.service;
 
 import com.esg.dashboard.model.HistoricalData;
+import com.esg.dashboard.model.HistoricalDataPoint;
 import com.esg.dashboard.repository.HistoricalDataRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * История показателей компаний. При app.historical-data.time-series.enabled записи хранятся
+ * в time-series коллекции (HistoricalDataPoint) с companyId и dataType в metaField,
+ * иначе - документом на запись в historical_data. Формат ответов в обоих режимах одинаковый.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -24,6 +33,9 @@ public class HistoricalDataService {
     private final MongoTemplate mongoTemplate;
     private final HistoricalDataRepository historicalDataRepository;
 
+    @Value("${app.historical-data.time-series.enabled:false}")
+    private boolean timeSeriesEnabled = false;
+
     public void saveHistoricalData(String companyId, String dataType, Map<String, Object> metrics) {
         try {
             MDC.put("companyId", companyId);
@@ -40,7 +52,12 @@ public class HistoricalDataService {
                     .quality(HistoricalData.DataQuality.HIGH)
                     .build();
 
-            mongoTemplate.save(historicalData);
+            if (timeSeriesEnabled) {
+                // В time-series коллекции документы не обновляются по _id - только вставка
+                mongoTemplate.insert(HistoricalDataPoint.from(historicalData));
+            } else {
+                mongoTemplate.save(historicalData);
+            }
             log.debug("Historical data successfully saved for company: {}, type: {}", companyId, dataType);
         } catch (Exception e) {
             log.error("Error saving historical data for company {}: {}", companyId, e.getMessage(), e);
@@ -58,12 +75,12 @@ public class HistoricalDataService {
                     companyId, dataType, from, to);
 
             Query query = new Query();
-            query.addCriteria(Criteria.where("companyId").is(companyId)
-                    .and("dataType").is(dataType)
+            query.addCriteria(Criteria.where(companyField()).is(companyId)
+                    .and(dataTypeField()).is(dataType)
                     .and("recordDate").gte(from).lte(to));
             query.limit(1000); // Предотвращаем слишком большие наборы данных
 
-            List<HistoricalData> results = mongoTemplate.find(query, HistoricalData.class);
+            List<HistoricalData> results = find(query);
             log.debug("Found {} historical records", results.size());
             return results;
         } finally {
@@ -78,12 +95,12 @@ public class HistoricalDataService {
             MDC.put("limit", String.valueOf(limit));
             log.info("Fetching company history: {}, limit: {}", companyId, limit);
 
-            Query query = new Query(Criteria.where("companyId").is(companyId));
+            Query query = new Query(Criteria.where(companyField()).is(companyId));
             query.limit(limit);
             query.with(org.springframework.data.domain.Sort.by(
                     org.springframework.data.domain.Sort.Direction.DESC, "recordDate"));
 
-            List<HistoricalData> results = mongoTemplate.find(query, HistoricalData.class);
+            List<HistoricalData> results = find(query);
             log.debug("Found {} history records for company {}", results.size(), companyId);
             return results;
         } finally {
@@ -99,7 +116,10 @@ public class HistoricalDataService {
             MDC.put("size", String.valueOf(pageable.getPageSize()));
             log.info("Fetching company history: {} - page: {}, size: {}", companyId, pageable.getPageNumber(), pageable.getPageSize());
 
-            Page<HistoricalData> results = historicalDataRepository.findByCompanyIdOrderByRecordDateDesc(companyId, pageable);
+            Page<HistoricalData> results = timeSeriesEnabled
+                    ? findTimeSeriesPage(Criteria.where(companyField()).is(companyId),
+                            Sort.by(Sort.Direction.DESC, "recordDate"), pageable)
+                    : historicalDataRepository.findByCompanyIdOrderByRecordDateDesc(companyId, pageable);
             log.debug("Found {} history records for company {} (page {})", results.getContent().size(), companyId, pageable.getPageNumber());
             return results;
         } finally {
@@ -117,8 +137,12 @@ public class HistoricalDataService {
             log.info("Fetching historical data for company: {}, type: {}, period: {} - {} - page: {}, size: {}", 
                     companyId, dataType, from, to, pageable.getPageNumber(), pageable.getPageSize());
 
-            Page<HistoricalData> results = historicalDataRepository.findByCompanyIdAndDataTypeAndDateRange(
-                    companyId, dataType, from, to, pageable);
+            Page<HistoricalData> results = timeSeriesEnabled
+                    ? findTimeSeriesPage(Criteria.where(companyField()).is(companyId)
+                            .and(dataTypeField()).is(dataType)
+                            .and("recordDate").gte(from).lte(to), Sort.unsorted(), pageable)
+                    : historicalDataRepository.findByCompanyIdAndDataTypeAndDateRange(
+                            companyId, dataType, from, to, pageable);
             log.debug("Found {} records for type {} in the specified period (page {})", 
                     results.getContent().size(), dataType, pageable.getPageNumber());
             return results;
@@ -126,4 +150,34 @@ public class HistoricalDataService {
             MDC.clear();
         }
     }
-}
\ No newline at end of file
+
+    private String companyField() {
+        return timeSeriesEnabled ? "meta.companyId" : "companyId";
+    }
+
+    private String dataTypeField() {
+        return timeSeriesEnabled ? "meta.dataType" : "dataType";
+    }
+
+    private List<HistoricalData> find(Query query) {
+        if (!timeSeriesEnabled) {
+            return mongoTemplate.find(query, HistoricalData.class);
+        }
+        return mongoTemplate.find(query, HistoricalDataPoint.class).stream()
+                .map(HistoricalDataPoint::toHistoricalData)
+                .toList();
+    }
+
+    /**
+     * Страница из time-series коллекции. defaultSort применяется, если сортировка не задана в pageable.
+     */
+    private Page<HistoricalData> findTimeSeriesPage(Criteria criteria, Sort defaultSort, Pageable pageable) {
+        Query query = new Query(criteria).with(pageable);
+        if (pageable.getSort().isUnsorted() && defaultSort.isSorted()) {
+            query.with(defaultSort);
+        }
+        List<HistoricalData> content = find(query);
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> mongoTemplate.count(new Query(criteria), HistoricalDataPoint.class));
+    }
+}
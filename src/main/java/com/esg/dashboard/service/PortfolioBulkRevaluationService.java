@@ -0,0 +1,416 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.event.RatingUpdatedEvent;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.repository.CompanyRepository;
+import com.esg.dashboard.service.scoring.CompanyScoreTable;
+import com.esg.dashboard.service.scoring.PortfolioScorer;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Массовая переоценка всех портфелей после смены методики или массового импорта рейтингов.
+ * Таблица баллов компаний загружается один раз, портфели читаются курсором по возрастанию portfolioId,
+ * пачки оцениваются параллельно в ForkJoinPool и пишутся неупорядоченными bulk-операциями.
+ * Контрольная точка (последний portfolioId, до которого все пачки записаны) сохраняется в Redis,
+ * поэтому прерванный прогон можно продолжить с места остановки.
+ * Запись идет с проверкой версии портфеля: портфель, измененный после чтения курсором, перечитывается
+ * и оценивается еще раз, а если он снова изменился - пропускается и учитывается в conflicts.
+ * Рейтинги могут меняться во время прогона (массовый импорт): компании из RatingUpdatedEvent перечитываются
+ * из базы и подменяются в таблице перед следующей пачкой, а после прохода курсора держатели компаний,
+ * измененных после загрузки таблицы (по updatedAt, в том числе на других узлах), переоцениваются заново.
+ */
+@Slf4j
+@Service
+public class PortfolioBulkRevaluationService {
+
+    public enum Status { IDLE, RUNNING, COMPLETED, FAILED }
+
+    static final String CHECKPOINT_KEY = "esg:jobs:portfolio-revaluation:checkpoint";
+
+    // updatedAt ставится до сохранения компании и часами другого узла - изменения ищутся с запасом
+    private static final Duration UPDATE_LAG = Duration.ofSeconds(30);
+    private static final int MAX_CATCH_UP_PASSES = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final CompanyRepository companyRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PortfolioCacheService portfolioCacheService;
+    private final ClientExposureService clientExposureService;
+    private final Executor taskExecutor;
+
+    @Value("${app.portfolio.bulk-revaluation.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.portfolio.bulk-revaluation.parallelism:0}")
+    private int parallelism = 0;
+
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.IDLE);
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final Set<String> changedCompanies = ConcurrentHashMap.newKeySet();
+    private volatile long total;
+    private volatile long companies;
+    private volatile String resumedFrom;
+    private volatile String checkpoint;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String lastError;
+
+    public PortfolioBulkRevaluationService(MongoTemplate mongoTemplate,
+                                           CompanyRepository companyRepository,
+                                           RedisTemplate<String, Object> redisTemplate,
+                                           PortfolioCacheService portfolioCacheService,
+                                           ClientExposureService clientExposureService,
+                                           @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.mongoTemplate = mongoTemplate;
+        this.companyRepository = companyRepository;
+        this.redisTemplate = redisTemplate;
+        this.portfolioCacheService = portfolioCacheService;
+        this.clientExposureService = clientExposureService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Запускает переоценку в фоне. При resume продолжает с сохраненной контрольной точки.
+     * Возвращает false, если переоценка уже идет.
+     */
+    public boolean start(boolean resume) {
+        Status current = status.get();
+        if (current == Status.RUNNING || !status.compareAndSet(current, Status.RUNNING)) {
+            return false;
+        }
+        String from = resume ? loadCheckpoint() : null;
+        taskExecutor.execute(() -> run(from));
+        return true;
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        long done = processed.get();
+        progress.put("status", status.get().name());
+        progress.put("processed", done);
+        progress.put("updated", updated.get());
+        progress.put("conflicts", conflicts.get());
+        progress.put("requeued", requeued.get());
+        progress.put("total", total);
+        progress.put("companies", companies);
+        progress.put("resumedFrom", resumedFrom);
+        progress.put("lastPortfolioId", checkpoint);
+        if (total > 0) {
+            progress.put("percent", Math.min(100.0, Math.round(done * 1000.0 / total) / 10.0));
+        }
+        if (startedAt != null) {
+            progress.put("startedAt", startedAt.toString());
+            LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+            long elapsedMs = Duration.between(startedAt, end).toMillis();
+            progress.put("elapsedMs", elapsedMs);
+            if (elapsedMs > 0 && done > 0) {
+                double perSecond = done * 1000.0 / elapsedMs;
+                progress.put("portfoliosPerSecond", Math.round(perSecond * 10.0) / 10.0);
+                if (finishedAt == null && total > done) {
+                    progress.put("etaSeconds", Math.round((total - done) / perSecond));
+                }
+            }
+        }
+        if (finishedAt != null) {
+            progress.put("finishedAt", finishedAt.toString());
+        }
+        if (lastError != null) {
+            progress.put("error", lastError);
+        }
+        return progress;
+    }
+
+    /**
+     * Пока идет прогон, запоминает компании с новым рейтингом; их баллы подменяются в таблице перед следующей пачкой
+     */
+    @EventListener
+    public void onRatingUpdated(RatingUpdatedEvent event) {
+        if (status.get() == Status.RUNNING) {
+            changedCompanies.add(event.getCompanyId());
+        }
+    }
+
+    private void run(String from) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            MDC.put("operation", "BULK_REVALUE_PORTFOLIOS");
+            processed.set(0);
+            updated.set(0);
+            conflicts.set(0);
+            requeued.set(0);
+            lastError = null;
+            finishedAt = null;
+            resumedFrom = from;
+            checkpoint = from;
+            startedAt = LocalDateTime.now();
+
+            changedCompanies.clear();
+            LocalDateTime tableLoadedAt = LocalDateTime.now().minus(UPDATE_LAG);
+            CompanyScoreTable table = loadScoreTable();
+            companies = table.size();
+
+            Query query = from != null
+                    ? Query.query(Criteria.where("portfolioId").gt(from))
+                    : new Query();
+            total = mongoTemplate.count(query, Portfolio.class);
+            query.with(Sort.by(Sort.Direction.ASC, "portfolioId")).cursorBatchSize(batchSize);
+            log.info("Starting bulk revaluation of {} portfolios against {} companies on {} threads{}",
+                    total, companies, threads, from != null ? " from " + from : "");
+
+            // Пачки в полете завершаются в произвольном порядке, а контрольная точка
+            // продвигается строго по порядку, чтобы при возобновлении ничего не пропустить
+            Deque<CompletableFuture<String>> inFlight = new ArrayDeque<>();
+            try (Stream<Portfolio> portfolios = mongoTemplate.stream(query, Portfolio.class)) {
+                List<Portfolio> batch = new ArrayList<>(batchSize);
+                Iterator<Portfolio> iterator = portfolios.iterator();
+                while (iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    if (batch.size() >= batchSize) {
+                        table = applyRatingChanges(table);
+                        submit(pool, table, batch, inFlight, threads * 2);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    table = applyRatingChanges(table);
+                    submit(pool, table, batch, inFlight, threads * 2);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                advanceCheckpoint(inFlight.removeFirst().join());
+            }
+            catchUp(table, tableLoadedAt);
+
+            clearCheckpoint();
+            status.set(Status.COMPLETED);
+            log.info("Bulk revaluation completed: {} portfolios processed, {} updated, {} skipped on conflict, "
+                            + "{} revalued again after rating changes in {} ms",
+                    processed.get(), updated.get(), conflicts.get(), requeued.get(),
+                    Duration.between(startedAt, LocalDateTime.now()).toMillis());
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            status.set(Status.FAILED);
+            log.error("Bulk revaluation failed after {} portfolios, resume from {}: {}",
+                    processed.get(), checkpoint, e.getMessage(), e);
+        } finally {
+            pool.shutdown();
+            finishedAt = LocalDateTime.now();
+            MDC.clear();
+        }
+    }
+
+    private CompanyScoreTable loadScoreTable() {
+        List<Company> all = new ArrayList<>();
+        try (Stream<Company> stream = companyRepository.streamCompanyScores()) {
+            stream.forEach(all::add);
+        }
+        return CompanyScoreTable.of(all);
+    }
+
+    /**
+     * Подменяет в таблице компании, о смене рейтинга которых пришли события. Баллы читаются из базы,
+     * а не из событий: события одной компании могут обрабатываться не по порядку.
+     */
+    private CompanyScoreTable applyRatingChanges(CompanyScoreTable table) {
+        if (changedCompanies.isEmpty()) {
+            return table;
+        }
+        List<String> companyIds = new ArrayList<>(changedCompanies);
+        changedCompanies.removeAll(companyIds);
+        log.debug("Bulk revaluation picks up new ratings of {} companies", companyIds.size());
+        return table.with(companyRepository.findByCompanyIdIn(companyIds));
+    }
+
+    /**
+     * Догоняющий проход: пачки, оцененные до смены рейтинга, и смены в обход событий (импорт, другие узлы)
+     * могли записать старые баллы. Держатели компаний, измененных после загрузки таблицы, переоцениваются
+     * по актуальным баллам, пока изменения не прекратятся, но не больше MAX_CATCH_UP_PASSES раз.
+     */
+    private void catchUp(CompanyScoreTable table, LocalDateTime since) {
+        for (int pass = 0; pass < MAX_CATCH_UP_PASSES; pass++) {
+            LocalDateTime nextSince = LocalDateTime.now().minus(UPDATE_LAG);
+            List<Company> changed;
+            try (Stream<Company> stream = companyRepository.streamCompanyScoresUpdatedAfter(since)) {
+                changed = stream.toList();
+            }
+            // Компании из событий к этому моменту тоже имеют updatedAt позже since
+            changedCompanies.clear();
+            if (changed.isEmpty()) {
+                return;
+            }
+            table = table.with(changed);
+
+            Query holders = Query.query(Criteria.where("items.companyId")
+                    .in(changed.stream().map(Company::getCompanyId).toList()));
+            holders.with(Sort.by(Sort.Direction.ASC, "portfolioId")).cursorBatchSize(batchSize);
+            long revalued = 0;
+            try (Stream<Portfolio> portfolios = mongoTemplate.stream(holders, Portfolio.class)) {
+                List<Portfolio> batch = new ArrayList<>(batchSize);
+                Iterator<Portfolio> iterator = portfolios.iterator();
+                while (iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    if (batch.size() >= batchSize || !iterator.hasNext()) {
+                        writeWithRetry(table, batch);
+                        revalued += batch.size();
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            requeued.addAndGet(revalued);
+            log.info("Bulk revaluation catch-up: {} companies changed during the run, {} holders revalued",
+                    changed.size(), revalued);
+            since = nextSince;
+        }
+        log.warn("Ratings kept changing after {} catch-up passes; later changes are left to incremental revaluation",
+                MAX_CATCH_UP_PASSES);
+    }
+
+    private void submit(ForkJoinPool pool, CompanyScoreTable table, List<Portfolio> batch,
+                        Deque<CompletableFuture<String>> inFlight, int maxInFlight) {
+        while (inFlight.size() >= maxInFlight) {
+            advanceCheckpoint(inFlight.removeFirst().join());
+        }
+        inFlight.addLast(CompletableFuture.supplyAsync(() -> revalueBatch(table, batch), pool));
+    }
+
+    private String revalueBatch(CompanyScoreTable table, List<Portfolio> batch) {
+        writeWithRetry(table, batch);
+        processed.addAndGet(batch.size());
+        return batch.get(batch.size() - 1).getPortfolioId();
+    }
+
+    private void writeWithRetry(CompanyScoreTable table, List<Portfolio> batch) {
+        List<String> conflicted = writeBatch(table, batch);
+        if (!conflicted.isEmpty()) {
+            // Позиции изменились между чтением курсором и записью - оцениваем актуальное состояние
+            List<Portfolio> fresh = mongoTemplate.find(
+                    Query.query(Criteria.where("portfolioId").in(conflicted)), Portfolio.class);
+            List<String> skipped = fresh.isEmpty() ? List.of() : writeBatch(table, fresh);
+            if (!skipped.isEmpty()) {
+                conflicts.addAndGet(skipped.size());
+                log.warn("Skipped {} portfolios modified concurrently during bulk revaluation: {}", skipped.size(), skipped);
+            }
+        }
+    }
+
+    /**
+     * Оценивает и пишет пачку одной bulk-записью. Каждое обновление выполняется, только если версия
+     * портфеля не изменилась с момента чтения. Возвращает ID портфелей, которые были изменены
+     * другой записью (удаленные портфели не возвращаются).
+     */
+    private List<String> writeBatch(CompanyScoreTable table, List<Portfolio> batch) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class);
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Long> writtenVersions = new LinkedHashMap<>();
+        List<ClientExposureService.Delta> exposure = new ArrayList<>(batch.size());
+        for (Portfolio portfolio : batch) {
+            Query target = versioned(portfolio);
+            writtenVersions.put(portfolio.getPortfolioId(), portfolio.getVersion() != null ? portfolio.getVersion() + 1 : 1L);
+            ClientExposureService.Delta delta = ClientExposureService.Delta.of(portfolio.getClientId())
+                    .minus(portfolio.getAggregateScores());
+            PortfolioScorer.score(portfolio, table);
+            exposure.add(delta.plus(portfolio.getAggregateScores()));
+            bulk.updateOne(target, new Update()
+                    .set("items", portfolio.getItems())
+                    .set("aggregateScores", portfolio.getAggregateScores())
+                    .set("updatedAt", now)
+                    .inc("version", 1));
+        }
+        BulkWriteResult result = bulk.execute();
+        updated.addAndGet(result.getModifiedCount());
+        List<String> portfolioIds = new ArrayList<>(writtenVersions.keySet());
+        portfolioCacheService.evictPortfolios(portfolioIds);
+        if (result.getMatchedCount() == batch.size()) {
+            clientExposureService.applyAll(exposure);
+            return List.of();
+        }
+
+        // Портфель удален или изменен между чтением и записью - дельта его клиента неточна
+        clientExposureService.invalidate(exposure.stream()
+                .map(ClientExposureService.Delta::getClientId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList());
+        // Версия, отличная от записанной, - обновление не совпало с документом (или поверх него уже
+        // записали еще раз, тогда повторная оценка просто перезапишет тот же результат)
+        Query versions = Query.query(Criteria.where("portfolioId").in(portfolioIds));
+        versions.fields().include("portfolioId").include("version");
+        return mongoTemplate.find(versions, Portfolio.class).stream()
+                .filter(current -> !Objects.equals(current.getVersion(), writtenVersions.get(current.getPortfolioId())))
+                .map(Portfolio::getPortfolioId)
+                .toList();
+    }
+
+    private static Query versioned(Portfolio portfolio) {
+        // Портфели до введения версий не имеют поля version - для них условие "поля нет"
+        Criteria version = portfolio.getVersion() != null
+                ? Criteria.where("version").is(portfolio.getVersion())
+                : Criteria.where("version").exists(false);
+        return Query.query(Criteria.where("portfolioId").is(portfolio.getPortfolioId())).addCriteria(version);
+    }
+
+    private void advanceCheckpoint(String lastPortfolioId) {
+        checkpoint = lastPortfolioId;
+        try {
+            redisTemplate.opsForValue().set(CHECKPOINT_KEY, lastPortfolioId);
+        } catch (Exception e) {
+            log.warn("Failed to persist bulk revaluation checkpoint {}: {}", lastPortfolioId, e.getMessage());
+        }
+        log.debug("Bulk revaluation progress: {}/{}, checkpoint {}", processed.get(), total, lastPortfolioId);
+    }
+
+    private String loadCheckpoint() {
+        try {
+            Object stored = redisTemplate.opsForValue().get(CHECKPOINT_KEY);
+            return stored != null ? stored.toString() : checkpoint;
+        } catch (Exception e) {
+            log.warn("Failed to load bulk revaluation checkpoint: {}", e.getMessage());
+            return checkpoint;
+        }
+    }
+
+    private void clearCheckpoint() {
+        try {
+            redisTemplate.delete(CHECKPOINT_KEY);
+        } catch (Exception e) {
+            log.warn("Failed to clear bulk revaluation checkpoint: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.cache.CacheNamespaces;
+import com.esg.dashboard.model.Portfolio;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш портфелей в пространстве имен portfolio: сами портфели лежат в portfolio:v{gen}:{portfolioId},
+ * список портфелей клиента - в portfolio:v{gen}:client:{clientId} как упорядоченный список portfolioId.
+ * Список гидрируется одним MGET, поэтому изменение портфеля не требует пересборки списков клиента.
+ */
+@Slf4j
+@Service
+public class PortfolioCacheService {
+
+    private static final String CACHE_NAME = "portfolio";
+    private static final String CLIENT_PREFIX = "client:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final CacheNamespaces cacheNamespaces;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    @Value("${app.cache.portfolio.ttl-seconds:3600}")
+    private long ttlSeconds = 3600;
+
+    public PortfolioCacheService(RedisTemplate<String, Object> redisTemplate,
+                                 CacheNamespaces cacheNamespaces,
+                                 MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.cacheNamespaces = cacheNamespaces;
+        this.hits = meterRegistry.counter("cache.gets", "cache", CACHE_NAME, "result", "hit");
+        this.misses = meterRegistry.counter("cache.gets", "cache", CACHE_NAME, "result", "miss");
+        this.evictions = meterRegistry.counter("cache.evictions", "cache", CACHE_NAME);
+    }
+
+    public Portfolio getCachedPortfolio(String portfolioId) {
+        try {
+            Object cached = redisTemplate.opsForValue().get(portfolioKey(portfolioId));
+            if (cached instanceof Portfolio portfolio) {
+                hits.increment();
+                return portfolio;
+            }
+            misses.increment();
+            return null;
+        } catch (Exception e) {
+            log.warn("Failed to get cached portfolio {}: {}", portfolioId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Пакетное чтение портфелей одним MGET. Возвращает только найденные.
+     */
+    public Map<String, Portfolio> getCachedPortfolios(List<String> portfolioIds) {
+        Map<String, Portfolio> result = new HashMap<>();
+        if (portfolioIds == null || portfolioIds.isEmpty()) {
+            return result;
+        }
+        try {
+            List<Object> values = redisTemplate.opsForValue().multiGet(portfolioIds.stream()
+                    .map(this::portfolioKey)
+                    .toList());
+            if (values != null) {
+                for (int i = 0; i < portfolioIds.size() && i < values.size(); i++) {
+                    if (values.get(i) instanceof Portfolio portfolio) {
+                        result.put(portfolioIds.get(i), portfolio);
+                    }
+                }
+            }
+            hits.increment(result.size());
+            misses.increment(portfolioIds.size() - result.size());
+            return result;
+        } catch (Exception e) {
+            log.warn("Failed to multi-get {} cached portfolios: {}", portfolioIds.size(), e.getMessage());
+            return result;
+        }
+    }
+
+    public void cachePortfolio(Portfolio portfolio) {
+        cachePortfolios(List.of(portfolio));
+    }
+
+    public void cachePortfolios(Collection<Portfolio> portfolios) {
+        if (portfolios.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Portfolio portfolio : portfolios) {
+                        ops.opsForValue().set(portfolioKey(portfolio.getPortfolioId()), portfolio,
+                                cacheTtlSeconds(), TimeUnit.SECONDS);
+                    }
+                    return null;
+                }
+            });
+            log.debug("Cached {} portfolios", portfolios.size());
+        } catch (Exception e) {
+            log.warn("Failed to cache {} portfolios: {}", portfolios.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Список portfolioId клиента или null, если список не закэширован
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getClientPortfolioIds(String clientId) {
+        try {
+            Object cached = redisTemplate.opsForValue().get(clientKey(clientId));
+            if (cached instanceof List<?> ids) {
+                hits.increment();
+                return (List<String>) ids;
+            }
+            misses.increment();
+            return null;
+        } catch (Exception e) {
+            log.warn("Failed to get cached portfolio ids for client {}: {}", clientId, e.getMessage());
+            return null;
+        }
+    }
+
+    public void cacheClientPortfolioIds(String clientId, List<String> portfolioIds) {
+        try {
+            redisTemplate.opsForValue().set(clientKey(clientId), new ArrayList<>(portfolioIds),
+                    cacheTtlSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to cache portfolio ids for client {}: {}", clientId, e.getMessage());
+        }
+    }
+
+    public void evictPortfolio(String portfolioId) {
+        evictPortfolios(List.of(portfolioId));
+    }
+
+    public void evictPortfolios(Collection<String> portfolioIds) {
+        if (portfolioIds.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.unlink(portfolioIds.stream().map(this::portfolioKey).toList());
+            evictions.increment(portfolioIds.size());
+        } catch (Exception e) {
+            log.warn("Failed to evict {} cached portfolios: {}", portfolioIds.size(), e.getMessage());
+        }
+    }
+
+    public void evictClient(String clientId) {
+        if (clientId == null) {
+            return;
+        }
+        try {
+            redisTemplate.delete(clientKey(clientId));
+            evictions.increment();
+        } catch (Exception e) {
+            log.warn("Failed to evict portfolio ids for client {}: {}", clientId, e.getMessage());
+        }
+    }
+
+    private String portfolioKey(String portfolioId) {
+        return cacheNamespaces.key(CacheNamespaces.PORTFOLIO, portfolioId);
+    }
+
+    private String clientKey(String clientId) {
+        return cacheNamespaces.key(CacheNamespaces.PORTFOLIO, CLIENT_PREFIX + clientId);
+    }
+
+    private long cacheTtlSeconds() {
+        // Разброс до 10%, чтобы записи, заполненные одной пачкой, не истекали одновременно
+        return ttlSeconds + ThreadLocalRandom.current().nextLong(ttlSeconds / 10 + 1);
+    }
+}
@@ -0,0 +1,206 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.PortfolioAggregateHistoryDto;
+import com.esg.dashboard.exception.PortfolioNotFoundException;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioAggregateHistory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * История агрегатов портфелей: ежедневный снимок всех портфелей и чтение ряда за период.
+ * Снимки хранятся по месяцам (PortfolioAggregateHistory), поэтому чтение года - 12 документов по _id.
+ * Повторный снимок за тот же день перезаписывает значения дня, так что запуск идемпотентен.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PortfolioHistoryService {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.portfolio.history.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.portfolio.history.max-range-days:1100}")
+    private int maxRangeDays = 1100;
+
+    /**
+     * Записывает текущие агрегаты всех оцененных портфелей как снимок за day.
+     * Возвращает число записанных портфелей.
+     */
+    public long captureSnapshots(LocalDate day) {
+        Assert.notNull(day, "Snapshot day cannot be null");
+
+        Query query = new Query(Criteria.where("aggregateScores").ne(null));
+        query.fields().include("portfolioId").include("aggregateScores");
+        query.cursorBatchSize(batchSize);
+
+        long captured = 0;
+        try (Stream<Portfolio> portfolios = mongoTemplate.stream(query, Portfolio.class)) {
+            List<Portfolio> batch = new ArrayList<>(batchSize);
+            Iterator<Portfolio> iterator = portfolios.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() >= batchSize) {
+                    captured += writeBatch(batch, day);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                captured += writeBatch(batch, day);
+            }
+        }
+        log.info("Captured {} portfolio aggregate snapshots for {}", captured, day);
+        return captured;
+    }
+
+    public PortfolioAggregateHistoryDto getHistory(String portfolioId, LocalDate from, LocalDate to) {
+        Assert.hasText(portfolioId, "Portfolio ID cannot be empty");
+        Assert.notNull(from, "Range start cannot be null");
+        Assert.notNull(to, "Range end cannot be null");
+        Assert.isTrue(!from.isAfter(to), "Range start must not be after range end");
+        Assert.isTrue(ChronoUnit.DAYS.between(from, to) < maxRangeDays,
+                "Range cannot be longer than " + maxRangeDays + " days");
+
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("operation", "GET_PORTFOLIO_HISTORY");
+
+            // Один документ на месяц диапазона, все - одним запросом по _id
+            List<String> bucketIds = new ArrayList<>();
+            for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+                bucketIds.add(PortfolioAggregateHistory.bucketId(portfolioId, month));
+            }
+            Map<String, PortfolioAggregateHistory> buckets = mongoTemplate
+                    .find(Query.query(Criteria.where("_id").in(bucketIds)), PortfolioAggregateHistory.class)
+                    .stream()
+                    .collect(Collectors.toMap(PortfolioAggregateHistory::getMonth, Function.identity()));
+            if (buckets.isEmpty() && !mongoTemplate.exists(
+                    Query.query(Criteria.where("portfolioId").is(portfolioId)), Portfolio.class)) {
+                throw new PortfolioNotFoundException(portfolioId);
+            }
+
+            int capacity = (int) ChronoUnit.DAYS.between(from, to) + 1;
+            List<LocalDate> dates = new ArrayList<>(capacity);
+            double[] esgScore = new double[capacity];
+            double[] carbonFootprint = new double[capacity];
+            double[] socialImpactScore = new double[capacity];
+            double[] totalInvestment = new double[capacity];
+            int[] holdings = new int[capacity];
+            int size = 0;
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                PortfolioAggregateHistory bucket = buckets.get(YearMonth.from(day).toString());
+                int slot = day.getDayOfMonth() - 1;
+                if (bucket == null || !hasSnapshot(bucket, slot)) {
+                    continue;
+                }
+                dates.add(day);
+                esgScore[size] = bucket.getEsgScore()[slot];
+                carbonFootprint[size] = valueAt(bucket.getCarbonFootprint(), slot);
+                socialImpactScore[size] = valueAt(bucket.getSocialImpactScore(), slot);
+                totalInvestment[size] = valueAt(bucket.getTotalInvestment(), slot);
+                holdings[size] = bucket.getHoldings() != null && slot < bucket.getHoldings().length
+                        ? Math.max(bucket.getHoldings()[slot], 0) : 0;
+                size++;
+            }
+
+            log.debug("Loaded {} daily snapshots of portfolio {} from {} monthly buckets", size, portfolioId, buckets.size());
+            return PortfolioAggregateHistoryDto.builder()
+                    .portfolioId(portfolioId)
+                    .from(from)
+                    .to(to)
+                    .dates(dates)
+                    .esgScore(Arrays.copyOf(esgScore, size))
+                    .carbonFootprint(Arrays.copyOf(carbonFootprint, size))
+                    .socialImpactScore(Arrays.copyOf(socialImpactScore, size))
+                    .totalInvestment(Arrays.copyOf(totalInvestment, size))
+                    .holdings(Arrays.copyOf(holdings, size))
+                    .build();
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Две bulk-записи на пачку: сначала создаются недостающие документы месяца с массивами из NaN,
+     * затем позиционно выставляются значения дня. В одной операции это невозможно:
+     * $setOnInsert массива и $set его элемента конфликтуют по пути.
+     */
+    private int writeBatch(List<Portfolio> batch, LocalDate day) {
+        YearMonth month = YearMonth.from(day);
+        int slot = day.getDayOfMonth() - 1;
+        LocalDateTime now = LocalDateTime.now();
+
+        BulkOperations buckets = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioAggregateHistory.class);
+        BulkOperations values = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioAggregateHistory.class);
+        for (Portfolio portfolio : batch) {
+            Query bucket = Query.query(Criteria.where("_id")
+                    .is(PortfolioAggregateHistory.bucketId(portfolio.getPortfolioId(), month)));
+            buckets.upsert(bucket, new Update()
+                    .setOnInsert("portfolioId", portfolio.getPortfolioId())
+                    .setOnInsert("month", month.toString())
+                    .setOnInsert("esgScore", emptyDays())
+                    .setOnInsert("carbonFootprint", emptyDays())
+                    .setOnInsert("socialImpactScore", emptyDays())
+                    .setOnInsert("totalInvestment", emptyDays())
+                    .setOnInsert("holdings", emptyHoldings()));
+
+            PortfolioAggregate aggregate = portfolio.getAggregateScores();
+            values.updateOne(bucket, new Update()
+                    .set("esgScore." + slot, value(aggregate.getTotalEsgScore()))
+                    .set("carbonFootprint." + slot, value(aggregate.getCarbonFootprint()))
+                    .set("socialImpactScore." + slot, value(aggregate.getSocialImpactScore()))
+                    .set("totalInvestment." + slot, value(aggregate.getTotalInvestment()))
+                    .set("holdings." + slot, aggregate.getTotalCompanies() != null ? aggregate.getTotalCompanies() : 0)
+                    .set("updatedAt", now));
+        }
+        buckets.execute();
+        return values.execute().getMatchedCount();
+    }
+
+    private static boolean hasSnapshot(PortfolioAggregateHistory bucket, int slot) {
+        return bucket.getEsgScore() != null && slot < bucket.getEsgScore().length
+                && !Double.isNaN(bucket.getEsgScore()[slot]);
+    }
+
+    private static double valueAt(double[] values, int slot) {
+        return values != null && slot < values.length && !Double.isNaN(values[slot]) ? values[slot] : 0.0;
+    }
+
+    private static List<Double> emptyDays() {
+        return Collections.nCopies(PortfolioAggregateHistory.DAYS, Double.NaN);
+    }
+
+    private static List<Integer> emptyHoldings() {
+        return Collections.nCopies(PortfolioAggregateHistory.DAYS, PortfolioAggregateHistory.NO_SNAPSHOT);
+    }
+
+    private static double value(Double value) {
+        return value != null ? value : 0.0;
+    }
+}
@@ -0,0 +1,266 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.PortfolioHoldingResult;
+import com.esg.dashboard.exception.CompanyNotFoundException;
+import com.esg.dashboard.exception.DataValidationException;
+import com.esg.dashboard.exception.PortfolioNotFoundException;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.service.scoring.PortfolioScorer;
+import com.esg.dashboard.service.scoring.PortfolioScoringKernel;
+import com.esg.dashboard.util.ESGCalculator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.slf4j.MDC;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Точечные изменения позиций портфеля без перезаписи всего документа: $push, $pull и позиционный $set.
+ * Агрегаты пересчитываются из старых значений и одной измененной позиции:
+ * взвешенный балл = (балл * сумма портфеля ± балл позиции * сумма позиции) / новая сумма портфеля.
+ * Запись проходит только при неизменной версии портфеля, иначе - OptimisticLockingFailureException.
+ * Сохраненный weight остальных позиций обновляется при следующей полной оценке портфеля.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PortfolioHoldingService {
+
+    private final MongoTemplate mongoTemplate;
+    private final CompanyService companyService;
+    private final PortfolioCacheService portfolioCacheService;
+    private final ClientExposureService clientExposureService;
+
+    public PortfolioHoldingResult addHolding(String portfolioId, String companyId, double amount, Long expectedVersion) {
+        Assert.hasText(portfolioId, "Portfolio ID cannot be empty");
+        if (companyId == null || companyId.isBlank()) {
+            throw new DataValidationException("Company ID is required");
+        }
+        requirePositive(amount);
+
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("companyId", companyId);
+            MDC.put("operation", "ADD_HOLDING");
+
+            Portfolio current = loadHeader(portfolioId, companyId, expectedVersion);
+            if (current.getItems() != null && !current.getItems().isEmpty()) {
+                throw new DataValidationException("Portfolio " + portfolioId + " already holds " + companyId);
+            }
+            Company company = companyService.batchLoadCompanies(List.of(companyId)).get(companyId);
+            if (company == null) {
+                throw new CompanyNotFoundException(companyId);
+            }
+
+            PortfolioAggregate aggregate = adjust(current.getAggregateScores(), company.getCurrentRating(), 0.0, amount, 1);
+            PortfolioItem holding = PortfolioItem.builder()
+                    .companyId(companyId)
+                    .companyName(company.getName())
+                    .investmentAmount(amount)
+                    .weight(amount / aggregate.getTotalInvestment())
+                    .currentRating(company.getCurrentRating())
+                    .build();
+
+            // Условие на отсутствие позиции повторяется в фильтре на случай гонки между чтением и записью
+            Query target = versioned(current).addCriteria(Criteria.where("items.companyId").ne(companyId));
+            ClientExposureService.Delta exposure = exposureDelta(current, aggregate, companyId, amount);
+            write(target, new Update().push("items", holding), current, aggregate);
+            clientExposureService.apply(exposure);
+
+            log.info("Holding {} added to portfolio {}", companyId, portfolioId);
+            return result(current, holding, aggregate);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    public PortfolioHoldingResult adjustHolding(String portfolioId, String companyId, double amount, Long expectedVersion) {
+        Assert.hasText(portfolioId, "Portfolio ID cannot be empty");
+        Assert.hasText(companyId, "Company ID cannot be empty");
+        requirePositive(amount);
+
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("companyId", companyId);
+            MDC.put("operation", "ADJUST_HOLDING");
+
+            Portfolio current = loadHeader(portfolioId, companyId, expectedVersion);
+            PortfolioItem holding = requireHolding(current, companyId);
+            double previous = holding.getInvestmentAmount() != null ? holding.getInvestmentAmount() : 0.0;
+
+            PortfolioAggregate aggregate = adjust(current.getAggregateScores(), holding.getCurrentRating(), previous, amount, 0);
+            holding.setInvestmentAmount(amount);
+            holding.setWeight(amount / aggregate.getTotalInvestment());
+
+            Query target = versioned(current).addCriteria(Criteria.where("items.companyId").is(companyId));
+            ClientExposureService.Delta exposure = exposureDelta(current, aggregate, companyId, amount - previous);
+            write(target, new Update()
+                    .set("items.$.investmentAmount", amount)
+                    .set("items.$.weight", holding.getWeight()), current, aggregate);
+            clientExposureService.apply(exposure);
+
+            log.info("Holding {} in portfolio {} adjusted from {} to {}", companyId, portfolioId, previous, amount);
+            return result(current, holding, aggregate);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    public PortfolioHoldingResult removeHolding(String portfolioId, String companyId, Long expectedVersion) {
+        Assert.hasText(portfolioId, "Portfolio ID cannot be empty");
+        Assert.hasText(companyId, "Company ID cannot be empty");
+
+        try {
+            MDC.put("portfolioId", portfolioId);
+            MDC.put("companyId", companyId);
+            MDC.put("operation", "REMOVE_HOLDING");
+
+            Portfolio current = loadHeader(portfolioId, companyId, expectedVersion);
+            PortfolioItem holding = requireHolding(current, companyId);
+            double previous = holding.getInvestmentAmount() != null ? holding.getInvestmentAmount() : 0.0;
+
+            PortfolioAggregate aggregate = adjust(current.getAggregateScores(), holding.getCurrentRating(), previous, 0.0, -1);
+
+            Query target = versioned(current);
+            ClientExposureService.Delta exposure = exposureDelta(current, aggregate, companyId, -previous);
+            write(target, new Update().pull("items", new Document("companyId", companyId)), current, aggregate);
+            clientExposureService.apply(exposure);
+
+            log.info("Holding {} removed from portfolio {}", companyId, portfolioId);
+            return result(current, null, aggregate);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Читает агрегаты, версию и только позицию по companyId - размер портфеля не важен
+     */
+    private Portfolio loadHeader(String portfolioId, String companyId, Long expectedVersion) {
+        Query query = Query.query(Criteria.where("portfolioId").is(portfolioId));
+        query.fields()
+                .include("portfolioId")
+                .include("clientId")
+                .include("aggregateScores")
+                .include("version")
+                .elemMatch("items", Criteria.where("companyId").is(companyId));
+        Portfolio current = mongoTemplate.findOne(query, Portfolio.class);
+        if (current == null) {
+            throw new PortfolioNotFoundException(portfolioId);
+        }
+        if (expectedVersion != null && !Objects.equals(expectedVersion, current.getVersion())) {
+            throw new OptimisticLockingFailureException("Portfolio " + portfolioId + " was modified: expected version "
+                    + expectedVersion + ", current " + current.getVersion());
+        }
+        return current;
+    }
+
+    private static PortfolioItem requireHolding(Portfolio current, String companyId) {
+        if (current.getItems() == null || current.getItems().isEmpty()) {
+            throw new DataValidationException("Portfolio " + current.getPortfolioId() + " does not hold " + companyId);
+        }
+        return current.getItems().get(0);
+    }
+
+    private static Query versioned(Portfolio current) {
+        // Портфели до введения версий не имеют поля version - для них условие "поля нет"
+        Criteria version = current.getVersion() != null
+                ? Criteria.where("version").is(current.getVersion())
+                : Criteria.where("version").exists(false);
+        return Query.query(Criteria.where("portfolioId").is(current.getPortfolioId())).addCriteria(version);
+    }
+
+    private void write(Query target, Update update, Portfolio current, PortfolioAggregate aggregate) {
+        update.set("aggregateScores", aggregate)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1);
+        long modified = mongoTemplate.updateFirst(target, update, Portfolio.class).getModifiedCount();
+        portfolioCacheService.evictPortfolio(current.getPortfolioId());
+        if (modified == 0) {
+            throw new OptimisticLockingFailureException("Portfolio " + current.getPortfolioId()
+                    + " was modified concurrently, reload and retry");
+        }
+        current.setVersion(current.getVersion() != null ? current.getVersion() + 1 : 1L);
+    }
+
+    // Дельта создается до записи портфеля (см. ClientExposureService), применяется после успешной записи
+    private static ClientExposureService.Delta exposureDelta(Portfolio current, PortfolioAggregate aggregate,
+                                                             String companyId, double amountChange) {
+        return ClientExposureService.Delta.of(current.getClientId())
+                .minus(current.getAggregateScores())
+                .plus(aggregate)
+                .company(companyId, amountChange);
+    }
+
+    /**
+     * Новые агрегаты после замены суммы позиции previous на next.
+     * Баллы хранятся округленными, поэтому после многих точечных изменений возможен дрейф
+     * в сотых долях - его устраняет полная переоценка портфеля.
+     */
+    static PortfolioAggregate adjust(PortfolioAggregate aggregate, ESGRating rating,
+                                     double previous, double next, int holdingsDelta) {
+        double total = aggregate != null ? value(aggregate.getTotalInvestment()) : 0.0;
+        double newTotal = total - previous + next;
+        int holdings = (aggregate != null && aggregate.getTotalCompanies() != null ? aggregate.getTotalCompanies() : 0)
+                + holdingsDelta;
+        if (newTotal <= 0.0 || holdings <= 0) {
+            return PortfolioScorer.emptyAggregate();
+        }
+
+        double change = next - previous;
+        double esg = reweight(aggregate, PortfolioAggregate::getTotalEsgScore, total, rating, ESGRating::getOverallScore, change, newTotal);
+        double carbon = reweight(aggregate, PortfolioAggregate::getCarbonFootprint, total, rating, ESGRating::getCarbonFootprint, change, newTotal);
+        double social = reweight(aggregate, PortfolioAggregate::getSocialImpactScore, total, rating, ESGRating::getSocialImpactScore, change, newTotal);
+
+        return PortfolioAggregate.builder()
+                .totalEsgScore(PortfolioScoringKernel.round2(esg))
+                .carbonFootprint(PortfolioScoringKernel.round2(carbon))
+                .socialImpactScore(PortfolioScoringKernel.round2(social))
+                .averageRating(ESGCalculator.calculateRatingGrade(esg))
+                .totalCompanies(holdings)
+                .totalInvestment(PortfolioScoringKernel.round2(newTotal))
+                .build();
+    }
+
+    private static double reweight(PortfolioAggregate aggregate, Function<PortfolioAggregate, Double> aggregateField,
+                                   double total, ESGRating rating, Function<ESGRating, Double> ratingField,
+                                   double change, double newTotal) {
+        double current = aggregate != null ? value(aggregateField.apply(aggregate)) : 0.0;
+        double score = rating != null ? value(ratingField.apply(rating)) : 0.0;
+        return (current * total + score * change) / newTotal;
+    }
+
+    private static PortfolioHoldingResult result(Portfolio current, PortfolioItem holding, PortfolioAggregate aggregate) {
+        return PortfolioHoldingResult.builder()
+                .portfolioId(current.getPortfolioId())
+                .version(current.getVersion())
+                .holding(holding)
+                .aggregateScores(aggregate)
+                .build();
+    }
+
+    private static void requirePositive(double amount) {
+        if (!(amount > 0)) {
+            throw new DataValidationException("Investment amount must be positive");
+        }
+    }
+
+    private static double value(Double value) {
+        return value != null ? value : 0.0;
+    }
+}
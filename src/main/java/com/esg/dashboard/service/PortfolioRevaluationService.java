@@ -0,0 +1,263 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.event.RatingUpdatedEvent;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.repository.CompanyRepository;
+import com.esg.dashboard.service.scoring.PortfolioScoringKernel;
+import com.esg.dashboard.util.ESGCalculator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Инкрементальная переоценка портфелей при изменении рейтинга компании.
+ * Портфели, держащие компанию, находятся по мультиключевому индексу items.companyId
+ * (обратный индекс companyId -> портфели, который MongoDB поддерживает при каждой записи портфеля).
+ * Агрегаты не пересчитываются целиком: к прочитанным значениям добавляется дельта weight * (новый балл - старый),
+ * результат округляется до двух знаков, как при полном пересчете, и записывается через $set
+ * при условии, что версия портфеля не изменилась с момента чтения. Обновления отправляются неупорядоченными bulk-пачками.
+ * Применяется текущий рейтинг компании из базы, а не рейтинг из события: события обрабатываются асинхронно
+ * и могут прийти не по порядку. Проход повторяется, пока рейтинг меняется или часть записей отсеяна проверкой версии.
+ * Если компания встречается в портфеле несколькими позициями, дельта считается по первой;
+ * точные значения восстанавливает следующий полный пересчет портфеля.
+ * Та же дельта, умноженная на сумму портфеля, переносится в экспозицию клиента (ClientExposureService).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PortfolioRevaluationService {
+
+    private static final String HOLDING = "holding";
+    private static final int MAX_PASSES = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final CompanyRepository companyRepository;
+    private final PortfolioCacheService portfolioCacheService;
+    private final ClientExposureService clientExposureService;
+
+    @Value("${app.portfolio.revaluation.batch-size:500}")
+    private int batchSize = 500;
+
+    @Async
+    @EventListener
+    public void onRatingUpdated(RatingUpdatedEvent event) {
+        revalue(event.getCompanyId());
+    }
+
+    /**
+     * Приводит все портфели, которые держат компанию, к её текущему рейтингу.
+     * Портфели, отсеянные проверкой версии (параллельная запись), и портфели, записанные с рейтингом,
+     * который сменился во время прохода, находятся и переоцениваются следующим проходом.
+     * Возвращает число обновленных портфелей.
+     */
+    public int revalue(String companyId) {
+        try {
+            MDC.put("companyId", companyId);
+            MDC.put("operation", "REVALUE_PORTFOLIOS");
+
+            int updated = 0;
+            ESGRating rating = currentRating(companyId);
+            for (int pass = 1; rating != null; pass++) {
+                PassResult result = revaluePass(companyId, rating);
+                updated += result.updated();
+                ESGRating latest = currentRating(companyId);
+                if (result.conflicts() == 0 && Objects.equals(latest, rating)) {
+                    break;
+                }
+                if (pass >= MAX_PASSES) {
+                    log.warn("Portfolios holding {} are still changing after {} passes ({} conflicts in the last one); "
+                            + "they will be revalued by the next rating event or a bulk revaluation",
+                            companyId, pass, result.conflicts());
+                    break;
+                }
+                rating = latest;
+            }
+
+            log.info("Revalued {} portfolios after rating change of {}", updated, companyId);
+            return updated;
+        } catch (Exception e) {
+            log.error("Error revaluing portfolios for {}: {}", companyId, e.getMessage(), e);
+            return 0;
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private ESGRating currentRating(String companyId) {
+        return companyRepository.findByCompanyId(companyId)
+                .map(Company::getCurrentRating)
+                .orElse(null);
+    }
+
+    /**
+     * Один проход по держателям, у которых позиция еще не несет этот рейтинг
+     */
+    private PassResult revaluePass(String companyId, ESGRating rating) {
+        Criteria staleHolding = Criteria.where("companyId").is(companyId).orOperator(
+                Criteria.where("currentRating.overallScore").ne(rating.getOverallScore()),
+                Criteria.where("currentRating.carbonFootprint").ne(rating.getCarbonFootprint()),
+                Criteria.where("currentRating.socialImpactScore").ne(rating.getSocialImpactScore()));
+        // Из позиций читаем только позицию по этой компании - размер портфеля не важен
+        Query holders = Query.query(Criteria.where("items").elemMatch(staleHolding));
+        holders.fields()
+                .include("portfolioId")
+                .include("clientId")
+                .include("aggregateScores")
+                .include("version")
+                .elemMatch("items", Criteria.where("companyId").is(companyId));
+        holders.cursorBatchSize(batchSize);
+
+        int updated = 0;
+        int conflicts = 0;
+        try (Stream<Portfolio> portfolios = mongoTemplate.stream(holders, Portfolio.class)) {
+            BulkOperations bulk = null;
+            List<String> pending = new ArrayList<>();
+            List<ClientExposureService.Delta> exposure = new ArrayList<>();
+            Iterator<Portfolio> iterator = portfolios.iterator();
+            while (iterator.hasNext()) {
+                Portfolio portfolio = iterator.next();
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class);
+                }
+                if (addDeltaUpdate(bulk, portfolio, companyId, rating, exposure)) {
+                    pending.add(portfolio.getPortfolioId());
+                }
+                if (pending.size() >= batchSize) {
+                    int matched = flush(bulk, pending, exposure);
+                    updated += matched;
+                    conflicts += pending.size() - matched;
+                    bulk = null;
+                    pending = new ArrayList<>();
+                    exposure = new ArrayList<>();
+                }
+            }
+            if (bulk != null && !pending.isEmpty()) {
+                int matched = flush(bulk, pending, exposure);
+                updated += matched;
+                conflicts += pending.size() - matched;
+            }
+        }
+        return new PassResult(updated, conflicts);
+    }
+
+    /**
+     * Выполняет пачку и возвращает число портфелей, прошедших проверку версии
+     */
+    private int flush(BulkOperations bulk, List<String> portfolioIds, List<ClientExposureService.Delta> exposure) {
+        int matched = bulk.execute().getMatchedCount();
+        portfolioCacheService.evictPortfolios(portfolioIds);
+        if (matched == portfolioIds.size()) {
+            clientExposureService.applyAll(exposure);
+        } else {
+            // Часть обновлений отсеяна проверкой версии, а какие именно - bulk не сообщает
+            clientExposureService.invalidate(exposure.stream()
+                    .map(ClientExposureService.Delta::getClientId)
+                    .distinct()
+                    .toList());
+        }
+        return matched;
+    }
+
+    private boolean addDeltaUpdate(BulkOperations bulk, Portfolio portfolio, String companyId, ESGRating newRating,
+                                   List<ClientExposureService.Delta> exposure) {
+        if (portfolio.getItems() == null || portfolio.getItems().isEmpty()) {
+            return false;
+        }
+        PortfolioItem holding = portfolio.getItems().get(0);
+        if (holding.getWeight() == null) {
+            // Портфель ещё не был оценен - дельту применять не к чему
+            return false;
+        }
+
+        ESGRating oldRating = holding.getCurrentRating();
+        PortfolioAggregate aggregate = portfolio.getAggregateScores();
+        double weight = weightOf(holding, aggregate);
+        double esgDelta = weight * (value(newRating.getOverallScore()) - value(oldRating, ESGRating::getOverallScore));
+        double carbonDelta = weight * (value(newRating.getCarbonFootprint()) - value(oldRating, ESGRating::getCarbonFootprint));
+        double socialDelta = weight * (value(newRating.getSocialImpactScore()) - value(oldRating, ESGRating::getSocialImpactScore));
+
+        Double oldEsgScore = aggregate != null ? aggregate.getTotalEsgScore() : null;
+        Double oldCarbon = aggregate != null ? aggregate.getCarbonFootprint() : null;
+        Double oldSocial = aggregate != null ? aggregate.getSocialImpactScore() : null;
+        double newEsgScore = value(oldEsgScore) + esgDelta;
+        double esgScore = PortfolioScoringKernel.round2(newEsgScore);
+        double carbon = PortfolioScoringKernel.round2(value(oldCarbon) + carbonDelta);
+        double social = PortfolioScoringKernel.round2(value(oldSocial) + socialDelta);
+
+        // Дельта посчитана от прочитанных позиции и агрегатов, поэтому портфель не должен меняться с момента чтения
+        Query target = versioned(portfolio);
+
+        Update update = new Update()
+                .set("aggregateScores.totalEsgScore", esgScore)
+                .set("aggregateScores.carbonFootprint", carbon)
+                .set("aggregateScores.socialImpactScore", social)
+                .set("aggregateScores.averageRating", ESGCalculator.calculateRatingGrade(newEsgScore))
+                .set("items.$[" + HOLDING + "].currentRating", newRating)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1)
+                .filterArray(Criteria.where(HOLDING + ".companyId").is(companyId));
+        bulk.updateOne(target, update);
+
+        if (portfolio.getClientId() != null) {
+            double investment = aggregate != null ? value(aggregate.getTotalInvestment()) : 0.0;
+            // Экспозиция сдвигается на фактически записанное изменение округленных агрегатов
+            exposure.add(ClientExposureService.Delta.of(portfolio.getClientId())
+                    .scores((esgScore - value(oldEsgScore)) * investment,
+                            (carbon - value(oldCarbon)) * investment,
+                            (social - value(oldSocial)) * investment));
+        }
+        return true;
+    }
+
+    private static Query versioned(Portfolio portfolio) {
+        // Портфели до введения версий не имеют поля version - для них условие "поля нет"
+        Criteria version = portfolio.getVersion() != null
+                ? Criteria.where("version").is(portfolio.getVersion())
+                : Criteria.where("version").exists(false);
+        return Query.query(Criteria.where("portfolioId").is(portfolio.getPortfolioId())).addCriteria(version);
+    }
+
+    /**
+     * Вес позиции считается от суммы инвестиций: после частичных изменений портфеля
+     * (PortfolioHoldingService) сохраненный weight остальных позиций может отставать
+     */
+    private static double weightOf(PortfolioItem holding, PortfolioAggregate aggregate) {
+        if (holding.getInvestmentAmount() != null && aggregate != null
+                && aggregate.getTotalInvestment() != null && aggregate.getTotalInvestment() > 0) {
+            return holding.getInvestmentAmount() / aggregate.getTotalInvestment();
+        }
+        return holding.getWeight();
+    }
+
+    private static double value(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    private static double value(ESGRating rating, Function<ESGRating, Double> field) {
+        return rating != null ? value(field.apply(rating)) : 0.0;
+    }
+
+    private record PassResult(int updated, int conflicts) {
+    }
+}
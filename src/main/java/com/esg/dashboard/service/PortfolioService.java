@@ -1,21 +1,37 @@
 package com.esg.dashboard.service;
 
+import com.esg.dashboard.dto.PortfolioBulkCreateResult;
+import com.esg.dashboard.dto.PortfolioBulkCreateResult.ItemResult;
 import com.esg.dashboard.model.Company;
 import com.esg.dashboard.model.Portfolio;
-import com.esg.dashboard.model.PortfolioAggregate;
-import com.esg.dashboard.model.PortfolioItem;
 import com.esg.dashboard.repository.PortfolioRepository;
+import com.esg.dashboard.service.scoring.CompanyScoreTable;
+import com.esg.dashboard.service.scoring.PortfolioScorer;
+import com.esg.dashboard.util.SearchTextUtils;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -24,6 +40,17 @@ public class PortfolioService {
 
     private final PortfolioRepository portfolioRepository;
     private final CompanyService companyService;
+    private final PortfolioCacheService portfolioCacheService;
+    private final MongoTemplate mongoTemplate;
+    private final ClientExposureService clientExposureService;
+
+    private static final int DUPLICATE_KEY_CODE = 11000;
+
+    @Value("${app.portfolio.bulk-create.max-size:1000}")
+    private int bulkCreateMaxSize = 1000;
+
+    @Value("${app.portfolio.search.max-query-length:100}")
+    private int searchMaxQueryLength = 100;
 
     public Portfolio createPortfolio(Portfolio portfolio) {
         Assert.notNull(portfolio, "Portfolio cannot be null");
@@ -34,11 +61,17 @@ public class PortfolioService {
             log.info("Creating new portfolio: {}", portfolio.getPortfolioName());
 
             // Calculate aggregate scores
+            indexName(portfolio);
             Portfolio portfolioWithScores = calculateAggregateScores(portfolio);
             portfolioWithScores.setCreatedAt(LocalDateTime.now());
             portfolioWithScores.setUpdatedAt(LocalDateTime.now());
 
+            // Дельта экспозиции создается до записи (см. ClientExposureService)
+            ClientExposureService.Delta exposureDelta = ClientExposureService.Delta.of(portfolioWithScores.getClientId());
             Portfolio savedPortfolio = portfolioRepository.save(portfolioWithScores);
+            portfolioCacheService.cachePortfolio(savedPortfolio);
+            portfolioCacheService.evictClient(savedPortfolio.getClientId());
+            clientExposureService.apply(exposureDelta.plus(savedPortfolio));
 
             log.info("Portfolio created successfully with ID: {}", savedPortfolio.getId());
             return savedPortfolio;
@@ -47,6 +80,98 @@ public class PortfolioService {
         }
     }
 
+    /**
+     * Пакетное создание портфелей: компании всего пакета загружаются одним запросом,
+     * портфели пишутся одной неупорядоченной вставкой, ошибка одного не останавливает остальные.
+     */
+    public PortfolioBulkCreateResult createPortfolios(List<Portfolio> portfolios) {
+        Assert.notEmpty(portfolios, "Portfolios cannot be empty");
+        if (portfolios.size() > bulkCreateMaxSize) {
+            throw new IllegalArgumentException("Too many portfolios in one request: " + portfolios.size()
+                    + ", maximum is " + bulkCreateMaxSize);
+        }
+
+        try {
+            MDC.put("operation", "BULK_CREATE_PORTFOLIOS");
+            log.info("Creating {} portfolios in bulk", portfolios.size());
+
+            ItemResult[] results = new ItemResult[portfolios.size()];
+            List<Portfolio> valid = new ArrayList<>(portfolios.size());
+            List<Integer> validIndexes = new ArrayList<>(portfolios.size());
+            Set<String> seenIds = new HashSet<>();
+            Set<String> companyIds = new LinkedHashSet<>();
+            for (int i = 0; i < portfolios.size(); i++) {
+                Portfolio portfolio = portfolios.get(i);
+                String error = validateForCreate(portfolio);
+                if (error == null && !seenIds.add(portfolio.getPortfolioId())) {
+                    error = "Duplicate portfolioId in request";
+                }
+                if (error != null) {
+                    results[i] = itemResult(i, portfolio, PortfolioBulkCreateResult.Status.INVALID, error);
+                    continue;
+                }
+                valid.add(portfolio);
+                validIndexes.add(i);
+                PortfolioScorer.companyIds(portfolio, companyIds);
+            }
+
+            // Одна загрузка компаний на весь пакет вместо загрузки на каждый портфель
+            CompanyScoreTable scoreTable = companyIds.isEmpty()
+                    ? CompanyScoreTable.EMPTY
+                    : CompanyScoreTable.of(companyService.batchLoadCompanies(new ArrayList<>(companyIds)).values());
+            LocalDateTime now = LocalDateTime.now();
+            for (Portfolio portfolio : valid) {
+                PortfolioScorer.score(portfolio, scoreTable);
+                indexName(portfolio);
+                // bulk insert не возвращает сгенерированные _id в объекты, поэтому id назначается заранее:
+                // созданные портфели кэшируются и должны совпадать с сохраненными
+                portfolio.setId(new ObjectId().toHexString());
+                portfolio.setVersion(0L);
+                portfolio.setCreatedAt(now);
+                portfolio.setUpdatedAt(now);
+            }
+
+            // Дельты экспозиции создаются до записи (см. ClientExposureService), применяются только для вставленных
+            List<ClientExposureService.Delta> validDeltas = valid.stream()
+                    .map(portfolio -> ClientExposureService.Delta.of(portfolio.getClientId()).plus(portfolio))
+                    .toList();
+            Map<Integer, BulkWriteError> writeErrors = insertUnordered(valid);
+            List<Portfolio> created = new ArrayList<>(valid.size());
+            List<ClientExposureService.Delta> exposureDeltas = new ArrayList<>(valid.size());
+            Set<String> clientIds = new HashSet<>();
+            for (int v = 0; v < valid.size(); v++) {
+                Portfolio portfolio = valid.get(v);
+                int index = validIndexes.get(v);
+                BulkWriteError error = writeErrors.get(v);
+                if (error == null) {
+                    created.add(portfolio);
+                    exposureDeltas.add(validDeltas.get(v));
+                    clientIds.add(portfolio.getClientId());
+                    results[index] = itemResult(index, portfolio, PortfolioBulkCreateResult.Status.CREATED, null);
+                } else if (error.getCode() == DUPLICATE_KEY_CODE) {
+                    results[index] = itemResult(index, portfolio, PortfolioBulkCreateResult.Status.DUPLICATE,
+                            "Portfolio already exists");
+                } else {
+                    results[index] = itemResult(index, portfolio, PortfolioBulkCreateResult.Status.FAILED, error.getMessage());
+                }
+            }
+
+            portfolioCacheService.cachePortfolios(created);
+            clientIds.forEach(portfolioCacheService::evictClient);
+            clientExposureService.applyAll(exposureDeltas);
+
+            log.info("Bulk create finished: {} of {} portfolios created", created.size(), portfolios.size());
+            return PortfolioBulkCreateResult.builder()
+                    .requested(portfolios.size())
+                    .created(created.size())
+                    .failed(portfolios.size() - created.size())
+                    .items(List.of(results))
+                    .build();
+        } finally {
+            MDC.clear();
+        }
+    }
+
     public Optional<Portfolio> findByPortfolioId(String portfolioId) {
         Assert.hasText(portfolioId, "Portfolio ID cannot be empty");
 
@@ -54,7 +179,13 @@ public class PortfolioService {
             MDC.put("portfolioId", portfolioId);
             log.debug("Fetching portfolio: {}", portfolioId);
 
-            return portfolioRepository.findByPortfolioId(portfolioId);
+            Portfolio cached = portfolioCacheService.getCachedPortfolio(portfolioId);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+            Optional<Portfolio> portfolio = portfolioRepository.findByPortfolioId(portfolioId);
+            portfolio.ifPresent(portfolioCacheService::cachePortfolio);
+            return portfolio;
         } finally {
             MDC.clear();
         }
@@ -64,7 +195,7 @@ public class PortfolioService {
         Assert.hasText(clientId, "Client ID cannot be empty");
 
         log.info("Fetching portfolios for client: {}", clientId);
-        return portfolioRepository.findByClientId(clientId);
+        return hydrate(clientPortfolioIds(clientId));
     }
 
     public org.springframework.data.domain.Page<Portfolio> findByClientId(String clientId, org.springframework.data.domain.Pageable pageable) {
@@ -76,7 +207,16 @@ public class PortfolioService {
             MDC.put("size", String.valueOf(pageable.getPageSize()));
             log.info("Fetching portfolios for client: {} - page: {}, size: {}", clientId, pageable.getPageNumber(), pageable.getPageSize());
 
-            org.springframework.data.domain.Page<Portfolio> portfolios = portfolioRepository.findByClientId(clientId, pageable);
+            org.springframework.data.domain.Page<Portfolio> portfolios;
+            if (pageable.getSort().isSorted()) {
+                // Кэшированный список упорядочен по portfolioId - другую сортировку выполняет MongoDB
+                portfolios = portfolioRepository.findByClientId(clientId, pageable);
+            } else {
+                List<String> portfolioIds = clientPortfolioIds(clientId);
+                int from = (int) Math.min(pageable.getOffset(), portfolioIds.size());
+                int to = Math.min(from + pageable.getPageSize(), portfolioIds.size());
+                portfolios = new PageImpl<>(hydrate(portfolioIds.subList(from, to)), pageable, portfolioIds.size());
+            }
             log.debug("Found {} portfolios for client {} (page {})", portfolios.getContent().size(), clientId, pageable.getPageNumber());
             return portfolios;
         } finally {
@@ -84,6 +224,39 @@ public class PortfolioService {
         }
     }
 
+    /**
+     * Поиск портфелей клиента по имени без учета регистра. Запрос короче трех символов ищется
+     * по префиксу нормализованного имени, длиннее - как подстрока через индекс триграмм.
+     * В обоих случаях MongoDB читает только записи индекса данного клиента, подходящие под запрос.
+     */
+    public org.springframework.data.domain.Page<Portfolio> searchByName(String clientId, String query,
+                                                                       org.springframework.data.domain.Pageable pageable) {
+        Assert.hasText(clientId, "Client ID cannot be empty");
+        String normalized = SearchTextUtils.normalize(query);
+        Assert.hasText(normalized, "Search query cannot be empty");
+        Assert.isTrue(normalized.length() <= searchMaxQueryLength,
+                "Search query is longer than " + searchMaxQueryLength + " characters");
+
+        try {
+            MDC.put("clientId", clientId);
+            MDC.put("operation", "SEARCH_PORTFOLIOS");
+            log.debug("Searching portfolios of client {} by name '{}'", clientId, normalized);
+
+            org.springframework.data.domain.Pageable sorted = pageable.getSort().isSorted()
+                    ? pageable
+                    : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("portfolioNameNormalized"));
+            String pattern = SearchTextUtils.regexLiteral(normalized);
+            List<String> grams = SearchTextUtils.grams(normalized);
+            org.springframework.data.domain.Page<Portfolio> portfolios = grams.isEmpty()
+                    ? portfolioRepository.findByClientIdAndNamePrefix(clientId, "^" + pattern, sorted)
+                    : portfolioRepository.findByClientIdAndNameGrams(clientId, grams, pattern, sorted);
+            log.debug("Found {} portfolios of client {} matching '{}'", portfolios.getTotalElements(), clientId, normalized);
+            return portfolios;
+        } finally {
+            MDC.clear();
+        }
+    }
+
     public Portfolio updatePortfolio(String portfolioId, Portfolio portfolioUpdate) {
         Assert.hasText(portfolioId, "Portfolio ID cannot be empty");
         Assert.notNull(portfolioUpdate, "Portfolio update cannot be null");
@@ -98,14 +271,21 @@ public class PortfolioService {
                         return new IllegalArgumentException("Portfolio not found: " + portfolioId);
                     });
 
+            // Вклад в экспозицию клиента снимается до того, как портфель изменится на месте
+            ClientExposureService.Delta exposureDelta = ClientExposureService.Delta.of(existingPortfolio.getClientId())
+                    .minus(existingPortfolio);
+
             // Update fields
             existingPortfolio.setPortfolioName(portfolioUpdate.getPortfolioName());
+            indexName(existingPortfolio);
             existingPortfolio.setItems(portfolioUpdate.getItems());
             existingPortfolio.setUpdatedAt(LocalDateTime.now());
 
             // Recalculate scores
             Portfolio updatedPortfolio = calculateAggregateScores(existingPortfolio);
             Portfolio savedPortfolio = portfolioRepository.save(updatedPortfolio);
+            portfolioCacheService.cachePortfolio(savedPortfolio);
+            clientExposureService.apply(exposureDelta.plus(savedPortfolio));
 
             log.info("Portfolio updated successfully: {}", portfolioId);
             return savedPortfolio;
@@ -127,132 +307,120 @@ public class PortfolioService {
                         return new IllegalArgumentException("Portfolio not found: " + portfolioId);
                     });
 
+            ClientExposureService.Delta exposureDelta = ClientExposureService.Delta.of(portfolio.getClientId()).minus(portfolio);
             portfolioRepository.delete(portfolio);
+            portfolioCacheService.evictPortfolio(portfolioId);
+            portfolioCacheService.evictClient(portfolio.getClientId());
+            clientExposureService.apply(exposureDelta);
             log.info("Portfolio deleted successfully: {}", portfolioId);
         } finally {
             MDC.clear();
         }
     }
 
-    private Portfolio calculateAggregateScores(Portfolio portfolio) {
-        List<PortfolioItem> enrichedItems = new ArrayList<>();
-        double totalInvestment = 0.0;
-        double weightedEsgScore = 0.0;
-        double weightedCarbonFootprint = 0.0;
-        double weightedSocialImpact = 0.0;
-
-        if (portfolio.getItems() == null || portfolio.getItems().isEmpty()) {
-            log.warn("Portfolio has no items, returning empty aggregate");
-            portfolio.setAggregateScores(PortfolioAggregate.builder()
-                    .totalEsgScore(0.0)
-                    .carbonFootprint(0.0)
-                    .socialImpactScore(0.0)
-                    .averageRating("N/A")
-                    .totalCompanies(0)
-                    .totalInvestment(0.0)
-                    .build());
-            return portfolio;
-        }
+    /**
+     * Пересчитывает поля поиска по имени - вызывается при каждой записи имени портфеля
+     */
+    private static void indexName(Portfolio portfolio) {
+        String normalized = SearchTextUtils.normalize(portfolio.getPortfolioName());
+        portfolio.setPortfolioNameNormalized(normalized);
+        portfolio.setPortfolioNameGrams(SearchTextUtils.grams(normalized));
+    }
 
-        // Сначала вычисляем общий объем инвестиций
-        for (PortfolioItem item : portfolio.getItems()) {
-            if (item.getInvestmentAmount() != null && item.getInvestmentAmount() > 0) {
-                totalInvestment += item.getInvestmentAmount();
-            }
+    private static String validateForCreate(Portfolio portfolio) {
+        if (portfolio == null) {
+            return "Portfolio cannot be null";
         }
-
-        if (totalInvestment == 0.0) {
-            log.warn("Portfolio total investment is zero, cannot calculate weighted scores");
-            portfolio.setAggregateScores(PortfolioAggregate.builder()
-                    .totalEsgScore(0.0)
-                    .carbonFootprint(0.0)
-                    .socialImpactScore(0.0)
-                    .averageRating("N/A")
-                    .totalCompanies(0)
-                    .totalInvestment(0.0)
-                    .build());
-            return portfolio;
+        if (portfolio.getPortfolioId() == null || portfolio.getPortfolioId().isBlank()) {
+            return "Portfolio ID is required";
         }
+        if (portfolio.getClientId() == null || portfolio.getClientId().isBlank()) {
+            return "Client ID is required";
+        }
+        return null;
+    }
 
-        // Пакетная загрузка компаний для избежания проблемы N+1
-        List<String> companyIds = portfolio.getItems().stream()
-                .map(PortfolioItem::getCompanyId)
-                .filter(java.util.Objects::nonNull)
-                .distinct()
-                .toList();
-
-        Map<String, Company> companiesMap = companyService.batchLoadCompanies(companyIds);
-
-        // Обогащаем элементы данными компаний и вычисляем весовые показатели
-        for (PortfolioItem item : portfolio.getItems()) {
-            Company company = companiesMap.get(item.getCompanyId());
-
-            if (company != null && item.getInvestmentAmount() != null && item.getInvestmentAmount() > 0) {
-                double weight = item.getInvestmentAmount() / totalInvestment;
-
-                PortfolioItem enrichedItem = PortfolioItem.builder()
-                        .companyId(item.getCompanyId())
-                        .companyName(company.getName())
-                        .investmentAmount(item.getInvestmentAmount())
-                        .weight(weight)
-                        .currentRating(company.getCurrentRating())
-                        .build();
-
-                enrichedItems.add(enrichedItem);
-
-                // Вычисляем весовые показатели
-                if (company.getCurrentRating() != null) {
-                    if (company.getCurrentRating().getOverallScore() != null) {
-                        weightedEsgScore += company.getCurrentRating().getOverallScore() * weight;
-                    }
-                    if (company.getCurrentRating().getCarbonFootprint() != null) {
-                        weightedCarbonFootprint += company.getCurrentRating().getCarbonFootprint() * weight;
-                    }
-                    if (company.getCurrentRating().getSocialImpactScore() != null) {
-                        weightedSocialImpact += company.getCurrentRating().getSocialImpactScore() * weight;
-                    }
-                }
-            } else {
-                log.warn("Company not found or invalid investment amount for companyId: {}", item.getCompanyId());
+    /**
+     * Неупорядоченная вставка. Возвращает ошибки записи по индексу в списке.
+     */
+    private Map<Integer, BulkWriteError> insertUnordered(List<Portfolio> portfolios) {
+        if (portfolios.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)
+                    .insert(portfolios)
+                    .execute();
+            return Map.of();
+        } catch (BulkOperationException e) {
+            Map<Integer, BulkWriteError> errors = new HashMap<>();
+            for (BulkWriteError error : e.getErrors()) {
+                errors.put(error.getIndex(), error);
             }
+            log.warn("Bulk insert finished with {} write errors", errors.size());
+            return errors;
         }
+    }
 
-        // Устанавливаем обогащенные элементы
-        portfolio.setItems(enrichedItems);
-
-        // Вычисляем агрегированные показатели
-        PortfolioAggregate aggregate = PortfolioAggregate.builder()
-                .totalEsgScore(round(weightedEsgScore, 2))
-                .carbonFootprint(round(weightedCarbonFootprint, 2))
-                .socialImpactScore(round(weightedSocialImpact, 2))
-                .averageRating(calculateRatingGrade(weightedEsgScore))
-                .totalCompanies(enrichedItems.size())
-                .totalInvestment(round(totalInvestment, 2))
+    private static ItemResult itemResult(int index, Portfolio portfolio, PortfolioBulkCreateResult.Status status, String error) {
+        return ItemResult.builder()
+                .index(index)
+                .portfolioId(portfolio != null ? portfolio.getPortfolioId() : null)
+                .status(status)
+                .error(error)
                 .build();
+    }
 
-        portfolio.setAggregateScores(aggregate);
+    /**
+     * Упорядоченные portfolioId клиента: из кэша или по покрывающему индексу clientId+portfolioId
+     */
+    private List<String> clientPortfolioIds(String clientId) {
+        List<String> cached = portfolioCacheService.getClientPortfolioIds(clientId);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> portfolioIds = portfolioRepository.findPortfolioIdsByClientId(clientId).stream()
+                .map(Portfolio::getPortfolioId)
+                .toList();
+        portfolioCacheService.cacheClientPortfolioIds(clientId, portfolioIds);
+        return portfolioIds;
+    }
 
-        log.debug("Calculated aggregate scores for portfolio: ESG={}, Carbon={}, Social={}",
-                weightedEsgScore, weightedCarbonFootprint, weightedSocialImpact);
+    /**
+     * Портфели в порядке portfolioIds: один MGET в кэш, недостающие - одним запросом в MongoDB
+     */
+    private List<Portfolio> hydrate(List<String> portfolioIds) {
+        if (portfolioIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Portfolio> found = new HashMap<>(portfolioCacheService.getCachedPortfolios(portfolioIds));
+        if (found.size() < portfolioIds.size()) {
+            List<String> missing = portfolioIds.stream()
+                    .filter(portfolioId -> !found.containsKey(portfolioId))
+                    .toList();
+            List<Portfolio> loaded = portfolioRepository.findByPortfolioIdIn(missing);
+            loaded.forEach(portfolio -> found.put(portfolio.getPortfolioId(), portfolio));
+            portfolioCacheService.cachePortfolios(loaded);
+        }
 
-        return portfolio;
+        List<Portfolio> portfolios = new ArrayList<>(portfolioIds.size());
+        for (String portfolioId : portfolioIds) {
+            Portfolio portfolio = found.get(portfolioId);
+            // Портфель мог быть удален после того, как список попал в кэш
+            if (portfolio != null) {
+                portfolios.add(portfolio);
+            }
+        }
+        return portfolios;
     }
 
-    private String calculateRatingGrade(double score) {
-        if (score >= 90) return "AAA";
-        if (score >= 80) return "AA";
-        if (score >= 70) return "A";
-        if (score >= 60) return "BBB";
-        if (score >= 50) return "BB";
-        if (score >= 40) return "B";
-        return "C";
-    }
+    private Portfolio calculateAggregateScores(Portfolio portfolio) {
+        if (!PortfolioScorer.hasInvestment(portfolio)) {
+            return PortfolioScorer.score(portfolio, CompanyScoreTable.EMPTY);
+        }
 
-    private double round(double value, int places) {
-        if (places < 0) throw new IllegalArgumentException();
-        long factor = (long) Math.pow(10, places);
-        value = value * factor;
-        long tmp = Math.round(value);
-        return (double) tmp / factor;
+        // Пакетная загрузка компаний для избежания проблемы N+1
+        Map<String, Company> companiesMap = companyService.batchLoadCompanies(PortfolioScorer.companyIds(portfolio));
+        return PortfolioScorer.score(portfolio, CompanyScoreTable.of(companiesMap.values()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.PortfolioSimulationRequest;
+import com.esg.dashboard.dto.PortfolioSimulationRequest.Adjustment;
+import com.esg.dashboard.dto.PortfolioSimulationRequest.Scenario;
+import com.esg.dashboard.dto.PortfolioSimulationResult;
+import com.esg.dashboard.dto.PortfolioSimulationResult.ScenarioResult;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.service.scoring.CompanyScoreSnapshot;
+import com.esg.dashboard.service.scoring.CompanyScoreTable;
+import com.esg.dashboard.service.scoring.PortfolioScorer;
+import com.esg.dashboard.service.scoring.PortfolioScoringKernel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Симуляция ребалансировки портфеля без записи в БД. Позиции переводятся в колонки один раз,
+ * каждый сценарий применяется к копии колонок и считается примитивным ядром по снимку баллов
+ * компаний в памяти, поэтому сотни сценариев укладываются в миллисекунды.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PortfolioSimulationService {
+
+    private final PortfolioService portfolioService;
+    private final CompanyScoreSnapshot scoreSnapshot;
+
+    @Value("${app.portfolio.simulation.max-scenarios:500}")
+    private int maxScenarios = 500;
+
+    public Optional<PortfolioSimulationResult> simulate(String portfolioId, PortfolioSimulationRequest request) {
+        Assert.hasText(portfolioId, "Portfolio ID cannot be empty");
+        Assert.notNull(request, "Simulation request cannot be null");
+        Assert.notEmpty(request.getScenarios(), "At least one scenario is required");
+        if (request.getScenarios().size() > maxScenarios) {
+            throw new IllegalArgumentException("Too many scenarios: " + request.getScenarios().size()
+                    + ", maximum is " + maxScenarios);
+        }
+        return portfolioService.findByPortfolioId(portfolioId)
+                .map(portfolio -> simulate(portfolio, request.getScenarios()));
+    }
+
+    PortfolioSimulationResult simulate(Portfolio portfolio, List<Scenario> scenarios) {
+        try {
+            MDC.put("portfolioId", portfolio.getPortfolioId());
+            MDC.put("operation", "SIMULATE_PORTFOLIO");
+            long started = System.nanoTime();
+
+            CompanyScoreTable table = scoreSnapshot.current();
+            List<PortfolioItem> items = portfolio.getItems() != null ? portfolio.getItems() : List.of();
+            int size = items.size();
+            int[] baseRows = new int[size];
+            double[] baseAmounts = new double[size];
+            for (int i = 0; i < size; i++) {
+                PortfolioItem item = items.get(i);
+                baseRows[i] = table.indexOf(item.getCompanyId());
+                baseAmounts[i] = item.getInvestmentAmount() != null ? item.getInvestmentAmount() : Double.NaN;
+            }
+
+            // Буферы переиспользуются всеми сценариями
+            int[] rows = new int[size];
+            double[] amounts = new double[size];
+            double[] baseline = new double[PortfolioScoringKernel.RESULT_WIDTH];
+            double[] result = new double[PortfolioScoringKernel.RESULT_WIDTH];
+
+            PortfolioScoringKernel.score(table, baseRows, baseAmounts, size, null, baseline);
+
+            List<ScenarioResult> results = new ArrayList<>(scenarios.size());
+            for (int s = 0; s < scenarios.size(); s++) {
+                Scenario scenario = scenarios.get(s);
+                String name = scenario.getName() != null ? scenario.getName() : "scenario-" + (s + 1);
+                System.arraycopy(baseRows, 0, rows, 0, size);
+                System.arraycopy(baseAmounts, 0, amounts, 0, size);
+
+                String error = null;
+                for (Adjustment adjustment : scenario.getAdjustments()) {
+                    error = apply(adjustment, table, rows, amounts, size);
+                    if (error != null) {
+                        break;
+                    }
+                }
+                if (error != null) {
+                    results.add(ScenarioResult.builder().name(name).error(error).build());
+                    continue;
+                }
+
+                PortfolioScoringKernel.score(table, rows, amounts, size, null, result);
+                results.add(ScenarioResult.builder()
+                        .name(name)
+                        .aggregate(aggregate(result))
+                        .esgScoreDelta(PortfolioScoringKernel.round2(result[PortfolioScoringKernel.ESG] - baseline[PortfolioScoringKernel.ESG]))
+                        .carbonFootprintDelta(PortfolioScoringKernel.round2(result[PortfolioScoringKernel.CARBON] - baseline[PortfolioScoringKernel.CARBON]))
+                        .socialImpactDelta(PortfolioScoringKernel.round2(result[PortfolioScoringKernel.SOCIAL] - baseline[PortfolioScoringKernel.SOCIAL]))
+                        .build());
+            }
+
+            long elapsedMicros = (System.nanoTime() - started) / 1_000;
+            log.info("Simulated {} scenarios for portfolio {} with {} holdings in {} us",
+                    scenarios.size(), portfolio.getPortfolioId(), size, elapsedMicros);
+
+            return PortfolioSimulationResult.builder()
+                    .portfolioId(portfolio.getPortfolioId())
+                    .baseline(aggregate(baseline))
+                    .scenarios(results)
+                    .elapsedMicros(elapsedMicros)
+                    .build();
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Применяет корректировку к колонкам. Возвращает описание ошибки, если сценарий не применим.
+     */
+    private static String apply(Adjustment adjustment, CompanyScoreTable table, int[] rows, double[] amounts, int size) {
+        return switch (adjustment.getType()) {
+            case SWAP -> swap(adjustment, table, rows, size);
+            case SECTOR_CAP -> capSector(adjustment, table, rows, amounts, size);
+        };
+    }
+
+    private static String swap(Adjustment adjustment, CompanyScoreTable table, int[] rows, int size) {
+        int from = table.indexOf(adjustment.getFromCompanyId());
+        int to = table.indexOf(adjustment.getToCompanyId());
+        if (from == CompanyScoreTable.UNKNOWN) {
+            return "Unknown company to swap out: " + adjustment.getFromCompanyId();
+        }
+        if (to == CompanyScoreTable.UNKNOWN) {
+            return "Unknown company to swap in: " + adjustment.getToCompanyId();
+        }
+        boolean held = false;
+        for (int i = 0; i < size; i++) {
+            if (rows[i] == from) {
+                rows[i] = to;
+                held = true;
+            }
+        }
+        return held ? null : "Portfolio does not hold " + adjustment.getFromCompanyId();
+    }
+
+    private static String capSector(Adjustment adjustment, CompanyScoreTable table, int[] rows, double[] amounts, int size) {
+        String sector = adjustment.getSector();
+        Double maxWeight = adjustment.getMaxWeight();
+        if (sector == null || maxWeight == null) {
+            return "Sector cap requires sector and maxWeight";
+        }
+
+        double total = PortfolioScoringKernel.totalInvestment(amounts, size);
+        double inSector = 0.0;
+        for (int i = 0; i < size; i++) {
+            if (amounts[i] > 0 && inSector(table, rows[i], sector)) {
+                inSector += amounts[i];
+            }
+        }
+        if (total == 0.0 || inSector / total <= maxWeight) {
+            return null;
+        }
+        double outside = total - inSector;
+        if (outside <= 0.0) {
+            return "Cannot cap sector " + sector + ": portfolio has no holdings outside it";
+        }
+
+        // Сумма портфеля сохраняется: сектор сжимается до maxWeight, остальные растут пропорционально
+        double sectorScale = maxWeight * total / inSector;
+        double outsideScale = (1.0 - maxWeight) * total / outside;
+        for (int i = 0; i < size; i++) {
+            if (amounts[i] > 0) {
+                amounts[i] *= inSector(table, rows[i], sector) ? sectorScale : outsideScale;
+            }
+        }
+        return null;
+    }
+
+    private static boolean inSector(CompanyScoreTable table, int row, String sector) {
+        if (row == CompanyScoreTable.UNKNOWN) {
+            return false;
+        }
+        Company company = table.company(row);
+        return Objects.equals(sector, company.getSector());
+    }
+
+    private static PortfolioAggregate aggregate(double[] result) {
+        return result[PortfolioScoringKernel.INVESTMENT] == 0.0
+                ? PortfolioScorer.emptyAggregate()
+                : PortfolioScorer.aggregate(result);
+    }
+}
@@ -0,0 +1,114 @@
+package com.esg.dashboard.service.scoring;
+
+import com.esg.dashboard.cache.CompanyNearCache;
+import com.esg.dashboard.event.CompanyUpdatedEvent;
+import com.esg.dashboard.event.RatingUpdatedEvent;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.repository.CompanyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Снимок таблицы баллов всех компаний в памяти узла для расчетов без обращения к БД
+ * (симуляции ребалансировки). Загружается при первом обращении; события об изменении
+ * компаний только помечают снимок устаревшим, перестройка идет в фоне, а читатели
+ * до её завершения получают предыдущий снимок.
+ * Изменения на других узлах приходят через канал инвалидации L1 кэша компаний. Pub/sub
+ * не гарантирует доставку, а компании, записанные в обход CompanyService, не публикуются вовсе,
+ * поэтому снимок старше snapshot-max-age-ms перестраивается в любом случае.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompanyScoreSnapshot implements MessageListener {
+
+    private final CompanyRepository companyRepository;
+    private final RedisMessageListenerContainer redisContainer;
+
+    @Value("${app.portfolio.simulation.snapshot-max-age-ms:600000}")
+    private long maxAgeMs = 600000;
+
+    private volatile CompanyScoreTable table;
+    private volatile long loadedAt;
+    private volatile boolean stale;
+
+    @PostConstruct
+    public void subscribe() {
+        redisContainer.addMessageListener(this, new ChannelTopic(CompanyNearCache.INVALIDATION_CHANNEL));
+    }
+
+    public CompanyScoreTable current() {
+        CompanyScoreTable snapshot = table;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (table == null) {
+                    table = load();
+                }
+                snapshot = table;
+            }
+        }
+        return snapshot;
+    }
+
+    @EventListener
+    public void onCompanyUpdated(CompanyUpdatedEvent event) {
+        stale = true;
+    }
+
+    @EventListener
+    public void onRatingUpdated(RatingUpdatedEvent event) {
+        stale = true;
+    }
+
+    /**
+     * Изменение компании на любом узле (собственные сообщения тоже - событие узла уже пометило снимок)
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        stale = true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.portfolio.simulation.snapshot-refresh-ms:5000}")
+    public void refreshIfStale() {
+        // Снимок, который никто не запрашивал, не перестраиваем
+        if (table == null || (!stale && System.currentTimeMillis() - loadedAt < maxAgeMs)) {
+            return;
+        }
+        stale = false;
+        try {
+            MDC.put("operation", "REFRESH_SCORE_SNAPSHOT");
+            table = load();
+        } catch (Exception e) {
+            stale = true;
+            log.error("Error refreshing company score snapshot: {}", e.getMessage(), e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private CompanyScoreTable load() {
+        long started = System.currentTimeMillis();
+        List<Company> companies = new ArrayList<>();
+        try (Stream<Company> stream = companyRepository.streamCompanyScores()) {
+            stream.forEach(companies::add);
+        }
+        CompanyScoreTable loaded = CompanyScoreTable.of(companies);
+        loadedAt = System.currentTimeMillis();
+        log.info("Company score snapshot loaded: {} companies in {} ms", loaded.size(), System.currentTimeMillis() - started);
+        return loaded;
+    }
+}
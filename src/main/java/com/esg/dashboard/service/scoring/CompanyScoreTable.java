@@ -0,0 +1,104 @@
+package com.esg.dashboard.service.scoring;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Таблица баллов компаний в колоночном виде: позиции портфеля ссылаются на строку таблицы
+ * по индексу, а баллы лежат в примитивных массивах. Отсутствующий балл хранится как NaN.
+ * Таблица неизменяема и может разделяться между потоками.
+ */
+public final class CompanyScoreTable {
+
+    public static final int UNKNOWN = -1;
+    public static final CompanyScoreTable EMPTY = new CompanyScoreTable(0);
+
+    private final Map<String, Integer> indexById;
+    private final Company[] companies;
+    private final double[] overall;
+    private final double[] carbon;
+    private final double[] social;
+
+    private CompanyScoreTable(int capacity) {
+        this.indexById = new HashMap<>(Math.max(16, capacity * 4 / 3 + 1));
+        this.companies = new Company[capacity];
+        this.overall = new double[capacity];
+        this.carbon = new double[capacity];
+        this.social = new double[capacity];
+    }
+
+    public static CompanyScoreTable of(Collection<Company> companies) {
+        CompanyScoreTable table = new CompanyScoreTable(companies.size());
+        int row = 0;
+        for (Company company : companies) {
+            if (company == null || company.getCompanyId() == null
+                    || table.indexById.putIfAbsent(company.getCompanyId(), row) != null) {
+                continue;
+            }
+            ESGRating rating = company.getCurrentRating();
+            table.companies[row] = company;
+            table.overall[row] = rating != null ? orNaN(rating.getOverallScore()) : Double.NaN;
+            table.carbon[row] = rating != null ? orNaN(rating.getCarbonFootprint()) : Double.NaN;
+            table.social[row] = rating != null ? orNaN(rating.getSocialImpactScore()) : Double.NaN;
+            row++;
+        }
+        return table;
+    }
+
+    /**
+     * Новая таблица, в которой строки переданных компаний заменены (новые компании добавляются в конец).
+     * Индексы существующих строк сохраняются, исходная таблица не меняется.
+     */
+    public CompanyScoreTable with(Collection<Company> changed) {
+        Map<String, Company> merged = new LinkedHashMap<>(Math.max(16, (size() + changed.size()) * 4 / 3 + 1));
+        for (int row = 0; row < size(); row++) {
+            merged.put(companies[row].getCompanyId(), companies[row]);
+        }
+        for (Company company : changed) {
+            if (company != null && company.getCompanyId() != null) {
+                merged.put(company.getCompanyId(), company);
+            }
+        }
+        return of(merged.values());
+    }
+
+    /**
+     * Индекс строки компании или {@link #UNKNOWN}, если компании нет в таблице
+     */
+    public int indexOf(String companyId) {
+        if (companyId == null) {
+            return UNKNOWN;
+        }
+        Integer row = indexById.get(companyId);
+        return row != null ? row : UNKNOWN;
+    }
+
+    public Company company(int row) {
+        return companies[row];
+    }
+
+    public int size() {
+        return indexById.size();
+    }
+
+    double[] overall() {
+        return overall;
+    }
+
+    double[] carbon() {
+        return carbon;
+    }
+
+    double[] social() {
+        return social;
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
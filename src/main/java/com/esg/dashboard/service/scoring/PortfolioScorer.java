@@ -0,0 +1,139 @@
+package com.esg.dashboard.service.scoring;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.util.ESGCalculator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Оценка портфеля по готовой таблице баллов: обогащает позиции и считает агрегаты.
+ * Загрузка компаний остается на вызывающем коде, поэтому одну таблицу можно
+ * разделить между многими портфелями (пакетные операции, переоценка, симуляции).
+ */
+@Slf4j
+public final class PortfolioScorer {
+
+    private PortfolioScorer() {
+    }
+
+    /**
+     * Есть ли в портфеле хоть одна положительная инвестиция - иначе компании загружать незачем
+     */
+    public static boolean hasInvestment(Portfolio portfolio) {
+        List<PortfolioItem> items = portfolio.getItems();
+        if (items == null) {
+            return false;
+        }
+        for (PortfolioItem item : items) {
+            if (item.getInvestmentAmount() != null && item.getInvestmentAmount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Уникальные companyId позиций в порядке появления
+     */
+    public static Set<String> companyIds(Portfolio portfolio, Set<String> into) {
+        if (portfolio.getItems() != null) {
+            for (PortfolioItem item : portfolio.getItems()) {
+                if (item.getCompanyId() != null) {
+                    into.add(item.getCompanyId());
+                }
+            }
+        }
+        return into;
+    }
+
+    public static List<String> companyIds(Portfolio portfolio) {
+        return new ArrayList<>(companyIds(portfolio, new LinkedHashSet<>()));
+    }
+
+    /**
+     * Обогащает позиции портфеля данными компаний на месте и выставляет агрегаты.
+     * Позиции без компании в таблице или без положительной суммы отбрасываются.
+     */
+    public static Portfolio score(Portfolio portfolio, CompanyScoreTable table) {
+        List<PortfolioItem> items = portfolio.getItems();
+        if (items == null || items.isEmpty()) {
+            log.warn("Portfolio has no items, returning empty aggregate");
+            portfolio.setAggregateScores(emptyAggregate());
+            return portfolio;
+        }
+
+        int size = items.size();
+        double[] amounts = new double[size];
+        int[] companyRows = new int[size];
+        for (int i = 0; i < size; i++) {
+            PortfolioItem item = items.get(i);
+            amounts[i] = item.getInvestmentAmount() != null ? item.getInvestmentAmount() : Double.NaN;
+            companyRows[i] = table.indexOf(item.getCompanyId());
+        }
+
+        if (PortfolioScoringKernel.totalInvestment(amounts, size) == 0.0) {
+            log.warn("Portfolio total investment is zero, cannot calculate weighted scores");
+            portfolio.setAggregateScores(emptyAggregate());
+            return portfolio;
+        }
+
+        double[] weights = new double[size];
+        double[] result = new double[PortfolioScoringKernel.RESULT_WIDTH];
+        PortfolioScoringKernel.score(table, companyRows, amounts, size, weights, result);
+
+        // Обогащаем учтенные позиции данными компаний на месте, без пересборки
+        List<PortfolioItem> enrichedItems = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PortfolioItem item = items.get(i);
+            if (Double.isNaN(weights[i])) {
+                log.warn("Company not found or invalid investment amount for companyId: {}", item.getCompanyId());
+                continue;
+            }
+            Company company = table.company(companyRows[i]);
+            item.setCompanyName(company.getName());
+            item.setWeight(weights[i]);
+            item.setCurrentRating(company.getCurrentRating());
+            enrichedItems.add(item);
+        }
+
+        portfolio.setItems(enrichedItems);
+        portfolio.setAggregateScores(aggregate(result));
+
+        log.debug("Calculated aggregate scores for portfolio: ESG={}, Carbon={}, Social={}",
+                result[PortfolioScoringKernel.ESG], result[PortfolioScoringKernel.CARBON], result[PortfolioScoringKernel.SOCIAL]);
+
+        return portfolio;
+    }
+
+    /**
+     * Агрегат из сырых значений ядра: округление до двух знаков, рейтинг по точному ESG
+     */
+    public static PortfolioAggregate aggregate(double[] result) {
+        return PortfolioAggregate.builder()
+                .totalEsgScore(PortfolioScoringKernel.round2(result[PortfolioScoringKernel.ESG]))
+                .carbonFootprint(PortfolioScoringKernel.round2(result[PortfolioScoringKernel.CARBON]))
+                .socialImpactScore(PortfolioScoringKernel.round2(result[PortfolioScoringKernel.SOCIAL]))
+                .averageRating(ESGCalculator.calculateRatingGrade(result[PortfolioScoringKernel.ESG]))
+                .totalCompanies((int) result[PortfolioScoringKernel.HOLDINGS])
+                .totalInvestment(PortfolioScoringKernel.round2(result[PortfolioScoringKernel.INVESTMENT]))
+                .build();
+    }
+
+    public static PortfolioAggregate emptyAggregate() {
+        return PortfolioAggregate.builder()
+                .totalEsgScore(0.0)
+                .carbonFootprint(0.0)
+                .socialImpactScore(0.0)
+                .averageRating("N/A")
+                .totalCompanies(0)
+                .totalInvestment(0.0)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package com.esg.dashboard.service.scoring;
+
+/**
+ * Расчет агрегатов портфеля на примитивных колонках без аллокаций.
+ * Позиция i задается индексом компании в {@link CompanyScoreTable} и суммой инвестиций
+ * (NaN - сумма не указана). Порядок арифметики совпадает с прежним расчетом в PortfolioService,
+ * поэтому результаты идентичны до последнего бита. Буферы результата передает вызывающий код
+ * и может переиспользовать их между портфелями.
+ */
+public final class PortfolioScoringKernel {
+
+    public static final int ESG = 0;
+    public static final int CARBON = 1;
+    public static final int SOCIAL = 2;
+    public static final int INVESTMENT = 3;
+    public static final int HOLDINGS = 4;
+    public static final int RESULT_WIDTH = 5;
+
+    private PortfolioScoringKernel() {
+    }
+
+    /**
+     * Сумма положительных инвестиций по первым length позициям
+     */
+    public static double totalInvestment(double[] amounts, int length) {
+        double total = 0.0;
+        for (int i = 0; i < length; i++) {
+            double amount = amounts[i];
+            if (amount > 0) {
+                total += amount;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Считает взвешенные ESG, углеродный след и социальный эффект в result[ESG..HOLDINGS].
+     * Значения не округлены: рейтинг считается по точному ESG, округление - {@link #round2(double)}.
+     * Если weights не null, в него пишется вес каждой учтенной позиции (для неучтенных - NaN).
+     *
+     * @return число учтенных позиций; 0 означает, что портфель нечем оценить
+     */
+    public static int score(CompanyScoreTable table, int[] companyRows, double[] amounts, int length,
+                            double[] weights, double[] result) {
+        double total = totalInvestment(amounts, length);
+        double esg = 0.0;
+        double carbon = 0.0;
+        double social = 0.0;
+        int holdings = 0;
+
+        if (total != 0.0) {
+            double[] overallColumn = table.overall();
+            double[] carbonColumn = table.carbon();
+            double[] socialColumn = table.social();
+            for (int i = 0; i < length; i++) {
+                int row = companyRows[i];
+                double amount = amounts[i];
+                if (row < 0 || !(amount > 0)) {
+                    if (weights != null) {
+                        weights[i] = Double.NaN;
+                    }
+                    continue;
+                }
+                double weight = amount / total;
+                if (weights != null) {
+                    weights[i] = weight;
+                }
+                holdings++;
+
+                double value = overallColumn[row];
+                if (value == value) {
+                    esg += value * weight;
+                }
+                value = carbonColumn[row];
+                if (value == value) {
+                    carbon += value * weight;
+                }
+                value = socialColumn[row];
+                if (value == value) {
+                    social += value * weight;
+                }
+            }
+        }
+
+        result[ESG] = esg;
+        result[CARBON] = carbon;
+        result[SOCIAL] = social;
+        result[INVESTMENT] = total;
+        result[HOLDINGS] = holdings;
+        return holdings;
+    }
+
+    /**
+     * Округление до двух знаков, эквивалентное прежнему round(value, 2) без Math.pow
+     */
+    public static double round2(double value) {
+        return (double) Math.round(value * 100L) / 100L;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.esg.dashboard.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация текста для индексируемого поиска. Поиск идет по заранее сохраненной
+ * нормализованной строке и её триграммам, а не по case-insensitive regex,
+ * который MongoDB не может ограничить индексом.
+ * Миграция 006_portfolio_name_search.js повторяет те же правила для существующих документов.
+ */
+@UtilityClass
+public class SearchTextUtils {
+
+    public static final int GRAM_SIZE = 3;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    /**
+     * NFKC, нижний регистр без учета локали, пробелы схлопнуты и обрезаны
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * Уникальные триграммы нормализованной строки в порядке появления.
+     * Строка короче GRAM_SIZE триграмм не имеет - такие запросы ищутся по префиксу.
+     */
+    public static List<String> grams(String normalized) {
+        if (normalized == null || normalized.length() < GRAM_SIZE) {
+            return List.of();
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM_SIZE));
+        }
+        return new ArrayList<>(grams);
+    }
+
+    /**
+     * Экранирует метасимволы regex обратной косой чертой: якорный шаблон из такого литерала
+     * MongoDB распознает как простой префикс и превращает в диапазон индекса.
+     */
+    public static String regexLiteral(String text) {
+        StringBuilder literal = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                literal.append('\\');
+            }
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+}
@@ -0,0 +1,6 @@
+// Reverse index companyId -> portfolios, used to revalue portfolios when a rating changes
+print('Creating portfolio holdings index...');
+
+db.portfolios.createIndex({ "items.companyId": 1 }, { name: "portfolio_holdings_index" });
+
+print('Portfolio holdings index created successfully!');
@@ -0,0 +1,6 @@
+// Covered index for the cached client portfolio id list (clientId -> portfolioId ordered)
+print('Creating portfolio client index...');
+
+db.portfolios.createIndex({ "clientId": 1, "portfolioId": 1 }, { name: "client_portfolio_index" });
+
+print('Portfolio client index created successfully!');
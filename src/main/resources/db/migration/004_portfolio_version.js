@@ -0,0 +1,6 @@
+// Optimistic locking: every portfolio carries a version that is incremented on each write
+print('Initializing portfolio versions...');
+
+const result = db.portfolios.updateMany({ version: { $exists: false } }, { $set: { version: NumberLong(0) } });
+
+print('Portfolio versions initialized: ' + result.modifiedCount + ' documents');
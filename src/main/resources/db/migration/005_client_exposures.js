@@ -0,0 +1,35 @@
+// Client exposure documents: sums over all portfolios of a client, maintained incrementally by the application.
+// Rerunning the migration rebuilds every document from the portfolios.
+// Per-company sums are stored as an array of {companyId, amount}: company IDs may contain '.' or '$'
+// and therefore cannot be used as field names.
+print('Building client exposures...');
+
+db.portfolios.aggregate([
+    { $match: { clientId: { $ne: null } } },
+    { $group: {
+        _id: "$clientId",
+        portfolioCount: { $sum: NumberLong(1) },
+        totalHoldings: { $sum: { $toLong: { $ifNull: ["$aggregateScores.totalCompanies", 0] } } },
+        totalInvestment: { $sum: { $ifNull: ["$aggregateScores.totalInvestment", 0] } },
+        esgScoreSum: { $sum: { $multiply: [
+            { $ifNull: ["$aggregateScores.totalEsgScore", 0] }, { $ifNull: ["$aggregateScores.totalInvestment", 0] }] } },
+        carbonFootprintSum: { $sum: { $multiply: [
+            { $ifNull: ["$aggregateScores.carbonFootprint", 0] }, { $ifNull: ["$aggregateScores.totalInvestment", 0] }] } },
+        socialImpactScoreSum: { $sum: { $multiply: [
+            { $ifNull: ["$aggregateScores.socialImpactScore", 0] }, { $ifNull: ["$aggregateScores.totalInvestment", 0] }] } }
+    } },
+    { $set: { companyInvestments: [], updatedAt: "$$NOW", builtAt: "$$NOW", version: NumberLong(0), pending: false,
+        _class: "com.esg.dashboard.model.ClientExposure" } },
+    { $merge: { into: "client_exposures", on: "_id", whenMatched: "replace", whenNotMatched: "insert" } }
+]);
+
+db.portfolios.aggregate([
+    { $match: { clientId: { $ne: null } } },
+    { $unwind: "$items" },
+    { $match: { "items.investmentAmount": { $gt: 0 } } },
+    { $group: { _id: { clientId: "$clientId", companyId: "$items.companyId" }, amount: { $sum: "$items.investmentAmount" } } },
+    { $group: { _id: "$_id.clientId", companyInvestments: { $push: { companyId: "$_id.companyId", amount: "$amount" } } } },
+    { $merge: { into: "client_exposures", on: "_id", whenMatched: "merge", whenNotMatched: "discard" } }
+]);
+
+print('Client exposures built: ' + db.client_exposures.countDocuments() + ' clients');
@@ -0,0 +1,52 @@
+// Indexed portfolio name search: normalized lowercase name for prefix queries and its trigrams for substring queries.
+// Normalization must match SearchTextUtils: NFKC, lowercase, collapsed whitespace, distinct 3-character grams.
+print('Backfilling portfolio name search fields...');
+
+function normalizeName(name) {
+    if (name === null || name === undefined) {
+        return null;
+    }
+    return name.normalize('NFKC').toLowerCase().replace(/\s+/g, ' ').trim();
+}
+
+function nameGrams(normalized) {
+    const grams = [];
+    if (normalized === null || normalized.length < 3) {
+        return grams;
+    }
+    for (let i = 0; i + 3 <= normalized.length; i++) {
+        const gram = normalized.substring(i, i + 3);
+        if (!grams.includes(gram)) {
+            grams.push(gram);
+        }
+    }
+    return grams;
+}
+
+let batch = [];
+let updated = 0;
+db.portfolios.find({}, { portfolioName: 1 }).forEach(function(portfolio) {
+    const normalized = normalizeName(portfolio.portfolioName);
+    batch.push({ updateOne: {
+        filter: { _id: portfolio._id },
+        update: { $set: { portfolioNameNormalized: normalized, portfolioNameGrams: nameGrams(normalized) } }
+    } });
+    if (batch.length === 1000) {
+        updated += db.portfolios.bulkWrite(batch, { ordered: false }).modifiedCount;
+        batch = [];
+    }
+});
+if (batch.length > 0) {
+    updated += db.portfolios.bulkWrite(batch, { ordered: false }).modifiedCount;
+}
+print('Portfolios backfilled: ' + updated);
+
+db.portfolios.createIndex({ "clientId": 1, "portfolioNameNormalized": 1 }, { name: "client_portfolio_name_index" });
+db.portfolios.createIndex({ "clientId": 1, "portfolioNameGrams": 1 }, { name: "client_portfolio_name_grams_index" });
+
+// The clientId+portfolioName index only served the case-insensitive regex search
+if (db.portfolios.getIndexes().some(function(index) { return index.name === 'clientId_1_portfolioName_1'; })) {
+    db.portfolios.dropIndex('clientId_1_portfolioName_1');
+}
+
+print('Portfolio name search indexes created successfully!');
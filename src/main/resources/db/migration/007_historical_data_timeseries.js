@@ -0,0 +1,71 @@
+// Time-series storage for historical data: companyId/dataType become the metaField, recordDate the timeField.
+// Switch-over:
+//   1. run this migration while the application still writes to historical_data;
+//   2. set app.historical-data.time-series.enabled=true and restart;
+//   3. run this migration again - it copies the source records that are not in the target yet.
+// Each copied point keeps the source _id in sourceId. The high-water mark is the largest copied sourceId,
+// i.e. it is taken from the source side, so points written by the application after the switch do not move it.
+// Records get new _id values. The source collection is left untouched; drop it once the time-series mode is verified.
+print('Migrating historical data to time-series collection...');
+
+const target = 'historical_data_ts';
+
+if (!db.getCollectionNames().includes(target)) {
+    db.createCollection(target, {
+        timeseries: { timeField: 'recordDate', metaField: 'meta', granularity: 'hours' }
+    });
+    print('Time-series collection ' + target + ' created');
+}
+db[target].createIndex({ 'meta.companyId': 1, 'meta.dataType': 1, recordDate: -1 },
+    { name: 'history_company_type_date_index' });
+
+db[target].createIndex({ sourceId: 1 }, { name: 'history_source_id_index' });
+
+// Incremental copy in source _id order. ObjectIds are generated by the application before the insert, so a record
+// can land slightly after a larger _id was already copied: rescan an overlap window before the high-water mark
+// and skip the source records that already have a copy.
+const OVERLAP_SECONDS = 600;
+const BATCH_SIZE = 1000;
+const last = db[target].find({ sourceId: { $exists: true } }, { sourceId: 1 }).sort({ sourceId: -1 }).limit(1).toArray();
+const filter = { recordDate: { $type: 'date' } };
+if (last.length > 0) {
+    const from = Math.floor(last[0].sourceId.getTimestamp().getTime() / 1000) - OVERLAP_SECONDS;
+    filter._id = { $gte: ObjectId.createFromTime(Math.max(from, 0)) };
+    print('Continuing from source _id ' + filter._id.$gte + ' (last copied ' + last[0].sourceId + ')');
+}
+
+let batch = [];
+let copied = 0;
+function flush() {
+    const ids = batch.map(function(record) { return record._id; });
+    const existing = new Set(db[target].find({ sourceId: { $in: ids } }, { sourceId: 1 }).toArray()
+        .map(function(point) { return point.sourceId.toHexString(); }));
+    const points = batch.filter(function(record) { return !existing.has(record._id.toHexString()); })
+        .map(function(record) {
+            return {
+                sourceId: record._id,
+                meta: { companyId: record.companyId, dataType: record.dataType },
+                metrics: record.metrics,
+                recordDate: record.recordDate,
+                createdAt: record.createdAt,
+                quality: record.quality,
+                _class: 'com.esg.dashboard.model.HistoricalDataPoint'
+            };
+        });
+    if (points.length > 0) {
+        copied += Object.keys(db[target].insertMany(points).insertedIds).length;
+    }
+    batch = [];
+}
+db.historical_data.find(filter).sort({ _id: 1 }).forEach(function(record) {
+    batch.push(record);
+    if (batch.length === BATCH_SIZE) {
+        flush();
+    }
+});
+if (batch.length > 0) {
+    flush();
+}
+
+const skipped = db.historical_data.countDocuments({ recordDate: { $not: { $type: 'date' } } });
+print('Historical records copied: ' + copied + (skipped > 0 ? ', skipped without recordDate: ' + skipped : ''));
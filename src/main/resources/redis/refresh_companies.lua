@@ -0,0 +1,15 @@
+-- Упреждающее обновление кэша компаний: значение заменяется, только если ключ существует
+-- и не изменился с момента, когда он был прочитан перед загрузкой компании из БД.
+-- KEYS[i] - ключ кэша компании (company:v{gen}:{id})
+-- ARGV[3i-2] - значение, прочитанное до загрузки из БД,
+-- ARGV[3i-1] - сериализованная компания из БД, ARGV[3i] - TTL кэша в секундах
+-- Возвращает число замененных значений
+local refreshed = 0
+for i, key in ipairs(KEYS) do
+    local current = redis.call('GET', key)
+    if current and current == ARGV[3 * i - 2] then
+        redis.call('SET', key, ARGV[3 * i - 1], 'EX', ARGV[3 * i])
+        refreshed = refreshed + 1
+    end
+end
+return refreshed
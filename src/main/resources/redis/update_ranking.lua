@@ -0,0 +1,16 @@
+-- Атомарно обновляет рейтинг компании и её кэшированную копию.
+-- KEYS[1] - sorted set рейтинга (esg:ranking)
+-- KEYS[2] - ключ кэша компании (company:v{gen}:{id})
+-- ARGV[1] - член sorted set (companyId), ARGV[2] - балл,
+-- ARGV[3] - сериализованная компания, ARGV[4] - TTL кэша в секундах
+-- Возвращает {старая позиция, новая позиция} (0-based, -1 если компании не было в рейтинге)
+local previous = redis.call('ZREVRANK', KEYS[1], ARGV[1])
+if not previous then
+    previous = -1
+end
+
+redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+redis.call('SET', KEYS[2], ARGV[3], 'EX', ARGV[4])
+
+local current = redis.call('ZREVRANK', KEYS[1], ARGV[1])
+return { previous, current }
@@ -0,0 +1,66 @@
+package com.esg.dashboard.cache;
+
+import com.esg.dashboard.service.AnalyticsService;
+import com.esg.dashboard.service.DashboardMetricsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsCacheRefresherTest {
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache analyticsCache;
+
+    @Mock
+    private AnalyticsService analyticsService;
+
+    @Mock
+    private DashboardMetricsService dashboardMetricsService;
+
+    @InjectMocks
+    private AnalyticsCacheRefresher analyticsCacheRefresher;
+
+    @Test
+    void refreshIfStale_WhenBurstOfUpdates_ShouldRecomputeOnce() {
+        // Arrange
+        ReflectionTestUtils.setField(analyticsCacheRefresher, "quietMs", 0L);
+        when(cacheManager.getCache("analytics")).thenReturn(analyticsCache);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            analyticsCacheRefresher.markStale();
+        }
+        analyticsCacheRefresher.refreshIfStale();
+        analyticsCacheRefresher.refreshIfStale();
+
+        // Assert
+        verify(analyticsCache, times(1)).evict("sectors");
+        verify(analyticsCache, times(1)).evict("overall");
+        verify(analyticsService, times(1)).getSectorAnalytics();
+        verify(dashboardMetricsService, times(1)).getOverallMetrics();
+    }
+
+    @Test
+    void refreshIfStale_WhileUpdatesKeepComing_ShouldWaitForQuietPeriod() {
+        // Arrange
+        ReflectionTestUtils.setField(analyticsCacheRefresher, "quietMs", 60000L);
+
+        // Act
+        analyticsCacheRefresher.markStale();
+        analyticsCacheRefresher.refreshIfStale();
+
+        // Assert
+        verifyNoInteractions(cacheManager, analyticsService, dashboardMetricsService);
+    }
+}
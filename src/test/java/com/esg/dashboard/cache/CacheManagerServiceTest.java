@@ -5,9 +5,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -19,30 +29,98 @@ class CacheManagerServiceTest {
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
+    @Mock
+    private ZSetOperations<String, Object> zSetOperations;
+
+    @Mock
+    private CompanyNearCache companyNearCache;
+
+    @Mock
+    private CacheNamespaces cacheNamespaces;
+
     @InjectMocks
     private CacheManagerService cacheManagerService;
 
     @Test
     void evictCompanyCache_ShouldDeleteKey() {
         // Arrange
+        when(cacheNamespaces.key(CacheNamespaces.COMPANY, "TEST001")).thenReturn("company:v2:TEST001");
         when(redisTemplate.delete(anyString())).thenReturn(true);
 
         // Act
         cacheManagerService.evictCompanyCache("TEST001");
 
         // Assert
-        verify(redisTemplate, times(1)).delete("company:TEST001");
+        verify(redisTemplate, times(1)).delete("company:v2:TEST001");
+        verify(companyNearCache, times(1)).invalidate("TEST001");
+        verify(companyNearCache, times(1)).publishInvalidation("TEST001");
     }
 
     @Test
-    void clearAllCache_ShouldDeleteAllKeys() {
+    void clearAllCache_ShouldBumpEveryNamespaceWithoutDeletingKeys() {
+        // Act
+        cacheManagerService.clearAllCache();
+
+        // Assert
+        verify(cacheNamespaces, times(1)).bump(CacheNamespaces.COMPANY);
+        verify(cacheNamespaces, times(1)).bump(CacheNamespaces.PORTFOLIO);
+        verify(cacheNamespaces, times(1)).bump(CacheNamespaces.ANALYTICS);
+        verify(companyNearCache, times(1)).invalidateAll();
+        verify(redisTemplate, never()).keys(anyString());
+        verify(redisTemplate, never()).unlink(anyCollection());
+        verify(redisTemplate, never()).delete(anyCollection());
+    }
+
+    @Test
+    void clearNamespace_ShouldLeaveOtherNamespacesAlone() {
         // Arrange
-        when(redisTemplate.keys(anyString())).thenReturn(java.util.Set.of("key1", "key2"));
+        when(cacheNamespaces.bump(CacheNamespaces.ANALYTICS)).thenReturn(3L);
 
         // Act
-        cacheManagerService.clearAllCache();
+        long generation = cacheManagerService.clearNamespace(CacheNamespaces.ANALYTICS);
+
+        // Assert
+        assertEquals(3L, generation);
+        verify(cacheNamespaces, never()).bump(CacheNamespaces.COMPANY);
+        verify(companyNearCache, never()).invalidateAll();
+        assertThrows(IllegalArgumentException.class, () -> cacheManagerService.clearNamespace("rate_limit"));
+    }
+
+    @Test
+    void getCacheStats_ShouldReportPrefixCountsFromLastSweep() {
+        // Arrange
+        Cursor<String> cursor = cursorOf("company:A", "company:B", "portfolio:P1", "esg:ranking");
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.of(100L, 200L, 50L, 4000L));
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn(4L);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(zSetOperations.zCard("esg:ranking")).thenReturn(2L);
+        ReflectionTestUtils.setField(cacheManagerService, "memorySampleRate", 1);
+
+        // Act
+        cacheManagerService.cleanupExpiredCache();
+        CacheStats stats = cacheManagerService.getCacheStats();
 
         // Assert
-        verify(redisTemplate, times(1)).delete(anySet());
+        assertEquals(4L, stats.getTotalKeys());
+        assertEquals(2L, stats.getCompanyKeys());
+        assertEquals(1L, stats.getPortfolioKeys());
+        assertEquals(1L, stats.getRankingKeys());
+        assertEquals(2L, stats.getRankedCompanies());
+        assertEquals(300L, stats.getMemoryBytesByPrefix().get("company"));
+        assertEquals(4000L, stats.getMemoryBytesByPrefix().get("esg"));
+        assertNotNull(stats.getSampledAt());
+        assertTrue(stats.getSnapshotAgeSeconds() >= 0);
+        verify(redisTemplate, never()).keys(anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<String> cursorOf(String... keys) {
+        Iterator<String> iterator = List.of(keys).iterator();
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.esg.dashboard.cache;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.repository.CompanyRepository;
+import com.esg.dashboard.service.CompanyCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmupServiceTest {
+
+    @Mock
+    private CompanyRepository companyRepository;
+
+    @Mock
+    private CompanyCacheService companyCacheService;
+
+    private CacheWarmupService cacheWarmupService;
+
+    @BeforeEach
+    void setUp() {
+        cacheWarmupService = new CacheWarmupService(companyRepository, companyCacheService, Runnable::run);
+        ReflectionTestUtils.setField(cacheWarmupService, "batchSize", 2);
+        ReflectionTestUtils.setField(cacheWarmupService, "hotLimit", 3L);
+    }
+
+    @Test
+    void start_ShouldStreamInBatchesAndCacheOnlyHotCompanies() {
+        // Arrange
+        List<Company> companies = IntStream.range(0, 5)
+                .mapToObj(i -> Company.builder()
+                        .companyId("COMP00" + i)
+                        .currentRating(ESGRating.builder().overallScore(90.0 - i).build())
+                        .build())
+                .toList();
+        when(companyRepository.count()).thenReturn(5L);
+        when(companyRepository.streamRankedCompanies()).thenReturn(companies.stream());
+
+        // Act
+        assertFalse(cacheWarmupService.isInitialWarmupDone());
+        boolean started = cacheWarmupService.start();
+
+        // Assert
+        assertTrue(started);
+        assertTrue(cacheWarmupService.isInitialWarmupDone());
+        assertEquals("COMPLETED", cacheWarmupService.getProgress().get("status"));
+        assertEquals(5L, cacheWarmupService.getProgress().get("processed"));
+        verify(companyCacheService).warmCompanies(companies.subList(0, 2), true);
+        verify(companyCacheService).warmCompanies(companies.subList(2, 3), true);
+        verify(companyCacheService).warmCompanies(companies.subList(3, 4), false);
+        verify(companyCacheService).warmCompanies(companies.subList(4, 5), false);
+    }
+
+    @Test
+    void start_WhenStreamFails_ShouldStillReleaseReadiness() {
+        // Arrange
+        when(companyRepository.count()).thenReturn(1L);
+        when(companyRepository.streamRankedCompanies()).thenReturn(Stream.generate(() -> {
+            throw new IllegalStateException("cursor closed");
+        }));
+
+        // Act
+        cacheWarmupService.start();
+
+        // Assert
+        assertTrue(cacheWarmupService.isInitialWarmupDone());
+        assertEquals("FAILED", cacheWarmupService.getProgress().get("status"));
+        verify(companyCacheService, never()).warmCompanies(anyList(), anyBoolean());
+    }
+}
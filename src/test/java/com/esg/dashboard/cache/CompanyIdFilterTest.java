@@ -0,0 +1,137 @@
+package com.esg.dashboard.cache;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.repository.CompanyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CompanyIdFilterTest {
+
+    @Mock
+    private CompanyRepository companyRepository;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private RedisMessageListenerContainer redisContainer;
+
+    private CompanyIdFilter companyIdFilter;
+
+    @BeforeEach
+    void setUp() {
+        companyIdFilter = new CompanyIdFilter(companyRepository, redisTemplate, redisContainer,
+                new SimpleMeterRegistry(), 1000, 0.001, 5000);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void mightContain_BeforeRebuild_ShouldAllowAnyId() {
+        assertFalse(companyIdFilter.isReady());
+        assertTrue(companyIdFilter.mightContain("UNKNOWN"));
+    }
+
+    @Test
+    void rebuild_ShouldRejectUnknownIdsAndAcceptNewOnes() {
+        // Arrange
+        when(companyRepository.count()).thenReturn(2L);
+        when(companyRepository.streamAllCompanyIds()).thenReturn(Stream.of(
+                Company.builder().companyId("COMP001").build(),
+                Company.builder().companyId("COMP002").build()));
+
+        // Act
+        companyIdFilter.rebuild();
+        companyIdFilter.put("COMP003");
+
+        // Assert
+        assertTrue(companyIdFilter.isReady());
+        assertTrue(companyIdFilter.mightContain("COMP001"));
+        assertTrue(companyIdFilter.mightContain("COMP002"));
+        assertTrue(companyIdFilter.mightContain("COMP003"));
+        assertFalse(companyIdFilter.mightContain("UNKNOWN"));
+    }
+
+    @Test
+    void checkGeneration_WhenGenerationChanged_ShouldRebuildWithNewCompanies() {
+        // Arrange
+        when(valueOperations.get(CompanyIdFilter.GENERATION_KEY)).thenReturn(1, 2);
+        when(companyRepository.count()).thenReturn(2L);
+        when(companyRepository.streamAllCompanyIds()).thenReturn(
+                Stream.of(Company.builder().companyId("COMP001").build()),
+                Stream.of(Company.builder().companyId("COMP001").build(),
+                        Company.builder().companyId("COMP002").build()));
+        companyIdFilter.rebuild();
+
+        // Act
+        companyIdFilter.checkGeneration();
+
+        // Assert
+        assertTrue(companyIdFilter.mightContain("COMP002"));
+        verify(companyRepository, times(2)).streamAllCompanyIds();
+    }
+
+    @Test
+    void checkGeneration_WhenGenerationUnchanged_ShouldNotRebuild() {
+        // Arrange
+        when(valueOperations.get(CompanyIdFilter.GENERATION_KEY)).thenReturn(1);
+        when(companyRepository.count()).thenReturn(1L);
+        when(companyRepository.streamAllCompanyIds()).thenReturn(
+                Stream.of(Company.builder().companyId("COMP001").build()));
+        companyIdFilter.rebuild();
+
+        // Act
+        companyIdFilter.checkGeneration();
+
+        // Assert
+        assertFalse(companyIdFilter.mightContain("UNKNOWN"));
+        verify(companyRepository, times(1)).streamAllCompanyIds();
+    }
+
+    @Test
+    void mightContain_WhenGenerationNotVerifiedRecently_ShouldAllowAnyId() {
+        // Arrange
+        when(companyRepository.count()).thenReturn(1L);
+        when(companyRepository.streamAllCompanyIds()).thenReturn(
+                Stream.of(Company.builder().companyId("COMP001").build()));
+        companyIdFilter.rebuild();
+        ReflectionTestUtils.setField(companyIdFilter, "verifiedAt", System.currentTimeMillis() - 60_000);
+
+        // Act
+        boolean result = companyIdFilter.mightContain("UNKNOWN");
+
+        // Assert
+        assertTrue(result);
+    }
+
+    @Test
+    void announce_ShouldAddIdAndBumpGeneration() {
+        // Arrange
+        when(companyRepository.count()).thenReturn(0L);
+        when(companyRepository.streamAllCompanyIds()).thenReturn(Stream.empty());
+        companyIdFilter.rebuild();
+
+        // Act
+        companyIdFilter.announce("COMP009");
+
+        // Assert
+        assertTrue(companyIdFilter.mightContain("COMP009"));
+        verify(valueOperations).increment(CompanyIdFilter.GENERATION_KEY);
+    }
+}
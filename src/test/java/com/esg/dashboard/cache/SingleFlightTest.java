@@ -0,0 +1,78 @@
+package com.esg.dashboard.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void execute_WhenCalledConcurrently_ShouldRunLoaderOnce() throws Exception {
+        // Arrange
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            // Act
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("COMP001", () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(releaseLoader);
+                return "loaded";
+            })));
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("COMP001", () -> {
+                    loads.incrementAndGet();
+                    return "duplicate";
+                })));
+            }
+            // Даём ожидающим потокам подключиться к текущей загрузке
+            Thread.sleep(100);
+            releaseLoader.countDown();
+
+            // Assert
+            for (Future<String> result : results) {
+                assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(0, singleFlight.inFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_WhenLoaderFails_ShouldPropagateAndAllowRetry() {
+        // Arrange
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("COMP001", () -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertEquals("ok", singleFlight.execute("COMP001", () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.esg.dashboard.cache.codec;
+
+import com.esg.dashboard.config.RedisConfig;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodecRedisSerializerTest {
+
+    private RedisSerializer<Object> json;
+    private CodecRedisSerializer binarySerializer;
+    private CodecRedisSerializer jsonSerializer;
+    private Company testCompany;
+
+    @BeforeEach
+    void setUp() {
+        json = RedisConfig.jsonSerializer();
+        binarySerializer = new CodecRedisSerializer(json).register(new CompanyBinaryCodec(), true);
+        jsonSerializer = new CodecRedisSerializer(json).register(new CompanyBinaryCodec(), false);
+
+        ESGRating rating = ESGRating.builder()
+                .overallScore(85.5)
+                .environmentalScore(90.0)
+                .socialScore(80.0)
+                .governanceScore(86.5)
+                .carbonFootprint(120.5)
+                .socialImpactScore(78.0)
+                .ratingGrade("AA")
+                .calculationDate(LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000))
+                .ranking(3)
+                .build();
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("employees", 1200);
+        metrics.put("country", "DE");
+
+        testCompany = Company.builder()
+                .id("65f0c0ffee")
+                .companyId("COMP001")
+                .name("Test Company")
+                .sector("Technology")
+                .industry("Software")
+                .currentRating(rating)
+                .additionalMetrics(metrics)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .updatedAt(LocalDateTime.of(2024, 5, 1, 10, 15, 30))
+                .build();
+    }
+
+    @Test
+    void binaryCodec_ShouldRoundTripCompany() {
+        // Act
+        byte[] bytes = binarySerializer.serialize(testCompany);
+        Object result = binarySerializer.deserialize(bytes);
+
+        // Assert
+        assertEquals(CodecRedisSerializer.MAGIC, bytes[0]);
+        assertEquals(testCompany, result);
+    }
+
+    @Test
+    void binaryCodec_ShouldHandleMissingFields() {
+        // Arrange
+        Company sparse = Company.builder().companyId("COMP002").build();
+
+        // Act
+        Object result = binarySerializer.deserialize(binarySerializer.serialize(sparse));
+
+        // Assert
+        assertEquals(sparse, result);
+    }
+
+    @Test
+    void binaryCodec_ShouldBeSmallerThanJson() {
+        // Act
+        byte[] binary = binarySerializer.serialize(testCompany);
+        byte[] jsonBytes = jsonSerializer.serialize(testCompany);
+
+        // Assert
+        assertTrue(binary.length < jsonBytes.length,
+                "binary " + binary.length + " bytes, json " + jsonBytes.length + " bytes");
+    }
+
+    @Test
+    void binaryCodec_WithManyAdditionalMetrics_ShouldStaySmallerThanJson() {
+        // Arrange
+        Map<String, Object> metrics = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            metrics.put("metric_" + i, i % 2 == 0 ? (Object) (i * 1.5) : "value-" + i);
+        }
+        testCompany.setAdditionalMetrics(metrics);
+
+        // Act
+        byte[] binary = binarySerializer.serialize(testCompany);
+        byte[] jsonBytes = jsonSerializer.serialize(testCompany);
+
+        // Assert
+        assertTrue(binary.length < jsonBytes.length,
+                "binary " + binary.length + " bytes, json " + jsonBytes.length + " bytes");
+        assertEquals(testCompany, binarySerializer.deserialize(binary));
+    }
+
+    @Test
+    void deserialize_ShouldReadJsonWrittenBeforeSwitchingCodec() {
+        // Arrange
+        byte[] legacy = jsonSerializer.serialize(testCompany);
+
+        // Act & Assert
+        assertEquals(testCompany, binarySerializer.deserialize(legacy));
+        assertEquals("plain", binarySerializer.deserialize(binarySerializer.serialize("plain")));
+    }
+
+    @Test
+    void deserialize_WithUnknownSchemaVersion_ShouldFail() {
+        // Arrange
+        byte[] bytes = binarySerializer.serialize(testCompany);
+        bytes[2] = 99;
+
+        // Act & Assert
+        assertThrows(SerializationException.class, () -> binarySerializer.deserialize(bytes));
+    }
+}
@@ -0,0 +1,50 @@
+package com.esg.dashboard.config;
+
+import com.esg.dashboard.cache.LocalCacheLoader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheConfigTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void localCacheManager_ShouldExposeOnlyConfiguredCachesWithMetrics() {
+        // Arrange
+        CacheManager cacheManager = localCacheManager("maximumSize=10,expireAfterWrite=10m");
+
+        // Act
+        Cache sectorMetrics = cacheManager.getCache("sector-metrics");
+        sectorMetrics.put("Technology", 72.5);
+        sectorMetrics.get("Technology");
+        sectorMetrics.get("Energy");
+
+        // Assert
+        assertNull(cacheManager.getCache("unknown-cache"));
+        assertEquals(1.0, meterRegistry.get("esg.cache.gets")
+                .tags("cache", "sector-metrics", "result", "hit").functionCounter().count());
+        assertEquals(0.5, meterRegistry.get("esg.cache.hit.rate").tag("cache", "sector-metrics").gauge().value());
+    }
+
+    @Test
+    void localCacheManager_WhenRefreshWithoutLoader_ShouldFailFast() {
+        assertThrows(IllegalStateException.class,
+                () -> localCacheManager("maximumSize=10,refreshAfterWrite=1m"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheManager localCacheManager(String sectorMetricsSpec) {
+        ObjectProvider<LocalCacheLoader> loaders = mock(ObjectProvider.class);
+        when(loaders.orderedStream()).thenReturn(Stream.empty());
+        return new CacheConfig().localCacheManager(meterRegistry, loaders, sectorMetricsSpec,
+                "maximumSize=10", "maximumSize=10");
+    }
+}
@@ -0,0 +1,88 @@
+package com.esg.dashboard.config;
+
+import com.esg.dashboard.model.HistoricalDataPoint;
+import com.mongodb.client.ListCollectionsIterable;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HistoricalDataTimeSeriesConfigTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoDatabase database;
+
+    @Mock
+    private ListCollectionsIterable<Document> collections;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getDb()).thenReturn(database);
+        when(database.listCollections()).thenReturn(collections);
+        when(collections.filter(any(Bson.class))).thenReturn(collections);
+    }
+
+    @Test
+    void createTimeSeriesCollection_ShouldCreateCollectionAndIndex() {
+        // Arrange
+        when(mongoTemplate.collectionExists(HistoricalDataPoint.class)).thenReturn(false);
+        when(collections.first()).thenReturn(collection("timeseries"));
+        when(mongoTemplate.indexOps(HistoricalDataPoint.class)).thenReturn(indexOperations);
+
+        // Act
+        new HistoricalDataTimeSeriesConfig(mongoTemplate).createTimeSeriesCollection();
+
+        // Assert
+        verify(mongoTemplate).createCollection(HistoricalDataPoint.class);
+        verify(indexOperations).ensureIndex(any());
+    }
+
+    @Test
+    void createTimeSeriesCollection_WhenCollectionIsNotTimeSeries_ShouldFailStartup() {
+        // Arrange
+        when(mongoTemplate.collectionExists(HistoricalDataPoint.class)).thenReturn(true);
+        when(collections.first()).thenReturn(collection("collection"));
+
+        // Act & Assert
+        HistoricalDataTimeSeriesConfig config = new HistoricalDataTimeSeriesConfig(mongoTemplate);
+        assertThrows(IllegalStateException.class, config::createTimeSeriesCollection);
+        verify(mongoTemplate, never()).createCollection(HistoricalDataPoint.class);
+        verify(mongoTemplate, never()).indexOps(HistoricalDataPoint.class);
+    }
+
+    @Test
+    void createTimeSeriesCollection_WhenCreationFails_ShouldFailStartup() {
+        // Arrange
+        when(mongoTemplate.collectionExists(HistoricalDataPoint.class)).thenReturn(false);
+        when(mongoTemplate.createCollection(HistoricalDataPoint.class))
+                .thenThrow(new UncategorizedMongoDbException("timeseries not supported", null));
+        when(collections.first()).thenReturn(null);
+
+        // Act & Assert
+        HistoricalDataTimeSeriesConfig config = new HistoricalDataTimeSeriesConfig(mongoTemplate);
+        assertThrows(IllegalStateException.class, config::createTimeSeriesCollection);
+        verify(mongoTemplate, never()).indexOps(HistoricalDataPoint.class);
+    }
+
+    private static Document collection(String type) {
+        return new Document("name", HistoricalDataPoint.COLLECTION).append("type", type);
+    }
+}
@@ -0,0 +1,263 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.ClientExposureDto;
+import com.esg.dashboard.model.ClientExposure;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClientExposureServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @InjectMocks
+    private ClientExposureService clientExposureService;
+
+    @Test
+    void getExposure_ShouldServeStoredDocumentWithoutTouchingPortfolios() {
+        // Arrange
+        ClientExposure stored = ClientExposure.builder()
+                .clientId("CLIENT001")
+                .portfolioCount(2L)
+                .totalHoldings(3L)
+                .totalInvestment(4000.0)
+                .esgScoreSum(300000.0)
+                .carbonFootprintSum(200000.0)
+                .socialImpactScoreSum(240000.0)
+                .companyInvestments(List.of(
+                        new ClientExposure.CompanyInvestment("COMP001", 1000.0),
+                        new ClientExposure.CompanyInvestment("COMP002", 3000.0),
+                        new ClientExposure.CompanyInvestment("COMP003", 0.0)))
+                .build();
+        when(mongoTemplate.findById("CLIENT001", ClientExposure.class)).thenReturn(stored);
+
+        // Act
+        ClientExposureDto exposure = clientExposureService.getExposure("CLIENT001");
+
+        // Assert
+        assertEquals(75.0, exposure.getEsgScore());
+        assertEquals(50.0, exposure.getCarbonFootprint());
+        assertEquals(60.0, exposure.getSocialImpactScore());
+        assertEquals(2, exposure.getCompanies().size());
+        assertEquals("COMP002", exposure.getCompanies().get(0).getCompanyId());
+        assertEquals(0.75, exposure.getCompanies().get(0).getWeight());
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(Portfolio.class));
+    }
+
+    @Test
+    void getExposure_WhenMissing_ShouldBuildFromClientPortfolios() {
+        // Arrange
+        when(mongoTemplate.findById("CLIENT001", ClientExposure.class)).thenReturn(null);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(Stream.of(portfolio(80.0, 1000.0), portfolio(60.0, 3000.0)));
+        when(mongoTemplate.findAndReplace(any(Query.class), any(ClientExposure.class)))
+                .thenReturn(new ClientExposure());
+
+        // Act
+        ClientExposureDto exposure = clientExposureService.getExposure("CLIENT001");
+
+        // Assert
+        assertEquals(2L, exposure.getPortfolioCount());
+        assertEquals(4000.0, exposure.getTotalInvestment());
+        // (80 * 1000 + 60 * 3000) / 4000
+        assertEquals(65.0, exposure.getEsgScore());
+        assertEquals(1, exposure.getCompanies().size());
+        assertEquals(4000.0, exposure.getCompanies().get(0).getInvestmentAmount());
+        ArgumentCaptor<ClientExposure> placeholder = ArgumentCaptor.forClass(ClientExposure.class);
+        verify(mongoTemplate).insert(placeholder.capture());
+        assertTrue(placeholder.getValue().getPending());
+        ArgumentCaptor<ClientExposure> built = ArgumentCaptor.forClass(ClientExposure.class);
+        verify(mongoTemplate).findAndReplace(any(Query.class), built.capture());
+        assertFalse(built.getValue().getPending());
+        assertEquals(1L, built.getValue().getVersion());
+    }
+
+    @Test
+    void getExposure_WhenDeltaLandsDuringRebuild_ShouldDiscardResultAndReadAgain() {
+        // Arrange
+        ClientExposure building = ClientExposure.builder().clientId("CLIENT001").version(0L).pending(true).build();
+        // Пока курсор читал портфели, дельта нового портфеля увеличила версию
+        ClientExposure changed = ClientExposure.builder().clientId("CLIENT001").version(1L).pending(true).build();
+        when(mongoTemplate.findById("CLIENT001", ClientExposure.class)).thenReturn(building, building, changed);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(Stream.of(portfolio(80.0, 1000.0)))
+                .thenReturn(Stream.of(portfolio(80.0, 1000.0), portfolio(60.0, 3000.0)));
+        when(mongoTemplate.findAndReplace(any(Query.class), any(ClientExposure.class)))
+                .thenReturn(null, changed);
+
+        // Act
+        ClientExposureDto exposure = clientExposureService.getExposure("CLIENT001");
+
+        // Assert
+        assertEquals(2L, exposure.getPortfolioCount());
+        assertEquals(4000.0, exposure.getTotalInvestment());
+        ArgumentCaptor<Query> guard = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).findAndReplace(guard.capture(), any(ClientExposure.class));
+        assertEquals(0L, guard.getAllValues().get(0).getQueryObject().get("version"));
+        assertEquals(1L, guard.getAllValues().get(1).getQueryObject().get("version"));
+        verify(mongoTemplate, never()).insert(any(ClientExposure.class));
+    }
+
+    @Test
+    void apply_WhenDeltasKeepArrivingAfterRebuild_ShouldApplyEveryDeltaStartedAfterTheRead() throws InterruptedException {
+        // Arrange
+        when(mongoTemplate.findById("CLIENT001", ClientExposure.class)).thenReturn(null);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(Stream.of(portfolio(80.0, 1000.0)));
+        when(mongoTemplate.findAndReplace(any(Query.class), any(ClientExposure.class)))
+                .thenReturn(new ClientExposure());
+        // Запись, начатая до того, как построение прочитало портфели, могла в него попасть
+        ClientExposureService.Delta concurrent = ClientExposureService.Delta.of("CLIENT001").plus(portfolio(60.0, 500.0));
+        clientExposureService.getExposure("CLIENT001");
+        ArgumentCaptor<ClientExposure> built = ArgumentCaptor.forClass(ClientExposure.class);
+        verify(mongoTemplate).findAndReplace(any(Query.class), built.capture());
+        Date builtAt = Date.from(built.getValue().getBuiltAt().atZone(ZoneId.systemDefault()).toInstant());
+
+        // Act
+        List<Date> startedAt = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // Клиент пишет непрерывно: каждая следующая запись начинается после построения
+            Thread.sleep(2);
+            startedAt.add(applicableAfter(ClientExposureService.Delta.of("CLIENT001")
+                    .plus(portfolio(70.0, 100.0 + i)).toUpdate(LocalDateTime.now())));
+        }
+
+        // Assert
+        startedAt.forEach(started -> assertTrue(builtAt.before(started)));
+        assertFalse(builtAt.before(applicableAfter(concurrent.toUpdate(LocalDateTime.now()))));
+    }
+
+    @Test
+    void apply_ShouldIncrementOnlyTheDifferenceBetweenOldAndNewPortfolio() {
+        // Arrange
+        ClientExposureService.Delta delta = ClientExposureService.Delta.of("CLIENT001")
+                .minus(portfolio(80.0, 1000.0))
+                .plus(portfolio(70.0, 1500.0));
+
+        // Act
+        clientExposureService.apply(delta);
+
+        // Assert
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(ClientExposure.class));
+        Document set = values(update.getValue());
+        assertEquals(0L, change(set, "portfolioCount"));
+        assertEquals(500.0, (Double) change(set, "totalInvestment"), 0.0001);
+        // 70 * 1500 - 80 * 1000
+        assertEquals(25000.0, (Double) change(set, "esgScoreSum"), 0.0001);
+        assertTrue(set.toJson().contains("\"then\": 500.0"));
+        // Суммы меняются только у построенного документа, версия растет всегда
+        assertTrue(set.get("pending", Document.class).containsKey("$not"));
+        assertTrue(set.get("version", Document.class).containsKey("$add"));
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), eq(ClientExposure.class));
+    }
+
+    @Test
+    void applyAll_WhenWriteFails_ShouldInvalidateAffectedClients() {
+        // Arrange
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClientExposure.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(new RuntimeException("connection reset"));
+
+        // Act
+        clientExposureService.applyAll(List.of(
+                ClientExposureService.Delta.of("CLIENT001").plus(portfolio(80.0, 1000.0)),
+                ClientExposureService.Delta.of("CLIENT001").plus(portfolio(60.0, 500.0)),
+                ClientExposureService.Delta.of("CLIENT002").scores(0.0, 0.0, 0.0)));
+
+        // Assert
+        verify(bulkOperations, times(1)).updateOne(any(Query.class), any(UpdateDefinition.class));
+        ArgumentCaptor<Query> invalidated = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(invalidated.capture(), update.capture(), eq(ClientExposure.class));
+        assertTrue(invalidated.getValue().getQueryObject().toJson().contains("CLIENT001"));
+        assertFalse(invalidated.getValue().getQueryObject().toJson().contains("CLIENT002"));
+        assertEquals(true, update.getValue().getUpdateObject().get("$set", Document.class).get("pending"));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(ClientExposure.class));
+    }
+
+    @Test
+    void toUpdate_ShouldPassCompanyIdsAsValuesNotFieldPaths() {
+        // Arrange
+        ClientExposureService.Delta delta = ClientExposureService.Delta.of("CLIENT001")
+                .company("BRK.B", 1000.0)
+                .company("$COMP", 500.0);
+
+        // Act
+        Document set = values(delta.toUpdate(LocalDateTime.now()));
+
+        // Assert
+        assertTrue(set.keySet().stream().noneMatch(field -> field.contains("BRK") || field.contains("COMP")));
+        String companies = set.get("companyInvestments", Document.class).toJson();
+        assertTrue(companies.contains("{\"$literal\": \"BRK.B\"}"));
+        assertTrue(companies.contains("{\"$literal\": \"$COMP\"}"));
+    }
+
+    /** Дельта применяется, если builtAt документа раньше этой даты: {$lt: [{$ifNull: [builtAt]}, дата]} */
+    private static Date applicableAfter(UpdateDefinition update) {
+        List<Document> pipeline = ((AggregationUpdate) update).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        Document applicable = pipeline.get(0).get("$set", Document.class).get("_deltaApplicable", Document.class);
+        Document builtBefore = (Document) ((List<?>) applicable.get("$and")).get(1);
+        return (Date) ((List<?>) builtBefore.get("$lt")).get(1);
+    }
+
+    /** Стадия $set конвейера дельты, которая меняет суммы */
+    private static Document values(UpdateDefinition update) {
+        List<Document> pipeline = ((AggregationUpdate) update).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        return pipeline.stream()
+                .map(stage -> stage.get("$set", Document.class))
+                .filter(set -> set != null && set.containsKey("portfolioCount"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /** Слагаемое из {$cond: [применима, {$add: [{$ifNull: [поле, 0]}, изменение]}, поле]} */
+    private static Object change(Document set, String field) {
+        Document applied = (Document) ((List<?>) set.get(field, Document.class).get("$cond")).get(1);
+        return ((List<?>) applied.get("$add")).get(1);
+    }
+
+    private static Portfolio portfolio(double esgScore, double investment) {
+        return Portfolio.builder()
+                .clientId("CLIENT001")
+                .aggregateScores(PortfolioAggregate.builder()
+                        .totalEsgScore(esgScore)
+                        .carbonFootprint(50.0)
+                        .socialImpactScore(60.0)
+                        .totalCompanies(1)
+                        .totalInvestment(investment)
+                        .build())
+                .items(List.of(PortfolioItem.builder().companyId("COMP001").investmentAmount(investment).build()))
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,188 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.cache.CacheNamespaces;
+import com.esg.dashboard.cache.CompanyIdFilter;
+import com.esg.dashboard.cache.CompanyNearCache;
+import com.esg.dashboard.config.RedisConfig;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CompanyCacheServiceTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private RedisMessageListenerContainer redisContainer;
+
+    @Mock
+    private CompanyIdFilter companyIdFilter;
+
+    private MeterRegistry meterRegistry;
+    private CompanyNearCache nearCache;
+    private CompanyCacheService companyCacheService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        nearCache = new CompanyNearCache(redisTemplate, redisContainer, meterRegistry, 100, 60);
+        companyCacheService = new CompanyCacheService(redisTemplate, nearCache, companyIdFilter,
+                new CacheNamespaces(redisTemplate, redisContainer), meterRegistry);
+    }
+
+    @Test
+    void getCachedCompany_WhenInNearCache_ShouldNotHitRedis() {
+        // Arrange
+        Company company = Company.builder().companyId("COMP001").name("Company 1").build();
+        nearCache.put(company);
+
+        // Act
+        Company result = companyCacheService.getCachedCompany("COMP001");
+
+        // Assert
+        assertSame(company, result);
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    void getCachedCompany_WhenOnlyInRedis_ShouldPopulateNearCache() {
+        // Arrange
+        Company company = Company.builder().companyId("COMP001").name("Company 1").build();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("company:v0:COMP001")).thenReturn(company);
+
+        // Act
+        Company first = companyCacheService.getCachedCompany("COMP001");
+        Company second = companyCacheService.getCachedCompany("COMP001");
+
+        // Assert
+        assertNotNull(first);
+        assertSame(first, second);
+        verify(valueOperations, times(1)).get("company:v0:COMP001");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags("cache", "company-l2", "result", "hit").counter().count());
+    }
+
+    @Test
+    void drainReadCounts_ShouldCountReadsAndReset() {
+        // Arrange
+        nearCache.put(Company.builder().companyId("COMP001").build());
+
+        // Act
+        companyCacheService.getCachedCompany("COMP001");
+        companyCacheService.getCachedCompany("COMP001");
+        Map<String, Long> first = companyCacheService.drainReadCounts();
+        Map<String, Long> second = companyCacheService.drainReadCounts();
+
+        // Assert
+        assertEquals(2L, first.get("COMP001"));
+        assertTrue(second.isEmpty());
+    }
+
+    @Test
+    void evictCompanyCache_ShouldInvalidateBothTiersAndPublish() {
+        // Arrange
+        nearCache.put(Company.builder().companyId("COMP001").build());
+
+        // Act
+        companyCacheService.evictCompanyCache("COMP001");
+
+        // Assert
+        assertNull(nearCache.get("COMP001"));
+        verify(redisTemplate, times(1)).delete("company:v0:COMP001");
+        verify(redisTemplate, times(1)).convertAndSend(eq(CompanyNearCache.INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void warmCompanies_ShouldOnlyFillMissingRankingAndValues() {
+        // Arrange
+        Company company = Company.builder()
+                .companyId("COMP001")
+                .currentRating(ESGRating.builder().overallScore(80.0).build())
+                .build();
+        RedisOperations<String, Object> pipeline = mock(RedisOperations.class);
+        ZSetOperations<String, Object> zSetOperations = mock(ZSetOperations.class);
+        when(pipeline.opsForZSet()).thenReturn(zSetOperations);
+        when(pipeline.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.getArgument(0, SessionCallback.class).execute(pipeline);
+            return List.of();
+        });
+
+        // Act
+        companyCacheService.warmCompanies(List.of(company), true);
+
+        // Assert
+        verify(zSetOperations).addIfAbsent(eq("esg:ranking"), anySet());
+        verify(zSetOperations, never()).add(anyString(), anySet());
+        verify(valueOperations).setIfAbsent(eq("company:v0:COMP001"), eq(company), anyLong(), eq(TimeUnit.SECONDS));
+        verify(valueOperations, never()).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refreshCompanies_ShouldReplaceOnlyEntriesUnchangedSinceSnapshot() {
+        // Arrange
+        byte[] cached = "cached-company".getBytes(StandardCharsets.UTF_8);
+        RedisSerializer<Object> serializer = RedisConfig.jsonSerializer();
+        Company fresh = Company.builder().companyId("COMP001").name("Company 1").build();
+        doReturn(serializer).when(redisTemplate).getValueSerializer();
+        // COMP002 уже истек - его обновлять не нужно
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn(Arrays.asList(cached, null));
+        List<Object> scriptCall = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                anyList(), any(Object[].class))).thenAnswer(invocation -> {
+                    scriptCall.addAll(Arrays.asList(invocation.getArguments()).subList(3, invocation.getArguments().length));
+                    return 1L;
+                });
+        List<List<String>> loaded = new ArrayList<>();
+
+        // Act
+        int refreshed = companyCacheService.refreshCompanies(List.of("COMP001", "COMP002"), ids -> {
+            // Снимок Redis должен быть прочитан до загрузки из БД
+            verify(redisTemplate).execute(any(RedisCallback.class));
+            loaded.add(ids);
+            return List.of(fresh);
+        });
+
+        // Assert
+        assertEquals(1, refreshed);
+        assertEquals(List.of(List.of("COMP001")), loaded);
+        assertEquals(List.of("company:v0:COMP001"), scriptCall.get(0));
+        assertArrayEquals(cached, (byte[]) scriptCall.get(1));
+        assertArrayEquals(serializer.serialize(fresh), (byte[]) scriptCall.get(2));
+        assertNull(nearCache.get("COMP001"));
+        verify(redisTemplate, never()).opsForValue();
+    }
+}
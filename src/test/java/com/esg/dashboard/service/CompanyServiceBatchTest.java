@@ -1,5 +1,6 @@
 package com.esg.dashboard.service;
 
+import com.esg.dashboard.event.EventPublisher;
 import com.esg.dashboard.model.Company;
 import com.esg.dashboard.repository.CompanyRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,7 +9,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.data.redis.core.ZSetOperations;
 
 import java.util.Arrays;
@@ -30,28 +30,31 @@ class CompanyServiceBatchTest {
     private RedisTemplate<String, Object> redisTemplate;
 
     @Mock
-    private ValueOperations<String, Object> valueOperations;
+    private ZSetOperations<String, Object> zSetOperations;
 
     @Mock
-    private ZSetOperations<String, Object> zSetOperations;
+    private CompanyCacheService companyCacheService;
+
+    @Mock
+    private EventPublisher eventPublisher;
 
     private CompanyService companyService;
 
     @BeforeEach
     void setUp() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        companyService = new CompanyService(companyRepository, redisTemplate, zSetOperations);
+        companyService = new CompanyService(companyRepository, redisTemplate, zSetOperations,
+                companyCacheService, eventPublisher);
     }
 
     @Test
     void batchLoadCompanies_WhenAllInCache_ShouldReturnFromCache() {
         // Arrange
         List<String> companyIds = Arrays.asList("COMP001", "COMP002");
-        Company company1 = Company.builder().companyId("COMP001").name("Company 1").build();
-        Company company2 = Company.builder().companyId("COMP002").name("Company 2").build();
+        Map<String, Company> cached = new HashMap<>();
+        cached.put("COMP001", Company.builder().companyId("COMP001").name("Company 1").build());
+        cached.put("COMP002", Company.builder().companyId("COMP002").name("Company 2").build());
 
-        when(valueOperations.get("company:COMP001")).thenReturn(company1);
-        when(valueOperations.get("company:COMP002")).thenReturn(company2);
+        when(companyCacheService.getCachedCompanies(companyIds)).thenReturn(cached);
 
         // Act
         Map<String, Company> result = companyService.batchLoadCompanies(companyIds);
@@ -61,17 +64,18 @@ class CompanyServiceBatchTest {
         assertEquals(2, result.size());
         assertTrue(result.containsKey("COMP001"));
         assertTrue(result.containsKey("COMP002"));
+        verify(companyCacheService, never()).getCachedCompany(anyString());
         verify(companyRepository, never()).findByCompanyIdIn(anyList());
     }
 
     @Test
-    void batchLoadCompanies_WhenNoneInCache_ShouldLoadFromDatabase() {
+    void batchLoadCompanies_WhenNoneInCache_ShouldLoadFromDatabaseAndWriteBackOnce() {
         // Arrange
         List<String> companyIds = Arrays.asList("COMP001", "COMP002");
         Company company1 = Company.builder().companyId("COMP001").name("Company 1").build();
         Company company2 = Company.builder().companyId("COMP002").name("Company 2").build();
 
-        when(valueOperations.get(anyString())).thenReturn(null);
+        when(companyCacheService.getCachedCompanies(companyIds)).thenReturn(new HashMap<>());
         when(companyRepository.findByCompanyIdIn(companyIds)).thenReturn(Arrays.asList(company1, company2));
 
         // Act
@@ -81,13 +85,14 @@ class CompanyServiceBatchTest {
         assertNotNull(result);
         assertEquals(2, result.size());
         verify(companyRepository, times(1)).findByCompanyIdIn(companyIds);
+        verify(companyCacheService, times(1)).cacheCompanies(Arrays.asList(company1, company2));
+        verify(companyCacheService, never()).cacheCompany(any(Company.class));
     }
 
     @Test
     void batchLoadCompanies_WhenEmptyList_ShouldThrowException() {
         // Act & Assert
-        assertThrows(IllegalArgumentException.class, () -> 
+        assertThrows(IllegalArgumentException.class, () ->
             companyService.batchLoadCompanies(List.of()));
     }
 }
-
@@ -11,11 +11,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.DefaultTypedTuple;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -68,6 +73,31 @@ class CompanyServicePaginationTest {
         verify(companyRepository).findTopRankedCompanies(pageable);
     }
 
+    @Test
+    void testGetTopRankedCompaniesWithPaginationFromRedis() {
+        Pageable pageable = PageRequest.of(2, 2);
+        Set<ZSetOperations.TypedTuple<Object>> ranked = new LinkedHashSet<>();
+        ranked.add(new DefaultTypedTuple<>("COMP4", 70.0));
+        ranked.add(new DefaultTypedTuple<>("COMP5", 65.0));
+        Map<String, Company> companies = new HashMap<>();
+        for (String id : List.of("COMP4", "COMP5")) {
+            Company company = new Company();
+            company.setCompanyId(id);
+            companies.put(id, company);
+        }
+
+        when(zSetOperations.zCard("esg:ranking")).thenReturn(50L);
+        when(zSetOperations.reverseRangeWithScores("esg:ranking", 4, 5)).thenReturn(ranked);
+        when(companyCacheService.getCachedCompanies(List.of("COMP4", "COMP5"))).thenReturn(companies);
+
+        Page<Company> result = companyService.getTopRankedCompanies(pageable);
+
+        assertEquals(2, result.getContent().size());
+        assertEquals("COMP4", result.getContent().get(0).getCompanyId());
+        assertEquals(50, result.getTotalElements());
+        verify(companyRepository, never()).findTopRankedCompanies(any(Pageable.class));
+    }
+
     @Test
     void testGetCompaniesBySectorWithPagination() {
         String sector = "Technology";
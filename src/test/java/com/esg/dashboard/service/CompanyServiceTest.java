@@ -1,5 +1,7 @@
 package com.esg.dashboard.service;
 
+import com.esg.dashboard.cache.RankingChange;
+import com.esg.dashboard.dto.RankedCompanyDto;
 import com.esg.dashboard.event.EventPublisher;
 import com.esg.dashboard.model.Company;
 import com.esg.dashboard.model.ESGRating;
@@ -11,10 +13,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.DefaultTypedTuple;
 import org.springframework.data.redis.core.ZSetOperations;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -98,6 +105,60 @@ class CompanyServiceTest {
         assertEquals("COMP001", result.get().getCompanyId());
     }
 
+    @Test
+    void findByCompanyId_WhenRejectedByFilter_ShouldNotQueryStores() {
+        // Arrange
+        when(companyCacheService.isRejectedByFilter("UNKNOWN")).thenReturn(true);
+
+        // Act
+        Optional<Company> result = companyService.findByCompanyId("UNKNOWN");
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(companyCacheService, never()).getCachedCompany(anyString());
+        verify(companyCacheService, never()).isCachedAsMissing(anyString());
+        verify(companyRepository, never()).findByCompanyId(anyString());
+    }
+
+    @Test
+    void saveOrUpdateCompany_WhenCompanyIsNew_ShouldAnnounceIdToFilter() {
+        // Arrange
+        Company newCompany = Company.builder().companyId("COMP777").name("New Corp").build();
+        when(companyRepository.save(newCompany)).thenReturn(newCompany);
+
+        // Act
+        companyService.saveOrUpdateCompany(newCompany);
+
+        // Assert
+        verify(companyCacheService).announceCompanyId("COMP777");
+    }
+
+    @Test
+    void saveOrUpdateCompany_WhenCompanyExists_ShouldNotAnnounceId() {
+        // Arrange
+        when(companyRepository.save(testCompany)).thenReturn(testCompany);
+
+        // Act
+        companyService.saveOrUpdateCompany(testCompany);
+
+        // Assert
+        verify(companyCacheService, never()).announceCompanyId(anyString());
+    }
+
+    @Test
+    void findByCompanyId_WhenNotInDatabase_ShouldCacheAbsence() {
+        // Arrange
+        when(companyRepository.findByCompanyId("COMP404")).thenReturn(Optional.empty());
+
+        // Act
+        Optional<Company> result = companyService.findByCompanyId("COMP404");
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(companyCacheService, times(1)).cacheMissing("COMP404");
+        verify(companyCacheService, never()).cacheCompany(any(Company.class));
+    }
+
     @Test
     void updateESGRating_WhenCompanyExists_ShouldUpdateRating() {
         // Arrange
@@ -120,4 +181,43 @@ class CompanyServiceTest {
 
         verify(companyRepository, times(1)).save(any(Company.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getTopRankedCompaniesWithScores_ShouldHydrateInBulkAndKeepRankOrder() {
+        // Arrange
+        Company second = Company.builder().companyId("COMP002").name("Second").build();
+        Set<ZSetOperations.TypedTuple<Object>> ranked = new LinkedHashSet<>();
+        ranked.add(new DefaultTypedTuple<>("COMP001", 95.0));
+        ranked.add(new DefaultTypedTuple<>("COMP002", 90.0));
+        when(zSetOperations.reverseRangeWithScores("esg:ranking", 0, 1)).thenReturn(ranked);
+        when(companyCacheService.getCachedCompanies(List.of("COMP001", "COMP002")))
+                .thenReturn(new java.util.HashMap<>(Map.of("COMP001", testCompany, "COMP002", second)));
+
+        // Act
+        List<RankedCompanyDto> result = companyService.getTopRankedCompaniesWithScores(2);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals("COMP001", result.get(0).getCompany().getCompanyId());
+        assertEquals(1L, result.get(0).getRank());
+        assertEquals(95.0, result.get(0).getScore());
+        assertEquals("COMP002", result.get(1).getCompany().getCompanyId());
+        assertEquals(2L, result.get(1).getRank());
+        verify(companyCacheService, never()).getCachedCompany(anyString());
+        verify(companyRepository, never()).findByCompanyIdIn(any());
+    }
+
+    @Test
+    void saveOrUpdateCompany_WhenRankChanges_ShouldPublishRankingChange() {
+        // Arrange
+        when(companyRepository.save(any(Company.class))).thenReturn(testCompany);
+        when(companyCacheService.cacheCompanyWithRanking(testCompany)).thenReturn(new RankingChange(5, 2));
+
+        // Act
+        companyService.saveOrUpdateCompany(testCompany);
+
+        // Assert
+        verify(companyCacheService, never()).cacheCompany(any(Company.class));
+        verify(eventPublisher, times(1)).publishRankingChanged(testCompany, 5, 2);
+    }
+}
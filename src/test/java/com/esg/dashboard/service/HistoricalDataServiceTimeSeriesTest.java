@@ -0,0 +1,101 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.model.HistoricalData;
+import com.esg.dashboard.model.HistoricalDataPoint;
+import com.esg.dashboard.repository.HistoricalDataRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HistoricalDataServiceTimeSeriesTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private HistoricalDataRepository historicalDataRepository;
+
+    private HistoricalDataService historicalDataService;
+
+    @BeforeEach
+    void setUp() {
+        historicalDataService = new HistoricalDataService(mongoTemplate, historicalDataRepository);
+        ReflectionTestUtils.setField(historicalDataService, "timeSeriesEnabled", true);
+    }
+
+    @Test
+    void saveHistoricalData_ShouldInsertPointWithCompanyAndTypeAsMeta() {
+        // Act
+        historicalDataService.saveHistoricalData("COMP001", "ESG_RATING", Map.of("overallScore", 85.5));
+
+        // Assert
+        ArgumentCaptor<HistoricalDataPoint> point = ArgumentCaptor.forClass(HistoricalDataPoint.class);
+        verify(mongoTemplate).insert(point.capture());
+        assertEquals("COMP001", point.getValue().getMeta().getCompanyId());
+        assertEquals("ESG_RATING", point.getValue().getMeta().getDataType());
+        assertNotNull(point.getValue().getRecordDate());
+        verify(mongoTemplate, never()).save(any(HistoricalData.class));
+    }
+
+    @Test
+    void getHistoricalData_ShouldQueryMetaFieldsAndReturnApiShape() {
+        // Arrange
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minusDays(30);
+        HistoricalDataPoint stored = HistoricalDataPoint.builder()
+                .meta(new HistoricalDataPoint.Meta("COMP001", "ESG_RATING"))
+                .metrics(Map.of("overallScore", 85.5))
+                .recordDate(to.minusDays(1))
+                .build();
+        when(mongoTemplate.find(any(Query.class), eq(HistoricalDataPoint.class))).thenReturn(List.of(stored));
+
+        // Act
+        List<HistoricalData> result = historicalDataService.getHistoricalData("COMP001", "ESG_RATING", from, to);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("COMP001", result.get(0).getCompanyId());
+        assertEquals("ESG_RATING", result.get(0).getDataType());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(HistoricalDataPoint.class));
+        Document filter = query.getValue().getQueryObject();
+        assertEquals("COMP001", filter.get("meta.companyId"));
+        assertEquals("ESG_RATING", filter.get("meta.dataType"));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(HistoricalData.class));
+    }
+
+    @Test
+    void getCompanyHistoryPaged_ShouldReadTimeSeriesCollectionInsteadOfRepository() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(HistoricalDataPoint.class))).thenReturn(List.of());
+
+        // Act
+        Page<HistoricalData> page = historicalDataService.getCompanyHistory("COMP001", PageRequest.of(0, 20));
+
+        // Assert
+        assertTrue(page.getContent().isEmpty());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(HistoricalDataPoint.class));
+        assertEquals(-1, query.getValue().getSortObject().get("recordDate"));
+        verifyNoInteractions(historicalDataRepository);
+    }
+}
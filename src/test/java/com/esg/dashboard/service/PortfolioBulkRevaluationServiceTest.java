@@ -0,0 +1,301 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.event.RatingUpdatedEvent;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.repository.CompanyRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PortfolioBulkRevaluationServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private CompanyRepository companyRepository;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
+    @Mock
+    private ClientExposureService clientExposureService;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private BulkWriteResult bulkWriteResult;
+
+    private PortfolioBulkRevaluationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PortfolioBulkRevaluationService(mongoTemplate, companyRepository, redisTemplate,
+                portfolioCacheService, clientExposureService, Runnable::run);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+    }
+
+    @Test
+    void start_ShouldScoreAllPortfoliosInBatchesAndAdvanceCheckpointInOrder() {
+        // Arrange
+        Company company = Company.builder()
+                .companyId("COMP001")
+                .name("Test Company")
+                .currentRating(ESGRating.builder().overallScore(80.0).carbonFootprint(50.0).socialImpactScore(70.0).build())
+                .build();
+        List<Portfolio> portfolios = IntStream.range(0, 5)
+                .mapToObj(i -> Portfolio.builder()
+                        .portfolioId("PORT00" + i)
+                        .items(List.of(PortfolioItem.builder().companyId("COMP001").investmentAmount(1000.0).build()))
+                        .build())
+                .toList();
+        when(companyRepository.streamCompanyScores()).thenReturn(Stream.of(company));
+        when(mongoTemplate.count(any(Query.class), eq(Portfolio.class))).thenReturn(5L);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class))).thenReturn(portfolios.stream());
+        // Пачки пишутся параллельно, поэтому у каждой своя bulk-запись со своим результатом
+        List<BulkOperations> bulks = new CopyOnWriteArrayList<>();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenAnswer(invocation -> {
+            BulkOperations bulk = matchingBulk();
+            bulks.add(bulk);
+            return bulk;
+        });
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // Act
+        boolean started = service.start(false);
+
+        // Assert
+        assertTrue(started);
+        assertEquals("COMPLETED", service.getProgress().get("status"));
+        assertEquals(5L, service.getProgress().get("processed"));
+        assertEquals(5L, service.getProgress().get("updated"));
+        assertEquals(0L, service.getProgress().get("conflicts"));
+        assertEquals("PORT004", service.getProgress().get("lastPortfolioId"));
+        verify(companyRepository, times(1)).streamCompanyScores();
+        assertEquals(3, bulks.size());
+
+        List<Update> updates = updatesOf(bulks);
+        assertEquals(5, updates.size());
+        assertNotNull(updates.get(0).getUpdateObject().get("$set", org.bson.Document.class).get("aggregateScores"));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Portfolio.class));
+
+        var checkpoints = inOrder(valueOperations);
+        checkpoints.verify(valueOperations).set(PortfolioBulkRevaluationService.CHECKPOINT_KEY, "PORT001");
+        checkpoints.verify(valueOperations).set(PortfolioBulkRevaluationService.CHECKPOINT_KEY, "PORT003");
+        checkpoints.verify(valueOperations).set(PortfolioBulkRevaluationService.CHECKPOINT_KEY, "PORT004");
+        verify(redisTemplate).delete(PortfolioBulkRevaluationService.CHECKPOINT_KEY);
+    }
+
+    @Test
+    void start_WhenPortfolioChangedAfterRead_ShouldNotOverwriteItAndCountConflict() {
+        // Arrange
+        Company company = Company.builder()
+                .companyId("COMP001")
+                .currentRating(ESGRating.builder().overallScore(80.0).carbonFootprint(50.0).socialImpactScore(70.0).build())
+                .build();
+        when(companyRepository.streamCompanyScores()).thenReturn(Stream.of(company));
+        when(mongoTemplate.count(any(Query.class), eq(Portfolio.class))).thenReturn(2L);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(Stream.of(portfolio("PORT000", 3L), portfolio("PORT001", 3L)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(bulkWriteResult);
+        // PORT001 изменили после чтения курсором, а затем еще раз после повторного чтения
+        when(bulkWriteResult.getMatchedCount()).thenReturn(1, 0);
+        when(bulkWriteResult.getModifiedCount()).thenReturn(1, 0);
+        when(mongoTemplate.find(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(List.of(portfolio("PORT000", 4L), portfolio("PORT001", 5L)))
+                .thenReturn(List.of(portfolio("PORT001", 5L)))
+                .thenReturn(List.of(portfolio("PORT001", 7L)));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // Act
+        service.start(false);
+
+        // Assert
+        assertEquals("COMPLETED", service.getProgress().get("status"));
+        assertEquals(2L, service.getProgress().get("processed"));
+        assertEquals(1L, service.getProgress().get("updated"));
+        assertEquals(1L, service.getProgress().get("conflicts"));
+
+        ArgumentCaptor<Query> target = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations, times(3)).updateOne(target.capture(), any(Update.class));
+        assertEquals(3L, target.getAllValues().get(1).getQueryObject().get("version"));
+        assertEquals(5L, target.getAllValues().get(2).getQueryObject().get("version"));
+        verify(clientExposureService, never()).applyAll(any());
+        verify(clientExposureService, times(2)).invalidate(List.of("CLIENT001"));
+    }
+
+    @Test
+    void start_WhenRatingEventArrivesDuringRun_ShouldScoreLaterBatchesWithCurrentRating() {
+        // Arrange
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        when(companyRepository.streamCompanyScores()).thenReturn(Stream.of(company(80.0)));
+        when(companyRepository.findByCompanyIdIn(List.of("COMP001"))).thenReturn(List.of(company(40.0)));
+        when(mongoTemplate.count(any(Query.class), eq(Portfolio.class))).thenReturn(4L);
+        // Рейтинг меняется, пока курсор читает третий портфель
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class))).thenReturn(IntStream.range(0, 4)
+                .mapToObj(i -> portfolio("PORT00" + i, 1L))
+                .peek(portfolio -> {
+                    if (portfolio.getPortfolioId().equals("PORT002")) {
+                        service.onRatingUpdated(new RatingUpdatedEvent(this, "COMP001", null, null));
+                    }
+                }));
+        List<BulkOperations> bulks = new CopyOnWriteArrayList<>();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenAnswer(invocation -> {
+            BulkOperations bulk = matchingBulk();
+            bulks.add(bulk);
+            return bulk;
+        });
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // Act
+        service.start(false);
+
+        // Assert
+        List<Update> updates = updatesOf(bulks);
+        assertEquals(80.0, overallScoreOf(updates.get(0)));
+        assertEquals(40.0, overallScoreOf(updates.get(2)));
+        assertEquals(40.0, overallScoreOf(updates.get(3)));
+        verify(companyRepository, times(1)).findByCompanyIdIn(List.of("COMP001"));
+    }
+
+    @Test
+    void start_WhenRatingChangedAfterTableLoad_ShouldRevalueHoldersAgain() {
+        // Arrange
+        when(companyRepository.streamCompanyScores()).thenReturn(Stream.of(company(80.0)));
+        when(mongoTemplate.count(any(Query.class), eq(Portfolio.class))).thenReturn(1L);
+        // Компанию обновили на другом узле после загрузки таблицы: курсор уже прочитал портфель с новым баллом
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(Stream.of(portfolio("PORT000", 1L)))
+                .thenReturn(Stream.of(portfolio("PORT000", 2L)));
+        when(companyRepository.streamCompanyScoresUpdatedAfter(any(LocalDateTime.class)))
+                .thenReturn(Stream.of(company(40.0)))
+                .thenReturn(Stream.empty());
+        List<BulkOperations> bulks = new CopyOnWriteArrayList<>();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenAnswer(invocation -> {
+            BulkOperations bulk = matchingBulk();
+            bulks.add(bulk);
+            return bulk;
+        });
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // Act
+        service.start(false);
+
+        // Assert
+        assertEquals("COMPLETED", service.getProgress().get("status"));
+        assertEquals(1L, service.getProgress().get("processed"));
+        assertEquals(1L, service.getProgress().get("requeued"));
+        ArgumentCaptor<Query> holders = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).stream(holders.capture(), eq(Portfolio.class));
+        assertEquals(List.of("COMP001"), holders.getAllValues().get(1).getQueryObject()
+                .get("items.companyId", org.bson.Document.class).get("$in"));
+
+        List<Update> updates = updatesOf(bulks);
+        assertEquals(2, updates.size());
+        assertEquals(80.0, overallScoreOf(updates.get(0)));
+        assertEquals(40.0, overallScoreOf(updates.get(1)));
+        verify(companyRepository, times(2)).streamCompanyScoresUpdatedAfter(any(LocalDateTime.class));
+    }
+
+    @Test
+    void start_WithResume_ShouldContinueAfterStoredCheckpoint() {
+        // Arrange
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(PortfolioBulkRevaluationService.CHECKPOINT_KEY)).thenReturn("PORT002");
+        when(companyRepository.streamCompanyScores()).thenReturn(Stream.empty());
+        when(mongoTemplate.count(any(Query.class), eq(Portfolio.class))).thenReturn(0L);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class))).thenReturn(Stream.empty());
+
+        // Act
+        service.start(true);
+
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Portfolio.class));
+        assertEquals("PORT002", query.getValue().getQueryObject().get("portfolioId", org.bson.Document.class).get("$gt"));
+        assertEquals("PORT002", service.getProgress().get("resumedFrom"));
+    }
+
+    /** Bulk-запись, в которой каждое обновление находит свой документ */
+    private static BulkOperations matchingBulk() {
+        BulkOperations bulk = mock(BulkOperations.class);
+        AtomicInteger updates = new AtomicInteger();
+        when(bulk.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            updates.incrementAndGet();
+            return bulk;
+        });
+        when(bulk.execute()).thenAnswer(invocation ->
+                BulkWriteResult.acknowledged(0, updates.get(), 0, updates.get(), List.of()));
+        return bulk;
+    }
+
+    /** Обновления всех bulk-записей в порядке портфелей */
+    private static List<Update> updatesOf(List<BulkOperations> bulks) {
+        List<Update> updates = new ArrayList<>();
+        for (BulkOperations bulk : bulks) {
+            ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+            verify(bulk, atLeastOnce()).updateOne(any(Query.class), update.capture());
+            updates.addAll(update.getAllValues());
+        }
+        return updates;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Double overallScoreOf(Update update) {
+        List<PortfolioItem> items = (List<PortfolioItem>) update.getUpdateObject()
+                .get("$set", org.bson.Document.class).get("items");
+        return items.get(0).getCurrentRating().getOverallScore();
+    }
+
+    private static Company company(double overallScore) {
+        return Company.builder()
+                .companyId("COMP001")
+                .currentRating(ESGRating.builder().overallScore(overallScore).carbonFootprint(50.0).socialImpactScore(70.0).build())
+                .build();
+    }
+
+    private static Portfolio portfolio(String portfolioId, Long version) {
+        return Portfolio.builder()
+                .portfolioId(portfolioId)
+                .clientId("CLIENT001")
+                .version(version)
+                .items(List.of(PortfolioItem.builder().companyId("COMP001").investmentAmount(1000.0).build()))
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.PortfolioAggregateHistoryDto;
+import com.esg.dashboard.exception.PortfolioNotFoundException;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioAggregateHistory;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PortfolioHistoryServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bucketOperations;
+
+    @Mock
+    private BulkOperations valueOperations;
+
+    @Mock
+    private BulkWriteResult bulkWriteResult;
+
+    @InjectMocks
+    private PortfolioHistoryService historyService;
+
+    @Test
+    void getHistory_ShouldReadOneBucketPerMonthAndSkipDaysWithoutSnapshot() {
+        // Arrange
+        PortfolioAggregateHistory september = bucket("2026-09", 29, 70.0);
+        PortfolioAggregateHistory october = bucket("2026-10", 0, 72.5);
+        when(mongoTemplate.find(any(Query.class), eq(PortfolioAggregateHistory.class)))
+                .thenReturn(List.of(september, october));
+
+        // Act
+        PortfolioAggregateHistoryDto history = historyService.getHistory("PORT001",
+                LocalDate.of(2026, 9, 15), LocalDate.of(2026, 10, 15));
+
+        // Assert
+        assertEquals(List.of(LocalDate.of(2026, 9, 30), LocalDate.of(2026, 10, 1)), history.getDates());
+        assertArrayEquals(new double[]{70.0, 72.5}, history.getEsgScore());
+        assertArrayEquals(new int[]{3, 3}, history.getHoldings());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(query.capture(), eq(PortfolioAggregateHistory.class));
+        assertEquals(List.of("PORT001:2026-09", "PORT001:2026-10"),
+                query.getValue().getQueryObject().get("_id", Document.class).get("$in"));
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(Portfolio.class));
+    }
+
+    @Test
+    void getHistory_WhenNoBucketsAndNoPortfolio_ShouldThrowNotFound() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(PortfolioAggregateHistory.class))).thenReturn(List.of());
+        when(mongoTemplate.exists(any(Query.class), eq(Portfolio.class))).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(PortfolioNotFoundException.class, () -> historyService.getHistory("MISSING",
+                LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 31)));
+        assertThrows(IllegalArgumentException.class, () -> historyService.getHistory("PORT001",
+                LocalDate.of(2026, 2, 1), LocalDate.of(2026, 1, 1)));
+    }
+
+    @Test
+    void captureSnapshots_ShouldCreateMonthBucketAndSetDaySlot() {
+        // Arrange
+        Portfolio portfolio = Portfolio.builder()
+                .portfolioId("PORT001")
+                .aggregateScores(PortfolioAggregate.builder()
+                        .totalEsgScore(75.0)
+                        .carbonFootprint(40.0)
+                        .socialImpactScore(65.0)
+                        .totalInvestment(1000.0)
+                        .totalCompanies(2)
+                        .build())
+                .build();
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class))).thenReturn(Stream.of(portfolio));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioAggregateHistory.class))
+                .thenReturn(bucketOperations, valueOperations);
+        when(valueOperations.execute()).thenReturn(bulkWriteResult);
+        when(bulkWriteResult.getMatchedCount()).thenReturn(1);
+
+        // Act
+        long captured = historyService.captureSnapshots(LocalDate.of(2026, 10, 18));
+
+        // Assert
+        assertEquals(1, captured);
+        ArgumentCaptor<Update> bucketUpdate = ArgumentCaptor.forClass(Update.class);
+        verify(bucketOperations).upsert(any(Query.class), bucketUpdate.capture());
+        Document onInsert = bucketUpdate.getValue().getUpdateObject().get("$setOnInsert", Document.class);
+        assertEquals("2026-10", onInsert.get("month"));
+        assertEquals(PortfolioAggregateHistory.DAYS, ((List<?>) onInsert.get("esgScore")).size());
+
+        ArgumentCaptor<Update> valueUpdate = ArgumentCaptor.forClass(Update.class);
+        verify(valueOperations).updateOne(any(Query.class), valueUpdate.capture());
+        Document set = valueUpdate.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(75.0, set.get("esgScore.17"));
+        assertEquals(2, set.get("holdings.17"));
+
+        var order = inOrder(bucketOperations, valueOperations);
+        order.verify(bucketOperations).execute();
+        order.verify(valueOperations).execute();
+    }
+
+    private static PortfolioAggregateHistory bucket(String month, int slot, double esgScore) {
+        double[] esg = new double[PortfolioAggregateHistory.DAYS];
+        Arrays.fill(esg, Double.NaN);
+        esg[slot] = esgScore;
+        int[] holdings = new int[PortfolioAggregateHistory.DAYS];
+        Arrays.fill(holdings, PortfolioAggregateHistory.NO_SNAPSHOT);
+        holdings[slot] = 3;
+        return PortfolioAggregateHistory.builder()
+                .id("PORT001:" + month)
+                .portfolioId("PORT001")
+                .month(month)
+                .esgScore(esg)
+                .carbonFootprint(esg.clone())
+                .socialImpactScore(esg.clone())
+                .totalInvestment(esg.clone())
+                .holdings(holdings)
+                .build();
+    }
+}
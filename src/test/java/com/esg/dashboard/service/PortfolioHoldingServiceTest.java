@@ -0,0 +1,157 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.PortfolioHoldingResult;
+import com.esg.dashboard.exception.DataValidationException;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PortfolioHoldingServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private CompanyService companyService;
+
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
+    @Mock
+    private ClientExposureService clientExposureService;
+
+    @InjectMocks
+    private PortfolioHoldingService holdingService;
+
+    @Test
+    void addHolding_ShouldPushItemAndReweightAggregates() {
+        // Arrange
+        when(mongoTemplate.findOne(any(Query.class), eq(Portfolio.class))).thenReturn(header(List.of()));
+        when(companyService.batchLoadCompanies(List.of("COMP002"))).thenReturn(Map.of("COMP002", Company.builder()
+                .companyId("COMP002")
+                .name("New Company")
+                .currentRating(rating(90.0, 10.0, 80.0))
+                .build()));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Portfolio.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act
+        PortfolioHoldingResult result = holdingService.addHolding("PORT001", "COMP002", 1000.0, 3L);
+
+        // Assert
+        // (60 * 3000 + 90 * 1000) / 4000
+        assertEquals(67.5, result.getAggregateScores().getTotalEsgScore());
+        assertEquals(4000.0, result.getAggregateScores().getTotalInvestment());
+        assertEquals(3, result.getAggregateScores().getTotalCompanies());
+        assertEquals(0.25, result.getHolding().getWeight());
+        assertEquals(4L, result.getVersion());
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Portfolio.class));
+        Document updateObject = update.getValue().getUpdateObject();
+        assertTrue(updateObject.containsKey("$push"));
+        assertEquals(1, ((Document) updateObject.get("$inc")).get("version"));
+        verify(portfolioCacheService).evictPortfolio("PORT001");
+    }
+
+    @Test
+    void removeHolding_ShouldPullItemAndBackOutItsScore() {
+        // Arrange
+        PortfolioItem held = PortfolioItem.builder()
+                .companyId("COMP001")
+                .investmentAmount(1000.0)
+                .currentRating(rating(80.0, 50.0, 70.0))
+                .build();
+        when(mongoTemplate.findOne(any(Query.class), eq(Portfolio.class))).thenReturn(header(List.of(held)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Portfolio.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act
+        PortfolioHoldingResult result = holdingService.removeHolding("PORT001", "COMP001", null);
+
+        // Assert
+        // (60 * 3000 - 80 * 1000) / 2000
+        assertEquals(50.0, result.getAggregateScores().getTotalEsgScore());
+        assertEquals(2000.0, result.getAggregateScores().getTotalInvestment());
+        assertEquals(1, result.getAggregateScores().getTotalCompanies());
+        assertNull(result.getHolding());
+    }
+
+    @Test
+    void adjustHolding_WhenVersionChanged_ShouldRejectWithoutWriting() {
+        // Arrange
+        when(mongoTemplate.findOne(any(Query.class), eq(Portfolio.class))).thenReturn(header(List.of()));
+
+        // Act & Assert
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> holdingService.adjustHolding("PORT001", "COMP001", 500.0, 2L));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Portfolio.class));
+    }
+
+    @Test
+    void adjustHolding_WhenConcurrentWriteWins_ShouldFailWithConflict() {
+        // Arrange
+        PortfolioItem held = PortfolioItem.builder().companyId("COMP001").investmentAmount(1000.0).build();
+        when(mongoTemplate.findOne(any(Query.class), eq(Portfolio.class))).thenReturn(header(List.of(held)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Portfolio.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // Act & Assert
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> holdingService.adjustHolding("PORT001", "COMP001", 500.0, null));
+        verify(clientExposureService, never()).apply(any());
+    }
+
+    @Test
+    void addHolding_WhenAlreadyHeld_ShouldReject() {
+        // Arrange
+        PortfolioItem held = PortfolioItem.builder().companyId("COMP001").investmentAmount(1000.0).build();
+        when(mongoTemplate.findOne(any(Query.class), eq(Portfolio.class))).thenReturn(header(List.of(held)));
+
+        // Act & Assert
+        assertThrows(DataValidationException.class,
+                () -> holdingService.addHolding("PORT001", "COMP001", 500.0, null));
+    }
+
+    private static Portfolio header(List<PortfolioItem> matchedItems) {
+        return Portfolio.builder()
+                .portfolioId("PORT001")
+                .version(3L)
+                .items(matchedItems)
+                .aggregateScores(PortfolioAggregate.builder()
+                        .totalEsgScore(60.0)
+                        .carbonFootprint(40.0)
+                        .socialImpactScore(50.0)
+                        .totalCompanies(2)
+                        .totalInvestment(3000.0)
+                        .build())
+                .build();
+    }
+
+    private static ESGRating rating(double overall, double carbon, double social) {
+        return ESGRating.builder().overallScore(overall).carbonFootprint(carbon).socialImpactScore(social).build();
+    }
+}
@@ -0,0 +1,262 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.event.RatingUpdatedEvent;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioAggregate;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.repository.CompanyRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PortfolioRevaluationServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private CompanyRepository companyRepository;
+
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
+    @Mock
+    private ClientExposureService clientExposureService;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private BulkWriteResult bulkWriteResult;
+
+    @InjectMocks
+    private PortfolioRevaluationService revaluationService;
+
+    @Test
+    void revalue_ShouldApplyWeightedDeltaToHoldingPortfolios() {
+        // Arrange
+        Portfolio holder = Portfolio.builder()
+                .portfolioId("PORT001")
+                .clientId("CLIENT001")
+                .version(3L)
+                .aggregateScores(PortfolioAggregate.builder().totalEsgScore(70.0).totalInvestment(2000.0).build())
+                .items(List.of(PortfolioItem.builder()
+                        .companyId("COMP001")
+                        .investmentAmount(1000.0)
+                        .weight(0.5)
+                        .currentRating(ESGRating.builder().overallScore(60.0).carbonFootprint(100.0).socialImpactScore(50.0).build())
+                        .build()))
+                .build();
+        ESGRating newRating = ESGRating.builder().overallScore(80.0).carbonFootprint(90.0).socialImpactScore(70.0).build();
+
+        givenCurrentRating(newRating);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class))).thenReturn(Stream.of(holder));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(bulkWriteResult);
+        when(bulkWriteResult.getMatchedCount()).thenReturn(1);
+
+        // Act
+        int updated = revaluationService.revalue("COMP001");
+
+        // Assert
+        assertEquals(1, updated);
+        ArgumentCaptor<Query> target = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).updateOne(target.capture(), update.capture());
+        assertEquals(3L, target.getValue().getQueryObject().get("version"));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(80.0, (Double) set.get("aggregateScores.totalEsgScore"), 0.0001);
+        assertEquals(-5.0, (Double) set.get("aggregateScores.carbonFootprint"), 0.0001);
+        assertEquals(10.0, (Double) set.get("aggregateScores.socialImpactScore"), 0.0001);
+        assertEquals("AA", set.get("aggregateScores.averageRating"));
+        assertNull(update.getValue().getUpdateObject().get("$inc", Document.class).get("aggregateScores.totalEsgScore"));
+        verify(portfolioCacheService).evictPortfolios(List.of("PORT001"));
+
+        // В экспозицию клиента попадает дельта балла, умноженная на сумму портфеля
+        ArgumentCaptor<List<ClientExposureService.Delta>> exposure = ArgumentCaptor.forClass(List.class);
+        verify(clientExposureService).applyAll(exposure.capture());
+        Document exposureSet = exposureSums(exposure.getValue().get(0));
+        assertEquals(20000.0, (Double) change(exposureSet, "esgScoreSum"), 0.0001);
+        assertEquals(0.0, (Double) change(exposureSet, "totalInvestment"), 0.0001);
+    }
+
+    @Test
+    void revalue_ShouldStoreAggregatesRoundedToTwoDecimals() {
+        // Arrange
+        Portfolio holder = Portfolio.builder()
+                .portfolioId("PORT001")
+                .clientId("CLIENT001")
+                .aggregateScores(PortfolioAggregate.builder()
+                        .totalEsgScore(70.12).carbonFootprint(40.0).socialImpactScore(50.0).totalInvestment(3000.0).build())
+                .items(List.of(PortfolioItem.builder()
+                        .companyId("COMP001")
+                        .investmentAmount(1000.0)
+                        .weight(1.0 / 3)
+                        .currentRating(ESGRating.builder().overallScore(60.0).carbonFootprint(30.0).socialImpactScore(50.0).build())
+                        .build()))
+                .build();
+        givenCurrentRating(ESGRating.builder().overallScore(61.0).carbonFootprint(31.0).socialImpactScore(51.0).build());
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class))).thenReturn(Stream.of(holder));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(bulkWriteResult);
+        when(bulkWriteResult.getMatchedCount()).thenReturn(1);
+
+        // Act
+        revaluationService.revalue("COMP001");
+
+        // Assert
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).updateOne(any(Query.class), update.capture());
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(70.45, set.get("aggregateScores.totalEsgScore"));
+        assertEquals(40.33, set.get("aggregateScores.carbonFootprint"));
+        assertEquals(50.33, set.get("aggregateScores.socialImpactScore"));
+
+        // Экспозиция сдвигается на записанное изменение, а не на точную дельту
+        ArgumentCaptor<List<ClientExposureService.Delta>> exposure = ArgumentCaptor.forClass(List.class);
+        verify(clientExposureService).applyAll(exposure.capture());
+        assertEquals(990.0, (Double) change(exposureSums(exposure.getValue().get(0)), "esgScoreSum"), 0.0001);
+    }
+
+    @Test
+    void revalue_WhenPortfolioChangedConcurrently_ShouldInvalidateExposureAndRetryFromFreshRead() {
+        // Arrange
+        givenCurrentRating(ESGRating.builder().overallScore(80.0).build());
+        // Между чтением и записью портфель изменили (adjustHolding), запись отсеяна проверкой версии
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(Stream.of(holder(1L, 60.0)))
+                .thenReturn(Stream.of(holder(2L, 60.0)))
+                .thenReturn(Stream.empty());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(bulkWriteResult);
+        when(bulkWriteResult.getMatchedCount()).thenReturn(0, 1);
+
+        // Act
+        int updated = revaluationService.revalue("COMP001");
+
+        // Assert
+        assertEquals(1, updated);
+        verify(clientExposureService).invalidate(List.of("CLIENT001"));
+        verify(clientExposureService).applyAll(any());
+        ArgumentCaptor<Query> target = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations, times(2)).updateOne(target.capture(), any(Update.class));
+        assertEquals(1L, target.getAllValues().get(0).getQueryObject().get("version"));
+        assertEquals(2L, target.getAllValues().get(1).getQueryObject().get("version"));
+    }
+
+    @Test
+    void revalue_WithOverlappingEvents_ShouldLeavePortfoliosOnLatestRating() {
+        // Arrange
+        ESGRating first = ESGRating.builder().overallScore(70.0).build();
+        ESGRating second = ESGRating.builder().overallScore(90.0).build();
+        // Обработчик первого события читает рейтинг до второго изменения, а проверяет уже после него;
+        // обработчик второго события запускается, когда портфели уже переоценены
+        givenCurrentRating(first, second, second, second);
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class)))
+                .thenReturn(Stream.of(holder(1L, 60.0)))
+                .thenReturn(Stream.of(holder(2L, 70.0)))
+                .thenReturn(Stream.empty());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(bulkWriteResult);
+        when(bulkWriteResult.getMatchedCount()).thenReturn(1);
+
+        // Act
+        revaluationService.onRatingUpdated(new RatingUpdatedEvent(this, "COMP001", null, first));
+        revaluationService.onRatingUpdated(new RatingUpdatedEvent(this, "COMP001", first, second));
+
+        // Assert
+        ArgumentCaptor<Query> holders = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).stream(holders.capture(), eq(Portfolio.class));
+        // Повторные проходы выбирают только позиции, которые еще не несут текущий рейтинг
+        assertTrue(holders.getAllValues().get(1).getQueryObject().toJson().contains("90.0"));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), update.capture());
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(second, set.get("items.$[holding].currentRating"));
+        assertEquals(90.0, (Double) set.get("aggregateScores.totalEsgScore"), 0.0001);
+    }
+
+    @Test
+    void revalue_ShouldSkipPortfoliosThatWereNeverScored() {
+        // Arrange
+        Portfolio unscored = Portfolio.builder()
+                .portfolioId("PORT002")
+                .items(List.of(PortfolioItem.builder().companyId("COMP001").build()))
+                .build();
+        givenCurrentRating(ESGRating.builder().overallScore(80.0).build());
+        when(mongoTemplate.stream(any(Query.class), eq(Portfolio.class))).thenReturn(Stream.of(unscored));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenReturn(bulkOperations);
+
+        // Act
+        int updated = revaluationService.revalue("COMP001");
+
+        // Assert
+        assertEquals(0, updated);
+        verify(bulkOperations, never()).updateOne(any(Query.class), any(Update.class));
+        verify(bulkOperations, never()).execute();
+    }
+
+    private void givenCurrentRating(ESGRating rating, ESGRating... next) {
+        when(companyRepository.findByCompanyId("COMP001")).thenReturn(Optional.of(company(rating)),
+                java.util.Arrays.stream(next).map(r -> Optional.of(company(r))).toArray(Optional[]::new));
+    }
+
+    private static Company company(ESGRating rating) {
+        return Company.builder().companyId("COMP001").currentRating(rating).build();
+    }
+
+    /** Портфель целиком в одной компании с заданной версией и баллом позиции */
+    private static Portfolio holder(Long version, double overallScore) {
+        return Portfolio.builder()
+                .portfolioId("PORT001")
+                .clientId("CLIENT001")
+                .version(version)
+                .aggregateScores(PortfolioAggregate.builder().totalEsgScore(overallScore).totalInvestment(1000.0).build())
+                .items(List.of(PortfolioItem.builder()
+                        .companyId("COMP001")
+                        .investmentAmount(1000.0)
+                        .weight(1.0)
+                        .currentRating(ESGRating.builder().overallScore(overallScore).build())
+                        .build()))
+                .build();
+    }
+
+    private static Document exposureSums(ClientExposureService.Delta delta) {
+        List<Document> pipeline = delta.toUpdate(LocalDateTime.now()).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        return pipeline.stream()
+                .map(stage -> stage.get("$set", Document.class))
+                .filter(set -> set != null && set.containsKey("esgScoreSum"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /** Слагаемое из {$cond: [применима, {$add: [{$ifNull: [поле, 0]}, изменение]}, поле]} */
+    private static Object change(Document set, String field) {
+        Document applied = (Document) ((List<?>) set.get(field, Document.class).get("$cond")).get(1);
+        return ((List<?>) applied.get("$add")).get(1);
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -16,6 +17,8 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -28,33 +31,84 @@ class PortfolioServicePaginationTest {
     @Mock
     private CompanyService companyService;
 
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ClientExposureService clientExposureService;
+
     private PortfolioService portfolioService;
 
     @BeforeEach
     void setUp() {
-        portfolioService = new PortfolioService(portfolioRepository, companyService);
+        portfolioService = new PortfolioService(portfolioRepository, companyService, portfolioCacheService, mongoTemplate,
+                clientExposureService);
     }
 
     @Test
     void testFindByClientIdWithPagination() {
         String clientId = "CLIENT001";
         Pageable pageable = PageRequest.of(0, 10);
+        List<Portfolio> ids = new ArrayList<>();
         List<Portfolio> portfolios = new ArrayList<>();
-        for (int i = 0; i < 10; i++) {
+        for (int i = 0; i < 50; i++) {
             Portfolio portfolio = new Portfolio();
-            portfolio.setPortfolioId("PORT" + i);
+            portfolio.setPortfolioId(String.format("PORT%02d", i));
             portfolio.setClientId(clientId);
-            portfolios.add(portfolio);
+            ids.add(Portfolio.builder().portfolioId(portfolio.getPortfolioId()).build());
+            if (i < 10) {
+                portfolios.add(portfolio);
+            }
         }
-        Page<Portfolio> page = new org.springframework.data.domain.PageImpl<>(portfolios, pageable, 50);
 
-        when(portfolioRepository.findByClientId(clientId, pageable)).thenReturn(page);
+        when(portfolioCacheService.getClientPortfolioIds(clientId)).thenReturn(null);
+        when(portfolioRepository.findPortfolioIdsByClientId(clientId)).thenReturn(ids);
+        when(portfolioRepository.findByPortfolioIdIn(anyList())).thenReturn(portfolios);
 
         Page<Portfolio> result = portfolioService.findByClientId(clientId, pageable);
 
         assertNotNull(result);
         assertEquals(10, result.getContent().size());
         assertEquals(50, result.getTotalElements());
+        assertEquals("PORT00", result.getContent().get(0).getPortfolioId());
+        verify(portfolioCacheService).cacheClientPortfolioIds(eq(clientId), argThat(cached -> cached.size() == 50));
+        verify(portfolioCacheService).cachePortfolios(portfolios);
+        verify(portfolioRepository, never()).findByClientId(clientId, pageable);
+    }
+
+    @Test
+    void testFindByClientIdWithPaginationServedFromCache() {
+        String clientId = "CLIENT001";
+        Pageable pageable = PageRequest.of(1, 2);
+        Portfolio third = Portfolio.builder().portfolioId("PORT03").clientId(clientId).build();
+        Portfolio fourth = Portfolio.builder().portfolioId("PORT04").clientId(clientId).build();
+
+        when(portfolioCacheService.getClientPortfolioIds(clientId))
+                .thenReturn(List.of("PORT01", "PORT02", "PORT03", "PORT04", "PORT05"));
+        when(portfolioCacheService.getCachedPortfolios(List.of("PORT03", "PORT04")))
+                .thenReturn(java.util.Map.of("PORT03", third, "PORT04", fourth));
+
+        Page<Portfolio> result = portfolioService.findByClientId(clientId, pageable);
+
+        assertEquals(List.of(third, fourth), result.getContent());
+        assertEquals(5, result.getTotalElements());
+        verifyNoInteractions(portfolioRepository);
+    }
+
+    @Test
+    void testFindByClientIdWithSortGoesToDatabase() {
+        String clientId = "CLIENT001";
+        Pageable pageable = PageRequest.of(0, 10, org.springframework.data.domain.Sort.by("portfolioName"));
+        Page<Portfolio> page = new org.springframework.data.domain.PageImpl<>(List.of(), pageable, 0);
+
+        when(portfolioRepository.findByClientId(clientId, pageable)).thenReturn(page);
+
+        Page<Portfolio> result = portfolioService.findByClientId(clientId, pageable);
+
+        assertSame(page, result);
         verify(portfolioRepository).findByClientId(clientId, pageable);
     }
 }
@@ -1,17 +1,31 @@
 package com.esg.dashboard.service;
 
+import com.esg.dashboard.dto.PortfolioBulkCreateResult;
 import com.esg.dashboard.model.Company;
 import com.esg.dashboard.model.ESGRating;
 import com.esg.dashboard.model.Portfolio;
 import com.esg.dashboard.model.PortfolioItem;
 import com.esg.dashboard.repository.PortfolioRepository;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +33,9 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +47,15 @@ class PortfolioServiceTest {
     @Mock
     private CompanyService companyService;
 
+    @Mock
+    private PortfolioCacheService portfolioCacheService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ClientExposureService clientExposureService;
+
     private PortfolioService portfolioService;
 
     private Portfolio testPortfolio;
@@ -37,7 +63,8 @@ class PortfolioServiceTest {
 
     @BeforeEach
     void setUp() {
-        portfolioService = new PortfolioService(portfolioRepository, companyService);
+        portfolioService = new PortfolioService(portfolioRepository, companyService, portfolioCacheService, mongoTemplate,
+                clientExposureService);
 
         ESGRating rating = ESGRating.builder()
                 .overallScore(85.5)
@@ -95,6 +122,28 @@ class PortfolioServiceTest {
         verify(portfolioRepository, times(1)).save(any(Portfolio.class));
     }
 
+    @Test
+    void searchByName_ShouldUseTrigramIndexForSubstringAndPrefixForShortQueries() {
+        // Arrange
+        when(portfolioRepository.findByClientIdAndNameGrams(eq("CLIENT001"), anyList(), anyString(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(testPortfolio)));
+        when(portfolioRepository.findByClientIdAndNamePrefix(eq("CLIENT001"), anyString(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        // Act
+        Page<Portfolio> substring = portfolioService.searchByName("CLIENT001", "  Green.Fund ", PageRequest.of(0, 20));
+        portfolioService.searchByName("CLIENT001", "Gr", PageRequest.of(0, 20));
+
+        // Assert
+        assertEquals(1, substring.getTotalElements());
+        verify(portfolioRepository).findByClientIdAndNameGrams(eq("CLIENT001"),
+                eq(List.of("gre", "ree", "een", "en.", "n.f", ".fu", "fun", "und")), eq("green\\.fund"),
+                eq(PageRequest.of(0, 20, Sort.by("portfolioNameNormalized"))));
+        verify(portfolioRepository).findByClientIdAndNamePrefix(eq("CLIENT001"), eq("^gr"), any(Pageable.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> portfolioService.searchByName("CLIENT001", "   ", PageRequest.of(0, 20)));
+    }
+
     @Test
     void createPortfolio_WithZeroInvestment_ShouldHandleGracefully() {
         // Arrange
@@ -156,4 +205,72 @@ class PortfolioServiceTest {
         assertTrue(result.isPresent());
         assertEquals("PORT001", result.get().getPortfolioId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findByPortfolioId_WhenCached_ShouldNotQueryDatabase() {
+        // Arrange
+        when(portfolioCacheService.getCachedPortfolio("PORT001")).thenReturn(testPortfolio);
+
+        // Act
+        Optional<Portfolio> result = portfolioService.findByPortfolioId("PORT001");
+
+        // Assert
+        assertTrue(result.isPresent());
+        verify(portfolioRepository, never()).findByPortfolioId(anyString());
+    }
+
+    @Test
+    void deletePortfolio_ShouldEvictPortfolioAndClientList() {
+        // Arrange
+        when(portfolioRepository.findByPortfolioId("PORT001")).thenReturn(Optional.of(testPortfolio));
+
+        // Act
+        portfolioService.deletePortfolio("PORT001");
+
+        // Assert
+        verify(portfolioRepository).delete(testPortfolio);
+        verify(portfolioCacheService).evictPortfolio("PORT001");
+        verify(portfolioCacheService).evictClient("CLIENT001");
+        verify(clientExposureService).apply(any(ClientExposureService.Delta.class));
+    }
+
+    @Test
+    void createPortfolios_ShouldLoadCompaniesOnceAndReportEachItem() {
+        // Arrange
+        Portfolio first = Portfolio.builder().portfolioId("PORT010").clientId("CLIENT001")
+                .items(List.of(PortfolioItem.builder().companyId("COMP001").investmentAmount(1000.0).build())).build();
+        Portfolio invalid = Portfolio.builder().clientId("CLIENT001").build();
+        Portfolio existing = Portfolio.builder().portfolioId("PORT011").clientId("CLIENT002")
+                .items(List.of(PortfolioItem.builder().companyId("COMP001").investmentAmount(500.0).build())).build();
+
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        BulkOperationException duplicate = mock(BulkOperationException.class);
+        when(duplicate.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Portfolio.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(duplicate);
+        when(companyService.batchLoadCompanies(List.of("COMP001"))).thenReturn(Map.of("COMP001", testCompany));
+
+        // Act
+        PortfolioBulkCreateResult result = portfolioService.createPortfolios(List.of(first, invalid, existing));
+
+        // Assert
+        assertEquals(3, result.getRequested());
+        assertEquals(1, result.getCreated());
+        assertEquals(2, result.getFailed());
+        assertEquals(PortfolioBulkCreateResult.Status.CREATED, result.getItems().get(0).getStatus());
+        assertEquals(PortfolioBulkCreateResult.Status.INVALID, result.getItems().get(1).getStatus());
+        assertEquals(PortfolioBulkCreateResult.Status.DUPLICATE, result.getItems().get(2).getStatus());
+        assertEquals(85.5, first.getAggregateScores().getTotalEsgScore());
+        verify(companyService, times(1)).batchLoadCompanies(anyList());
+        verify(portfolioRepository, never()).save(any(Portfolio.class));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Portfolio>> cached = ArgumentCaptor.forClass(Collection.class);
+        verify(portfolioCacheService).cachePortfolios(cached.capture());
+        assertEquals(List.of(first), cached.getValue());
+        // Кэшируется портфель с тем же _id, что записан в базу
+        assertTrue(ObjectId.isValid(cached.getValue().iterator().next().getId()));
+        assertNotEquals(first.getId(), existing.getId());
+        verify(portfolioCacheService).evictClient("CLIENT001");
+    }
+}
@@ -0,0 +1,113 @@
+package com.esg.dashboard.service;
+
+import com.esg.dashboard.dto.PortfolioSimulationRequest;
+import com.esg.dashboard.dto.PortfolioSimulationRequest.Adjustment;
+import com.esg.dashboard.dto.PortfolioSimulationRequest.AdjustmentType;
+import com.esg.dashboard.dto.PortfolioSimulationRequest.Scenario;
+import com.esg.dashboard.dto.PortfolioSimulationResult;
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import com.esg.dashboard.model.Portfolio;
+import com.esg.dashboard.model.PortfolioItem;
+import com.esg.dashboard.service.scoring.CompanyScoreSnapshot;
+import com.esg.dashboard.service.scoring.CompanyScoreTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PortfolioSimulationServiceTest {
+
+    @Mock
+    private PortfolioService portfolioService;
+
+    @Mock
+    private CompanyScoreSnapshot scoreSnapshot;
+
+    @InjectMocks
+    private PortfolioSimulationService simulationService;
+
+    private Portfolio portfolio;
+
+    @BeforeEach
+    void setUp() {
+        portfolio = Portfolio.builder()
+                .portfolioId("PORT001")
+                .items(List.of(item("TECH001", 600.0), item("TECH002", 200.0), item("ENERGY001", 200.0)))
+                .build();
+    }
+
+    @Test
+    void simulate_ShouldEvaluateScenariosWithoutTouchingPortfolio() {
+        // Arrange
+        when(scoreSnapshot.current()).thenReturn(CompanyScoreTable.of(List.of(
+                company("TECH001", "Technology", 60.0),
+                company("TECH002", "Technology", 70.0),
+                company("ENERGY001", "Energy", 90.0))));
+        when(portfolioService.findByPortfolioId("PORT001")).thenReturn(Optional.of(portfolio));
+        PortfolioSimulationRequest request = PortfolioSimulationRequest.builder()
+                .scenarios(List.of(
+                        scenario("swap", Adjustment.builder().type(AdjustmentType.SWAP)
+                                .fromCompanyId("TECH001").toCompanyId("ENERGY001").build()),
+                        scenario("cap", Adjustment.builder().type(AdjustmentType.SECTOR_CAP)
+                                .sector("Technology").maxWeight(0.5).build()),
+                        scenario("broken", Adjustment.builder().type(AdjustmentType.SWAP)
+                                .fromCompanyId("UNKNOWN").toCompanyId("TECH002").build())))
+                .build();
+
+        // Act
+        PortfolioSimulationResult result = simulationService.simulate("PORT001", request).orElseThrow();
+
+        // Assert
+        // 0.6 * 60 + 0.2 * 70 + 0.2 * 90
+        assertEquals(68.0, result.getBaseline().getTotalEsgScore());
+        // 0.8 * 90 + 0.2 * 70
+        assertEquals(86.0, result.getScenarios().get(0).getAggregate().getTotalEsgScore());
+        assertEquals(18.0, result.getScenarios().get(0).getEsgScoreDelta());
+        // Technology 0.8 -> 0.5: 0.375 * 60 + 0.125 * 70 + 0.5 * 90
+        assertEquals(76.25, result.getScenarios().get(1).getAggregate().getTotalEsgScore());
+        assertEquals(1000.0, result.getScenarios().get(1).getAggregate().getTotalInvestment());
+        assertNotNull(result.getScenarios().get(2).getError());
+        assertNull(result.getScenarios().get(2).getAggregate());
+        assertEquals(600.0, portfolio.getItems().get(0).getInvestmentAmount());
+        verify(portfolioService, never()).updatePortfolio(anyString(), any(Portfolio.class));
+    }
+
+    @Test
+    void simulate_ShouldRejectTooManyScenarios() {
+        // Arrange
+        PortfolioSimulationRequest request = PortfolioSimulationRequest.builder()
+                .scenarios(java.util.Collections.nCopies(501, scenario("swap", Adjustment.builder()
+                        .type(AdjustmentType.SWAP).fromCompanyId("TECH001").toCompanyId("TECH002").build())))
+                .build();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> simulationService.simulate("PORT001", request));
+    }
+
+    private static Scenario scenario(String name, Adjustment adjustment) {
+        return Scenario.builder().name(name).adjustments(List.of(adjustment)).build();
+    }
+
+    private static PortfolioItem item(String companyId, double amount) {
+        return PortfolioItem.builder().companyId(companyId).investmentAmount(amount).build();
+    }
+
+    private static Company company(String companyId, String sector, double score) {
+        return Company.builder()
+                .companyId(companyId)
+                .name(companyId)
+                .sector(sector)
+                .currentRating(ESGRating.builder().overallScore(score).carbonFootprint(10.0).socialImpactScore(50.0).build())
+                .build();
+    }
+}
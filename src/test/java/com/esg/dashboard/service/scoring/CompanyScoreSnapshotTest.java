@@ -0,0 +1,72 @@
+package com.esg.dashboard.service.scoring;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.repository.CompanyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CompanyScoreSnapshotTest {
+
+    @Mock
+    private CompanyRepository companyRepository;
+
+    @Mock
+    private RedisMessageListenerContainer redisContainer;
+
+    private CompanyScoreSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new CompanyScoreSnapshot(companyRepository, redisContainer);
+    }
+
+    @Test
+    void onMessage_FromAnotherNode_ShouldReloadOnNextRefresh() {
+        // Arrange
+        when(companyRepository.streamCompanyScores())
+                .thenReturn(Stream.of(company("COMP001")))
+                .thenReturn(Stream.of(company("COMP001"), company("COMP002")));
+        assertEquals(CompanyScoreTable.UNKNOWN, snapshot.current().indexOf("COMP002"));
+
+        // Act
+        snapshot.refreshIfStale();
+        snapshot.onMessage(new DefaultMessage(new byte[0], new byte[0]), null);
+        snapshot.refreshIfStale();
+
+        // Assert
+        assertNotEquals(CompanyScoreTable.UNKNOWN, snapshot.current().indexOf("COMP002"));
+        verify(companyRepository, times(2)).streamCompanyScores();
+    }
+
+    @Test
+    void refreshIfStale_WhenSnapshotOlderThanMaxAge_ShouldReloadWithoutNotification() {
+        // Arrange
+        ReflectionTestUtils.setField(snapshot, "maxAgeMs", 0L);
+        when(companyRepository.streamCompanyScores())
+                .thenReturn(Stream.of(company("COMP001")))
+                .thenReturn(Stream.of(company("COMP001"), company("COMP002")));
+        snapshot.current();
+
+        // Act
+        snapshot.refreshIfStale();
+
+        // Assert
+        assertEquals(2, snapshot.current().size());
+    }
+
+    private static Company company(String companyId) {
+        return Company.builder().companyId(companyId).build();
+    }
+}
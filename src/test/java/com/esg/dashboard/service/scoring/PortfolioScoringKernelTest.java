@@ -0,0 +1,72 @@
+package com.esg.dashboard.service.scoring;
+
+import com.esg.dashboard.model.Company;
+import com.esg.dashboard.model.ESGRating;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PortfolioScoringKernelTest {
+
+    @Test
+    void score_ShouldWeightScoresByInvestmentAndSkipUnknownCompanies() {
+        // Arrange
+        CompanyScoreTable table = CompanyScoreTable.of(List.of(
+                company("COMP001", 80.0, 100.0, 60.0),
+                company("COMP002", 60.0, null, 40.0)));
+        int[] rows = {table.indexOf("COMP001"), table.indexOf("COMP002"), table.indexOf("MISSING")};
+        double[] amounts = {300.0, 100.0, 100.0};
+        double[] weights = new double[3];
+        double[] result = new double[PortfolioScoringKernel.RESULT_WIDTH];
+
+        // Act
+        int holdings = PortfolioScoringKernel.score(table, rows, amounts, 3, weights, result);
+
+        // Assert
+        assertEquals(2, holdings);
+        assertEquals(CompanyScoreTable.UNKNOWN, rows[2]);
+        assertEquals(500.0, result[PortfolioScoringKernel.INVESTMENT]);
+        assertEquals(80.0 * (300.0 / 500.0) + 60.0 * (100.0 / 500.0), result[PortfolioScoringKernel.ESG]);
+        assertEquals(100.0 * (300.0 / 500.0), result[PortfolioScoringKernel.CARBON]);
+        assertEquals(0.6, weights[0]);
+        assertTrue(Double.isNaN(weights[2]));
+    }
+
+    @Test
+    void score_ShouldReturnZeroHoldingsWhenNothingIsInvested() {
+        // Arrange
+        CompanyScoreTable table = CompanyScoreTable.of(List.of(company("COMP001", 80.0, 100.0, 60.0)));
+        double[] result = new double[PortfolioScoringKernel.RESULT_WIDTH];
+
+        // Act
+        int holdings = PortfolioScoringKernel.score(table, new int[]{0}, new double[]{Double.NaN}, 1, null, result);
+
+        // Assert
+        assertEquals(0, holdings);
+        assertEquals(0.0, result[PortfolioScoringKernel.INVESTMENT]);
+    }
+
+    @Test
+    void round2_ShouldMatchPowBasedRounding() {
+        double[] samples = {0.0, 1.005, 2.675, 73.456789, 99.995, 1234567.891, 0.125};
+        for (double sample : samples) {
+            long factor = (long) Math.pow(10, 2);
+            double expected = (double) Math.round(sample * factor) / factor;
+            assertEquals(expected, PortfolioScoringKernel.round2(sample));
+        }
+    }
+
+    private static Company company(String companyId, Double overall, Double carbon, Double social) {
+        return Company.builder()
+                .companyId(companyId)
+                .name(companyId)
+                .currentRating(ESGRating.builder()
+                        .overallScore(overall)
+                        .carbonFootprint(carbon)
+                        .socialImpactScore(social)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.esg.dashboard.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTextUtilsTest {
+
+    @Test
+    void normalize_ShouldLowercaseAndCollapseWhitespace() {
+        assertEquals("green energy fund", SearchTextUtils.normalize("  Green   ENERGY\tFund "));
+        assertEquals("fund", SearchTextUtils.normalize("ＦＵＮＤ"));
+        assertNull(SearchTextUtils.normalize(null));
+    }
+
+    @Test
+    void grams_ShouldReturnDistinctTrigrams() {
+        assertEquals(List.of("aaa"), SearchTextUtils.grams("aaaa"));
+        assertEquals(List.of("eco", "co ", "o f", " fu", "fun", "und"), SearchTextUtils.grams("eco fund"));
+        assertTrue(SearchTextUtils.grams("ab").isEmpty());
+    }
+
+    @Test
+    void regexLiteral_ShouldEscapeMetacharacters() {
+        assertEquals("a\\.b \\(c\\)\\*", SearchTextUtils.regexLiteral("a.b (c)*"));
+        assertTrue("x a.b (c)* y".matches(".*" + SearchTextUtils.regexLiteral("a.b (c)*") + ".*"));
+    }
+}